@@ -0,0 +1,154 @@
+package com.inkids.benchmark;
+
+import com.inkids.dao.ConnectionPool;
+import com.inkids.dao.DAO;
+import com.inkids.dao.UsuarioDAO;
+import com.inkids.model.Usuario;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Compara o banco em memória com o banco em arquivo (inkids.db.mode):
+ * vazão de inserção de usuários e tempo de reinicialização do banco.
+ * Cada combinação de parâmetros roda em uma JVM separada (fork), pois o pool é global.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ArmazenamentoBenchmark {
+
+    private static final AtomicLong SEQUENCIA = new AtomicLong();
+
+    /**
+     * Configura o modo de armazenamento antes de o pool ser criado.
+     */
+    static Path configurar(String modo) throws IOException {
+        Path pasta = Files.createTempDirectory("inkids-bench");
+        System.setProperty("inkids.db.mode", modo);
+        System.setProperty("inkids.db.path", pasta.resolve("inkidsdb").toString());
+        return pasta;
+    }
+
+    static void apagar(Path pasta) throws IOException {
+        try (Stream<Path> arquivos = Files.walk(pasta)) {
+            arquivos.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    static Usuario novoUsuario() {
+        long n = SEQUENCIA.incrementAndGet();
+        return new Usuario("Usuário " + n, "bench" + n + "-" + System.nanoTime() + "@inkids.com", "senha", LocalDate.of(2015, 1, 1), "F", "31999990000", "USER");
+    }
+
+    /**
+     * Simula o fim do processo: fecha o banco (inclusive o em memória) e o pool.
+     */
+    static void desligarBanco() throws SQLException {
+        ConnectionPool.shutdown();
+        // O banco em memória usa DB_CLOSE_DELAY=-1 e continuaria vivo sem o SHUTDOWN
+        try (Connection conn = DriverManager.getConnection(ConnectionPool.getJdbcUrl(), "sa", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class InsercaoState {
+        @Param({"mem", "file"})
+        public String modo;
+
+        UsuarioDAO usuarioDAO;
+        Path pasta;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            pasta = configurar(modo);
+            DAO.initializeDatabase();
+            usuarioDAO = new UsuarioDAO();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException, SQLException {
+            desligarBanco();
+            apagar(pasta);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ReinicioState {
+        @Param({"mem", "file"})
+        public String modo;
+
+        @Param({"10000"})
+        public int linhas;
+
+        Path pasta;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            pasta = configurar(modo);
+        }
+
+        /**
+         * Garante que o banco tenha {@link #linhas} usuários e o desliga antes de cada medição.
+         * No modo "mem" os dados se perdem a cada reinício, então são inseridos novamente.
+         */
+        @Setup(Level.Invocation)
+        public void prepararReinicio() throws SQLException {
+            DAO.initializeDatabase();
+            UsuarioDAO usuarioDAO = new UsuarioDAO();
+            for (int i = contarUsuarios(); i < linhas; i++) {
+                usuarioDAO.insert(novoUsuario());
+            }
+            desligarBanco();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException, SQLException {
+            desligarBanco();
+            apagar(pasta);
+        }
+    }
+
+    static int contarUsuarios() throws SQLException {
+        try (Connection conn = ConnectionPool.getDataSource().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Usuarios")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int insercao(InsercaoState state) {
+        return state.usuarioDAO.insert(novoUsuario());
+    }
+
+    /**
+     * Tempo para reabrir o banco, verificar as migrações e responder à primeira consulta.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public int reinicio(ReinicioState state) throws SQLException {
+        DAO.initializeDatabase();
+        return contarUsuarios();
+    }
+}
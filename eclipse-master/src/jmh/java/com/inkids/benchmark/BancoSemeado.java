@@ -0,0 +1,124 @@
+package com.inkids.benchmark;
+
+import com.inkids.dao.ConnectionPool;
+import com.inkids.dao.DAO;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.SplittableRandom;
+
+/**
+ * Banco H2 em memória com {@link #linhas} usuários, postagens e tarefas, inserido uma vez por fork.
+ * Os dados são gerados direto em SQL (INSERT ... SELECT de SYSTEM_RANGE), pois inserir 1 milhão de linhas
+ * pelos DAOs levaria mais tempo que o próprio benchmark.
+ *
+ * As postagens e tarefas pertencem aos primeiros 10% dos usuários, POR_USUARIO de cada por usuário,
+ * para que as consultas por usuário devolvam mais de uma linha.
+ *
+ * Outros tamanhos podem ser escolhidos na linha de comando, ex: -p linhas=5000,50000.
+ * O banco fica todo no heap: com 1 milhão de linhas os benchmarks precisam de HEAP (3 GB), trocável com -jvmArgsAppend.
+ */
+@State(Scope.Benchmark)
+public class BancoSemeado {
+
+    // Heap das JVMs dos benchmarks que usam este estado
+    static final String HEAP = "-Xmx3g";
+
+    static final int POR_USUARIO = 10;
+    // Linhas por INSERT: transações menores são bem mais rápidas no H2 que um único INSERT de 1 milhão de linhas
+    private static final int LINHAS_POR_INSERT = 20_000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int linhas;
+
+    // "false" mede os DAOs sem a instrumentação do JDBC (inkids.db.monitorar)
+    @Param({"true"})
+    public String monitorar;
+
+    int usuariosComDados;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        // Lidas quando as classes são carregadas, então precisam vir antes do primeiro acesso ao banco
+        System.setProperty("inkids.db.mode", "mem");
+        System.setProperty("inkids.db.monitorar", monitorar);
+        if (System.getProperty("inkids.db.consultaLentaMs") == null) {
+            // Listar 1 milhão de linhas é lento de propósito: o log de consultas lentas só atrapalharia a medição
+            System.setProperty("inkids.db.consultaLentaMs", "60000");
+        }
+        // A inserção dos dados segura a conexão por mais tempo que o limite de detecção de vazamento
+        System.setProperty("inkids.db.pool.leakDetectionMs", "0");
+
+        DAO.initializeDatabase();
+        usuariosComDados = Math.max(1, linhas / POR_USUARIO);
+        long inicio = System.nanoTime();
+        try (Connection conn = ConnectionPool.getDataSource().getConnection()) {
+            executar(conn, "INSERT INTO Usuarios (nome, email, senha, data_nascimento, genero, telefone, tipo_usuario, created_at, updated_at) "
+                    + "SELECT 'Usuário ' || X, 'usuario' || X || '@inkids.com', 'senha' || X, DATE '2015-01-01' + MOD(X, 3650), "
+                    + "CASE MOD(X, 2) WHEN 0 THEN 'F' ELSE 'M' END, '3199999' || LPAD(CAST(MOD(X, 10000) AS VARCHAR), 4, '0'), 'USER', "
+                    + "DATEADD('SECOND', -X, CURRENT_TIMESTAMP), DATEADD('SECOND', -X, CURRENT_TIMESTAMP) "
+                    + "FROM SYSTEM_RANGE(?, ?)", linhas);
+            executar(conn, "INSERT INTO Postagens (titulo, conteudo, autor_id, imagem_url, created_at, updated_at) "
+                    + "SELECT 'Postagem ' || X, 'Conteúdo da postagem ' || X || ', com algumas frases sobre o dia a dia da turma.', 1 + MOD(X - 1, " + usuariosComDados + "), "
+                    + "NULL, DATEADD('SECOND', -X, CURRENT_TIMESTAMP), DATEADD('SECOND', -X, CURRENT_TIMESTAMP) "
+                    + "FROM SYSTEM_RANGE(?, ?)", linhas);
+            executar(conn, "INSERT INTO Tarefas (titulo, descricao, status, prioridade, usuario_id, data_criacao) "
+                    + "SELECT 'Tarefa ' || X, 'Descrição da tarefa ' || X, 'PENDENTE', "
+                    + "CASE MOD(X, 3) WHEN 0 THEN 'BAIXA' WHEN 1 THEN 'MEDIA' ELSE 'ALTA' END, 1 + MOD(X - 1, " + usuariosComDados + "), "
+                    + "DATEADD('SECOND', -X, CURRENT_TIMESTAMP) "
+                    + "FROM SYSTEM_RANGE(?, ?)", linhas);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+        }
+        System.out.printf("%nBanco semeado com %d linhas por tabela em %d ms%n", linhas, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        ArmazenamentoBenchmark.desligarBanco();
+    }
+
+    private static void executar(Connection conn, String sql, int linhas) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int inicio = 1; inicio <= linhas; inicio += LINHAS_POR_INSERT) {
+                stmt.setInt(1, inicio);
+                stmt.setInt(2, Math.min(linhas, inicio + LINHAS_POR_INSERT - 1));
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    int usuarioQualquer(SplittableRandom sorteio) {
+        return 1 + sorteio.nextInt(linhas);
+    }
+
+    // Um usuário que tem postagens e tarefas
+    int usuarioComDados(SplittableRandom sorteio) {
+        return 1 + sorteio.nextInt(usuariosComDados);
+    }
+
+    int tarefaQualquer(SplittableRandom sorteio) {
+        return 1 + sorteio.nextInt(linhas);
+    }
+
+    static String email(int usuarioId) {
+        return "usuario" + usuarioId + "@inkids.com";
+    }
+
+    /**
+     * Sorteio de ids por thread, para que as threads não disputem o mesmo gerador.
+     */
+    @State(Scope.Thread)
+    public static class Sorteio {
+        SplittableRandom aleatorio;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            aleatorio = new SplittableRandom(Thread.currentThread().getId());
+        }
+    }
+}
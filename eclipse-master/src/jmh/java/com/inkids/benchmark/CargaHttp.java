@@ -0,0 +1,368 @@
+package com.inkids.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.inkids.app.Aplicacao;
+import com.inkids.metrics.Histograma;
+import spark.Spark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Teste de carga em circuito fechado da API: sobe a {@link Aplicacao} no mesmo processo, com o backend de imagens
+ * local e o banco semeado pelo {@link BancoSemeado}, e dispara uma mistura de requisições de vários clientes
+ * ao mesmo tempo. Cada cliente é uma thread que só envia a próxima requisição depois de receber a resposta.
+ *
+ * Uso (depois de mvn -P benchmark package):
+ * java -cp target/inkids-backend-1.0.0-benchmarks.jar com.inkids.benchmark.CargaHttp [chave=valor ...]
+ * - clientes: clientes simultâneos (padrão 32)
+ * - taxa: requisições por segundo somando todos os clientes; 0 = o máximo possível (padrão 0)
+ * - duracao / aquecimento: segundos de medição e de aquecimento, que não entra no resultado (padrão 30 / 10)
+ * - linhas: linhas por tabela no banco semeado (padrão 10000)
+ * - limite: tamanho da página em GET /api/postagens; 0 = a listagem completa (padrão 20)
+ * - mix: pesos das operações (padrão listarPostagens:60,criarTarefa:20,atualizarTarefa:15,criarContato:5)
+ * - saida: arquivo onde o resultado JSON também é gravado (padrão: só na saída padrão)
+ * - semente: semente do sorteio das operações, para repetir a mesma sequência (padrão 42)
+ *
+ * Omissão coordenada: um cliente em circuito fechado que espera uma resposta lenta deixa de enviar as requisições
+ * que enviaria nesse meio tempo, e essas esperas sumiriam das estatísticas. Por isso a latência "corrigida":
+ * - com taxa > 0, cada cliente segue uma agenda fixa e a latência é medida a partir do horário previsto do envio
+ *   (e não de quando o envio de fato aconteceu, se o cliente estava atrasado);
+ * - com taxa = 0, o intervalo esperado entre os envios de um cliente é a latência média dele até ali, e cada
+ *   resposta mais lenta que isso acrescenta as amostras das requisições que deixaram de ser enviadas
+ *   (como o recordValueWithExpectedInterval do HdrHistogram).
+ * A latência "bruta" (do envio à resposta) também é informada, para comparação.
+ *
+ * O resultado é um JSON com a vazão e os percentis p50/p99/p999 de cada rota, para comparar execuções.
+ */
+public class CargaHttp {
+
+    private static final String BASE_URL = "http://localhost:8080";
+    // Respostas de um cliente antes de a média dele servir de intervalo esperado
+    private static final int MIN_RESPOSTAS_MEDIA = 20;
+
+    private final int clientes;
+    private final double taxa;
+    private final int duracao;
+    private final int aquecimento;
+    private final int linhas;
+    private final int limite;
+    private final long semente;
+    private final Map<String, Integer> mix;
+    private final String saida;
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private BancoSemeado banco;
+
+    /**
+     * Uma das operações da mistura.
+     */
+    private enum Operacao {
+        listarPostagens("GET /api/postagens"),
+        criarTarefa("POST /api/tarefas"),
+        atualizarTarefa("PUT /api/tarefas/:id"),
+        criarContato("POST /api/contatos");
+
+        private final String rota;
+
+        Operacao(String rota) {
+            this.rota = rota;
+        }
+    }
+
+    /**
+     * Estatísticas de uma rota em uma fase (aquecimento ou medição).
+     */
+    private static final class Estatisticas {
+        final Histograma corrigida = new Histograma();
+        final Histograma bruta = new Histograma();
+        final LongAdder requisicoes = new LongAdder();
+        final LongAdder erros = new LongAdder();
+    }
+
+    private CargaHttp(Map<String, String> opcoes) {
+        clientes = Math.max(1, Integer.parseInt(opcoes.getOrDefault("clientes", "32")));
+        taxa = Math.max(0, Double.parseDouble(opcoes.getOrDefault("taxa", "0")));
+        duracao = Math.max(1, Integer.parseInt(opcoes.getOrDefault("duracao", "30")));
+        aquecimento = Math.max(0, Integer.parseInt(opcoes.getOrDefault("aquecimento", "10")));
+        linhas = Math.max(1, Integer.parseInt(opcoes.getOrDefault("linhas", "10000")));
+        limite = Math.max(0, Integer.parseInt(opcoes.getOrDefault("limite", "20")));
+        semente = Long.parseLong(opcoes.getOrDefault("semente", "42"));
+        mix = lerMix(opcoes.getOrDefault("mix", "listarPostagens:60,criarTarefa:20,atualizarTarefa:15,criarContato:5"));
+        saida = opcoes.get("saida");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opcoes = new HashMap<>();
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            if (igual <= 0) {
+                throw new IllegalArgumentException("Argumento inválido (use chave=valor): " + arg);
+            }
+            opcoes.put(arg.substring(0, igual), arg.substring(igual + 1));
+        }
+        int status = 0;
+        try {
+            new CargaHttp(opcoes).executar();
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 1;
+        }
+        // As filas de imagens e o pool usam threads que não são daemon
+        System.exit(status);
+    }
+
+    private void executar() throws Exception {
+        if (System.getProperty("inkids.imagem.backend") == null) {
+            System.setProperty("inkids.imagem.backend", "local");
+        }
+        banco = new BancoSemeado();
+        banco.linhas = linhas;
+        banco.monitorar = System.getProperty("inkids.db.monitorar", "true");
+        banco.setup();
+
+        Aplicacao.main(new String[0]);
+        Spark.awaitInitialization();
+
+        if (aquecimento > 0) {
+            System.out.printf("%nAquecimento: %d s com %d clientes%n", aquecimento, clientes);
+            fase(aquecimento);
+        }
+
+        System.out.printf("Medição: %d s com %d clientes%n", duracao, clientes);
+        long inicio = System.nanoTime();
+        Map<Operacao, Estatisticas> medidas = fase(duracao);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        String json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValueAsString(resultado(medidas, segundos));
+        System.out.println(json);
+        if (saida != null) {
+            Files.writeString(Path.of(saida), json);
+            System.out.println("Resultado gravado em " + saida);
+        }
+        Spark.stop();
+        Spark.awaitStop();
+    }
+
+    /**
+     * Roda todos os clientes por alguns segundos e devolve as estatísticas de cada rota.
+     */
+    private Map<Operacao, Estatisticas> fase(int segundos) throws InterruptedException {
+        Map<Operacao, Estatisticas> estatisticas = new LinkedHashMap<>();
+        for (String operacao : mix.keySet()) {
+            estatisticas.put(Operacao.valueOf(operacao), new Estatisticas());
+        }
+        long fim = System.nanoTime() + segundos * 1_000_000_000L;
+        // Com taxa, cada cliente envia uma requisição a cada "intervalo" nanossegundos
+        long intervalo = taxa > 0 ? (long) (clientes * 1e9 / taxa) : 0;
+        CountDownLatch terminados = new CountDownLatch(clientes);
+        for (int c = 0; c < clientes; c++) {
+            SplittableRandom sorteio = new SplittableRandom(semente * 31 + c);
+            long deslocamento = intervalo * c / clientes; // espalha os clientes dentro do intervalo
+            Thread cliente = new Thread(() -> {
+                try {
+                    rodarCliente(sorteio, estatisticas, fim, intervalo, deslocamento);
+                } finally {
+                    terminados.countDown();
+                }
+            }, "carga-cliente-" + c);
+            cliente.setDaemon(true);
+            cliente.start();
+        }
+        terminados.await();
+        return estatisticas;
+    }
+
+    private void rodarCliente(SplittableRandom sorteio, Map<Operacao, Estatisticas> estatisticas, long fim,
+                              long intervalo, long deslocamento) {
+        Operacao[] operacoes = estatisticas.keySet().toArray(new Operacao[0]);
+        int pesoTotal = 0;
+        for (Operacao operacao : operacoes) {
+            pesoTotal += mix.get(operacao.name());
+        }
+        long previsto = System.nanoTime() + deslocamento;
+        // Latência média deste cliente, o intervalo esperado entre envios quando não há taxa
+        long somaNanos = 0;
+        long respostas = 0;
+        while (true) {
+            if (intervalo > 0) {
+                long espera = previsto - System.nanoTime();
+                if (espera > 0) {
+                    LockSupport.parkNanos(espera);
+                }
+            }
+            long envio = System.nanoTime();
+            if (envio >= fim) {
+                return;
+            }
+            long inicioCorrigido = intervalo > 0 ? previsto : envio;
+
+            Operacao operacao = sortear(sorteio, operacoes, pesoTotal);
+            Estatisticas rota = estatisticas.get(operacao);
+            boolean ok;
+            try {
+                HttpResponse<Void> resposta = http.send(requisicao(operacao, sorteio), HttpResponse.BodyHandlers.discarding());
+                ok = resposta.statusCode() < 400;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long chegada = System.nanoTime();
+
+            rota.requisicoes.increment();
+            if (!ok) {
+                rota.erros.increment();
+            }
+            rota.bruta.registrarNanos(chegada - envio);
+            long corrigida = chegada - inicioCorrigido;
+            rota.corrigida.registrarNanos(corrigida);
+            if (intervalo == 0 && respostas >= MIN_RESPOSTAS_MEDIA) {
+                // Requisições que o cliente teria enviado enquanto esperava esta resposta
+                long esperado = Math.max(1, somaNanos / respostas);
+                for (long faltante = corrigida - esperado; faltante >= esperado; faltante -= esperado) {
+                    rota.corrigida.registrarNanos(faltante);
+                }
+            }
+            somaNanos += chegada - envio;
+            respostas++;
+            previsto += intervalo;
+        }
+    }
+
+    private Operacao sortear(SplittableRandom sorteio, Operacao[] operacoes, int pesoTotal) {
+        int escolha = sorteio.nextInt(pesoTotal);
+        for (Operacao operacao : operacoes) {
+            int peso = mix.get(operacao.name());
+            if (escolha < peso) {
+                return operacao;
+            }
+            escolha -= peso;
+        }
+        return operacoes[operacoes.length - 1];
+    }
+
+    private HttpRequest requisicao(Operacao operacao, SplittableRandom sorteio) {
+        int numero = sorteio.nextInt(1_000_000);
+        switch (operacao) {
+            case listarPostagens:
+                return HttpRequest.newBuilder(URI.create(BASE_URL + "/api/postagens" + (limite > 0 ? "?limit=" + limite : "")))
+                        .GET().build();
+            case criarTarefa:
+                return json(HttpRequest.newBuilder(URI.create(BASE_URL + "/api/tarefas")), "POST",
+                        "{\"titulo\":\"Tarefa de carga " + numero + "\",\"descricao\":\"Criada pelo teste de carga\","
+                        + "\"status\":\"PENDENTE\",\"prioridade\":\"MEDIA\",\"usuarioId\":" + banco.usuarioComDados(sorteio) + "}");
+            case atualizarTarefa:
+                int id = banco.tarefaQualquer(sorteio);
+                return json(HttpRequest.newBuilder(URI.create(BASE_URL + "/api/tarefas/" + id)), "PUT",
+                        "{\"titulo\":\"Tarefa " + id + "\",\"descricao\":\"Atualizada pelo teste de carga\","
+                        + "\"status\":\"CONCLUIDA\",\"prioridade\":\"ALTA\",\"usuarioId\":1}");
+            default:
+                return json(HttpRequest.newBuilder(URI.create(BASE_URL + "/api/contatos")), "POST",
+                        "{\"nome\":\"Contato " + numero + "\",\"email\":\"contato" + numero + "@inkids.com\","
+                        + "\"telefone\":\"31999990000\",\"assunto\":\"Teste de carga\","
+                        + "\"mensagem\":\"Mensagem enviada pelo teste de carga.\"}");
+        }
+    }
+
+    private static HttpRequest json(HttpRequest.Builder builder, String metodo, String corpo) {
+        return builder.header("Content-Type", "application/json")
+                .method(metodo, HttpRequest.BodyPublishers.ofString(corpo))
+                .build();
+    }
+
+    private Map<String, Object> resultado(Map<Operacao, Estatisticas> medidas, double segundos) {
+        Map<String, Object> configuracao = new LinkedHashMap<>();
+        configuracao.put("data", Instant.now().toString());
+        configuracao.put("clientes", clientes);
+        configuracao.put("taxa", taxa);
+        configuracao.put("duracaoSegundos", duracao);
+        configuracao.put("aquecimentoSegundos", aquecimento);
+        configuracao.put("linhas", linhas);
+        configuracao.put("limite", limite);
+        configuracao.put("mix", mix);
+        configuracao.put("semente", semente);
+        configuracao.put("correcao", taxa > 0 ? "agenda" : "mediaDoCliente");
+        configuracao.put("processadores", Runtime.getRuntime().availableProcessors());
+        configuracao.put("java", System.getProperty("java.version"));
+
+        Map<String, Object> rotas = new LinkedHashMap<>();
+        long requisicoesTotal = 0;
+        long errosTotal = 0;
+        for (Map.Entry<Operacao, Estatisticas> medida : medidas.entrySet()) {
+            Estatisticas estatisticas = medida.getValue();
+            rotas.put(medida.getKey().rota, resumo(estatisticas.requisicoes.sum(), estatisticas.erros.sum(), segundos,
+                    estatisticas.corrigida.retrato(), estatisticas.bruta.retrato()));
+            requisicoesTotal += estatisticas.requisicoes.sum();
+            errosTotal += estatisticas.erros.sum();
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("configuracao", configuracao);
+        resultado.put("segundos", segundos);
+        resultado.put("requisicoes", requisicoesTotal);
+        resultado.put("erros", errosTotal);
+        resultado.put("vazao", requisicoesTotal / segundos);
+        resultado.put("rotas", rotas);
+        return resultado;
+    }
+
+    private static Map<String, Object> resumo(long requisicoes, long erros, double segundos,
+                                              Histograma.Retrato corrigida, Histograma.Retrato bruta) {
+        Map<String, Object> resumo = new LinkedHashMap<>();
+        resumo.put("requisicoes", requisicoes);
+        resumo.put("erros", erros);
+        resumo.put("vazao", requisicoes / segundos);
+        resumo.put("latenciaMs", percentis(corrigida));
+        resumo.put("latenciaBrutaMs", percentis(bruta));
+        return resumo;
+    }
+
+    private static Map<String, Object> percentis(Histograma.Retrato retrato) {
+        Map<String, Object> percentis = new LinkedHashMap<>();
+        percentis.put("amostras", retrato.getTotal());
+        percentis.put("media", retrato.getTotal() > 0 ? retrato.getSomaMicros() / 1000.0 / retrato.getTotal() : 0);
+        percentis.put("p50", retrato.percentil(0.50) / 1000.0);
+        percentis.put("p99", retrato.percentil(0.99) / 1000.0);
+        percentis.put("p999", retrato.percentil(0.999) / 1000.0);
+        percentis.put("max", retrato.percentil(1.0) / 1000.0);
+        return percentis;
+    }
+
+    // "listarPostagens:60,criarTarefa:20" -> pesos por operação, na ordem informada
+    private static Map<String, Integer> lerMix(String valor) {
+        Map<String, Integer> pesos = new LinkedHashMap<>();
+        for (String parte : valor.split(",")) {
+            String[] chaveValor = parte.trim().split(":");
+            Operacao operacao = Operacao.valueOf(chaveValor[0].trim());
+            int peso = chaveValor.length > 1 ? Integer.parseInt(chaveValor[1].trim()) : 1;
+            if (peso > 0) {
+                pesos.put(operacao.name(), peso);
+            }
+        }
+        if (pesos.isEmpty()) {
+            throw new IllegalArgumentException("O mix precisa de pelo menos uma operação com peso maior que zero.");
+        }
+        return pesos;
+    }
+}
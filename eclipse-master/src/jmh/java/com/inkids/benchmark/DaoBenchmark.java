@@ -0,0 +1,119 @@
+package com.inkids.benchmark;
+
+import com.inkids.dao.PostagemDAO;
+import com.inkids.dao.TarefaDAO;
+import com.inkids.dao.UsuarioDAO;
+import com.inkids.model.Postagem;
+import com.inkids.model.Tarefa;
+import com.inkids.model.Usuario;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tempo dos métodos mais usados dos DAOs sobre o {@link BancoSemeado}, com uma thread e com várias
+ * (os métodos "Concorrente", que também medem a disputa pelo pool de conexões, de inkids.db.pool.maxSize).
+ * O número de threads dos métodos concorrentes pode ser trocado com -t.
+ *
+ * Os inserts aumentam a tabela de tarefas durante a medição; o crescimento é pequeno perto de {@link BancoSemeado#linhas}
+ * a partir de 100 mil linhas.
+ */
+@Fork(value = 1, jvmArgsAppend = BancoSemeado.HEAP)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DaoBenchmark {
+
+    private static final int THREADS = 8;
+
+    @State(Scope.Benchmark)
+    public static class Daos {
+        final UsuarioDAO usuarioDAO = new UsuarioDAO();
+        final PostagemDAO postagemDAO = new PostagemDAO();
+        final TarefaDAO tarefaDAO = new TarefaDAO();
+    }
+
+    // --- Uma thread ---
+
+    @Benchmark
+    public Usuario usuarioGet(BancoSemeado banco, Daos daos, BancoSemeado.Sorteio sorteio) {
+        return daos.usuarioDAO.get(banco.usuarioQualquer(sorteio.aleatorio));
+    }
+
+    @Benchmark
+    public Usuario usuarioGetByEmail(BancoSemeado banco, Daos daos, BancoSemeado.Sorteio sorteio) {
+        return daos.usuarioDAO.getByEmail(BancoSemeado.email(banco.usuarioQualquer(sorteio.aleatorio)));
+    }
+
+    /**
+     * Lista a tabela inteira: o custo cresce com {@link BancoSemeado#linhas} (é o caso que a paginação resolve).
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Postagem> postagemGetAll(BancoSemeado banco, Daos daos) {
+        return daos.postagemDAO.getAll();
+    }
+
+    @Benchmark
+    public List<Postagem> postagemGetByUserId(BancoSemeado banco, Daos daos, BancoSemeado.Sorteio sorteio) {
+        return daos.postagemDAO.getByUserId(banco.usuarioComDados(sorteio.aleatorio));
+    }
+
+    @Benchmark
+    public int tarefaInsert(BancoSemeado banco, Daos daos, BancoSemeado.Sorteio sorteio) {
+        return daos.tarefaDAO.insert(novaTarefa(banco, sorteio));
+    }
+
+    @Benchmark
+    public boolean tarefaUpdate(BancoSemeado banco, Daos daos, BancoSemeado.Sorteio sorteio) {
+        return daos.tarefaDAO.update(tarefaAlterada(banco, sorteio));
+    }
+
+    // --- Várias threads ---
+
+    @Benchmark
+    @Threads(THREADS)
+    public Usuario usuarioGetConcorrente(BancoSemeado banco, Daos daos, BancoSemeado.Sorteio sorteio) {
+        return usuarioGet(banco, daos, sorteio);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public Usuario usuarioGetByEmailConcorrente(BancoSemeado banco, Daos daos, BancoSemeado.Sorteio sorteio) {
+        return usuarioGetByEmail(banco, daos, sorteio);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public List<Postagem> postagemGetByUserIdConcorrente(BancoSemeado banco, Daos daos, BancoSemeado.Sorteio sorteio) {
+        return postagemGetByUserId(banco, daos, sorteio);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public int tarefaInsertConcorrente(BancoSemeado banco, Daos daos, BancoSemeado.Sorteio sorteio) {
+        return tarefaInsert(banco, daos, sorteio);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public boolean tarefaUpdateConcorrente(BancoSemeado banco, Daos daos, BancoSemeado.Sorteio sorteio) {
+        return tarefaUpdate(banco, daos, sorteio);
+    }
+
+    static Tarefa novaTarefa(BancoSemeado banco, BancoSemeado.Sorteio sorteio) {
+        return new Tarefa("Tarefa do benchmark", "Criada pelo benchmark", "PENDENTE", "MEDIA",
+                banco.usuarioComDados(sorteio.aleatorio));
+    }
+
+    static Tarefa tarefaAlterada(BancoSemeado banco, BancoSemeado.Sorteio sorteio) {
+        int id = banco.tarefaQualquer(sorteio.aleatorio);
+        Tarefa tarefa = new Tarefa("Tarefa " + id, "Descrição atualizada", "CONCLUIDA", "ALTA", 1);
+        tarefa.setId(id);
+        tarefa.setDataConclusao(LocalDateTime.now());
+        return tarefa;
+    }
+}
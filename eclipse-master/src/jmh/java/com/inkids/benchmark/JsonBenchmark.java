@@ -0,0 +1,237 @@
+package com.inkids.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.inkids.model.Contato;
+import com.inkids.model.Postagem;
+import com.inkids.model.Tarefa;
+import com.inkids.model.Usuario;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialização e desserialização JSON dos modelos, configurada como nos controllers
+ * (um ObjectMapper com JavaTimeModule), comparando:
+ * - o caminho atual: objectMapper.writeValueAsString / objectMapper.readValue(String);
+ * - ObjectWriter/ObjectReader criados uma vez para o tipo, com saída em String ou em bytes;
+ * - streaming: um JsonGenerator escrevendo item a item em um OutputStream (como o JsonStreaming dos
+ *   controllers faz nas listagens) e a leitura item a item com MappingIterator.
+ *
+ * "tamanho" 1 mede um objeto só; os demais, uma lista com esse número de objetos.
+ * A taxa de alocação vem do profiler de GC: rode com -prof gc, ou pelo main desta classe, que já o inclui:
+ * java -cp target/inkids-backend-1.0.0-benchmarks.jar com.inkids.benchmark.JsonBenchmark
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    @Param({"Postagem", "Tarefa", "Usuario", "Contato"})
+    public String modelo;
+
+    @Param({"1", "1000", "100000"})
+    public int tamanho;
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter writer;
+    private ObjectWriter writerItem;
+    private ObjectReader reader;
+    private ObjectReader readerItem;
+    private JavaType tipo;
+
+    private Object dados;
+    private List<Object> itens;
+    private String json;
+    private byte[] jsonBytes;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+
+        Class<?> classe = classe(modelo);
+        itens = new ArrayList<>(tamanho);
+        for (int i = 1; i <= tamanho; i++) {
+            itens.add(criar(classe, i));
+        }
+        tipo = tamanho == 1 ? objectMapper.constructType(classe)
+                : objectMapper.getTypeFactory().constructCollectionType(List.class, classe);
+        dados = tamanho == 1 ? itens.get(0) : itens;
+
+        writer = objectMapper.writerFor(tipo);
+        writerItem = objectMapper.writerFor(classe).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        reader = objectMapper.readerFor(tipo);
+        readerItem = objectMapper.readerFor(classe);
+
+        json = objectMapper.writeValueAsString(dados);
+        jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // --- Serialização ---
+
+    @Benchmark
+    public String escreverWriteValueAsString() throws IOException {
+        return objectMapper.writeValueAsString(dados);
+    }
+
+    @Benchmark
+    public String escreverObjectWriterString() throws IOException {
+        return writer.writeValueAsString(dados);
+    }
+
+    @Benchmark
+    public byte[] escreverObjectWriterBytes() throws IOException {
+        return writer.writeValueAsBytes(dados);
+    }
+
+    /**
+     * Escreve direto em um OutputStream (que só conta os bytes, no lugar do socket), sem montar a String inteira.
+     */
+    @Benchmark
+    public long escreverStreaming() throws IOException {
+        ContadorBytes saida = new ContadorBytes();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(saida)) {
+            if (tamanho == 1) {
+                writerItem.writeValue(generator, dados);
+            } else {
+                generator.writeStartArray();
+                for (Object item : itens) {
+                    writerItem.writeValue(generator, item);
+                }
+                generator.writeEndArray();
+            }
+        }
+        return saida.total;
+    }
+
+    // --- Desserialização ---
+
+    @Benchmark
+    public Object lerReadValue() throws IOException {
+        return objectMapper.readValue(json, tipo);
+    }
+
+    @Benchmark
+    public Object lerObjectReaderString() throws IOException {
+        return reader.readValue(json);
+    }
+
+    @Benchmark
+    public Object lerObjectReaderBytes() throws IOException {
+        return reader.readValue(jsonBytes);
+    }
+
+    /**
+     * Lê os itens um a um, sem montar a lista (como um consumidor em streaming faria).
+     */
+    @Benchmark
+    public void lerStreaming(Blackhole blackhole) throws IOException {
+        if (tamanho == 1) {
+            blackhole.consume(readerItem.readValue(jsonBytes));
+            return;
+        }
+        try (MappingIterator<Object> iterador = readerItem.readValues(jsonBytes)) {
+            while (iterador.hasNext()) {
+                blackhole.consume(iterador.next());
+            }
+        }
+    }
+
+    private static Class<?> classe(String modelo) {
+        switch (modelo) {
+            case "Postagem":
+                return Postagem.class;
+            case "Tarefa":
+                return Tarefa.class;
+            case "Usuario":
+                return Usuario.class;
+            case "Contato":
+                return Contato.class;
+            default:
+                throw new IllegalArgumentException("Modelo desconhecido: " + modelo);
+        }
+    }
+
+    // Objetos com todos os campos preenchidos, com tamanhos parecidos com os reais
+    private static Object criar(Class<?> classe, int i) {
+        LocalDateTime data = LocalDateTime.of(2024, 3, 1, 10, 0).plusMinutes(i);
+        if (classe == Postagem.class) {
+            Postagem postagem = new Postagem("Postagem " + i + ": minha rotina da manhã",
+                    "Conteúdo da postagem " + i + ", com algumas frases sobre o dia a dia da turma e o que aprendemos hoje.",
+                    1 + i % 100, "http://localhost:8080/api/imagens/" + "ab".repeat(32));
+            postagem.setId(i);
+            postagem.setImagemStatus("PRONTA");
+            postagem.setImagemMiniaturaUrl(postagem.getImagemUrl() + "/thumb");
+            postagem.setImagemMediaUrl(postagem.getImagemUrl() + "/media");
+            postagem.setCreatedAt(data);
+            postagem.setUpdatedAt(data);
+            return postagem;
+        }
+        if (classe == Tarefa.class) {
+            Tarefa tarefa = new Tarefa("Tarefa " + i, "Descrição da tarefa " + i + ": ler o capítulo e fazer os exercícios",
+                    "PENDENTE", "MEDIA", 1 + i % 100);
+            tarefa.setId(i);
+            tarefa.setDataCriacao(data);
+            tarefa.setDataConclusao(i % 2 == 0 ? data.plusDays(1) : null);
+            return tarefa;
+        }
+        if (classe == Usuario.class) {
+            Usuario usuario = new Usuario("Usuário " + i, "usuario" + i + "@inkids.com", "senha" + i,
+                    LocalDate.of(2015, 1, 1).plusDays(i % 3650), i % 2 == 0 ? "F" : "M", "31999990000", "USER");
+            usuario.setId(i);
+            usuario.setReutilizarImagens(true);
+            usuario.setCreatedAt(data);
+            usuario.setUpdatedAt(data);
+            return usuario;
+        }
+        Contato contato = new Contato("Contato " + i, "contato" + i + "@inkids.com", "31999990000", "Dúvida sobre a plataforma",
+                "Mensagem " + i + ": gostaria de saber como cadastrar a turma da escola.");
+        contato.setId(i);
+        contato.setCreatedAt(data);
+        return contato;
+    }
+
+    // OutputStream que descarta os bytes e só conta quantos foram escritos
+    private static final class ContadorBytes extends OutputStream {
+        long total;
+
+        @Override
+        public void write(int b) {
+            total++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            total += len;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JsonBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
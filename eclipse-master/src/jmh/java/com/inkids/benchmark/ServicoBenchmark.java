@@ -0,0 +1,107 @@
+package com.inkids.benchmark;
+
+import com.inkids.model.Postagem;
+import com.inkids.model.Tarefa;
+import com.inkids.model.Usuario;
+import com.inkids.service.PostagemService;
+import com.inkids.service.TarefaService;
+import com.inkids.service.UsuarioService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * As mesmas operações do {@link DaoBenchmark}, chamadas pelos serviços usados pelos controllers.
+ * A diferença para o DaoBenchmark é o custo da camada de serviço (validação, URLs das miniaturas),
+ * e mais tarde o ganho dos caches que ficarem nela.
+ */
+@Fork(value = 1, jvmArgsAppend = BancoSemeado.HEAP)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServicoBenchmark {
+
+    private static final int THREADS = 8;
+
+    @State(Scope.Benchmark)
+    public static class Servicos {
+        UsuarioService usuarioService;
+        PostagemService postagemService;
+        TarefaService tarefaService;
+
+        // Depois do BancoSemeado, para que as configurações do banco já estejam definidas
+        @Setup(Level.Trial)
+        public void setup(BancoSemeado banco) {
+            usuarioService = new UsuarioService();
+            postagemService = new PostagemService();
+            tarefaService = new TarefaService();
+        }
+    }
+
+    // --- Uma thread ---
+
+    @Benchmark
+    public Usuario buscarUsuarioPorId(BancoSemeado banco, Servicos servicos, BancoSemeado.Sorteio sorteio) {
+        return servicos.usuarioService.buscarUsuarioPorId(banco.usuarioQualquer(sorteio.aleatorio));
+    }
+
+    @Benchmark
+    public Usuario buscarUsuarioPorEmail(BancoSemeado banco, Servicos servicos, BancoSemeado.Sorteio sorteio) {
+        return servicos.usuarioService.buscarUsuarioPorEmail(BancoSemeado.email(banco.usuarioQualquer(sorteio.aleatorio)));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Postagem> listarTodasPostagens(BancoSemeado banco, Servicos servicos) {
+        return servicos.postagemService.listarTodasPostagens();
+    }
+
+    @Benchmark
+    public List<Postagem> listarPostagensPorUsuario(BancoSemeado banco, Servicos servicos, BancoSemeado.Sorteio sorteio) {
+        return servicos.postagemService.listarPostagensPorUsuario(banco.usuarioComDados(sorteio.aleatorio));
+    }
+
+    @Benchmark
+    public Tarefa criarTarefa(BancoSemeado banco, Servicos servicos, BancoSemeado.Sorteio sorteio) {
+        return servicos.tarefaService.criarTarefa(DaoBenchmark.novaTarefa(banco, sorteio));
+    }
+
+    @Benchmark
+    public boolean atualizarTarefa(BancoSemeado banco, Servicos servicos, BancoSemeado.Sorteio sorteio) {
+        return servicos.tarefaService.atualizarTarefa(DaoBenchmark.tarefaAlterada(banco, sorteio));
+    }
+
+    // --- Várias threads ---
+
+    @Benchmark
+    @Threads(THREADS)
+    public Usuario buscarUsuarioPorIdConcorrente(BancoSemeado banco, Servicos servicos, BancoSemeado.Sorteio sorteio) {
+        return buscarUsuarioPorId(banco, servicos, sorteio);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public Usuario buscarUsuarioPorEmailConcorrente(BancoSemeado banco, Servicos servicos, BancoSemeado.Sorteio sorteio) {
+        return buscarUsuarioPorEmail(banco, servicos, sorteio);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public List<Postagem> listarPostagensPorUsuarioConcorrente(BancoSemeado banco, Servicos servicos, BancoSemeado.Sorteio sorteio) {
+        return listarPostagensPorUsuario(banco, servicos, sorteio);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public Tarefa criarTarefaConcorrente(BancoSemeado banco, Servicos servicos, BancoSemeado.Sorteio sorteio) {
+        return criarTarefa(banco, servicos, sorteio);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public boolean atualizarTarefaConcorrente(BancoSemeado banco, Servicos servicos, BancoSemeado.Sorteio sorteio) {
+        return atualizarTarefa(banco, servicos, sorteio);
+    }
+}
@@ -2,7 +2,10 @@ package com.inkids.app;
 // const postRouteUrl = 'http://localhost:8080/api/postagens';
 
 import com.inkids.controller.*;
+import com.inkids.dao.ConnectionPool;
 import com.inkids.dao.DAO;
+import com.inkids.metrics.MetricasHttp;
+import com.inkids.metrics.RegistroMetricas;
 import com.inkids.model.Usuario;
 import com.inkids.service.*;
 
@@ -10,8 +13,7 @@ import java.time.LocalDate;
 
 import static spark.Spark.*;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Classe principal que inicia a aplicação backend.
@@ -19,14 +21,30 @@ import com.google.gson.JsonParser;
 public class Aplicacao {
 
     public static void main(String[] args) {
-        // 1. Inicializa o esquema do banco de dados na memória.
+        // 1. Inicializa o esquema do banco de dados, aplicando as migrações pendentes.
         // Deve ser a primeira ação para garantir que as tabelas existam.
         DAO.initializeDatabase();
+        // Inicia a fila de geração de imagens, que retoma os jobs pendentes.
+        ImagemJobService.getInstance().iniciar();
+        // Ao encerrar, para a fila de imagens, fecha o backend de imagens e devolve as conexões do pool.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            ImagemJobService.getInstance().parar();
+            GeminiImageService.getInstance().fechar();
+            ImagemDerivadasService.getInstance().fechar();
+            ConnectionPool.shutdown();
+        }));
 
         // 2. Configura a porta do servidor web.
         // A porta 8080 é uma alternativa comum à padrão 4567.
         port(8080);
 
+        // Mede a latência de todas as rotas (registrado antes dos outros filtros, para medi-los também)
+        // e expõe GET /api/metrics no formato do Prometheus, com as métricas do pool e das imagens.
+        MetricasHttp.instalar();
+        RegistroMetricas.getInstance().registrarColetor("inkids_pool", ConnectionPool::getMetricas);
+        RegistroMetricas.getInstance().registrarColetor("inkids_imagem", () -> GeminiImageService.getInstance().getMetricas());
+        RegistroMetricas.getInstance().registrarColetor("inkids_imagem_fila", () -> ImagemJobService.getInstance().getMetricas());
+
         // 3. Configura o CORS (Cross-Origin Resource Sharing).
         // Essencial para permitir que o front-end faça requisições para este servidor.
         enableCORS();
@@ -43,29 +61,37 @@ public class Aplicacao {
         new PostagemController(postagemService);
         new TarefaController(tarefaService);
         new ContatoController(contatoService);
+        new ImagemController(ImagemBlobStore.getInstance(), GeminiImageService.getInstance(), ImagemDerivadasService.getInstance());
 
-        // Nova rota para geração de imagens
-        post("/api/generate-images", (req, res) -> {
+        // Métricas do pool de conexões, para acompanhar o dimensionamento
+        ObjectMapper metricsMapper = new ObjectMapper();
+        get("/api/metrics/pool", (req, res) -> {
             res.type("application/json");
-            String body = req.body();
-            String prompt = "imagem"; // valor padrão
-
-            try {
-                // Extrai o título do JSON recebido
-                 JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                 if (json.has("title")) {
-                  prompt = json.get("title").getAsString();
-                 }
-            } catch (Exception e) {
-                // Se der erro, usa o valor padrão
-            }
+            return metricsMapper.writeValueAsString(ConnectionPool.getMetricas());
+        });
+
+        // Métricas da geração de imagens (chamadas agrupadas, acertos e faltas do cache)
+        get("/api/metrics/imagens", (req, res) -> {
+            res.type("application/json");
+            return metricsMapper.writeValueAsString(GeminiImageService.getInstance().getMetricas());
+        });
 
-            GeminiImageService imageService = new GeminiImageService();
-            String imageUrl = imageService.generateImageUrl(prompt);
+        // Métricas do cache de usuários (taxa de acerto, tamanho e invalidações)
+        get("/api/metrics/usuarios", (req, res) -> {
+            res.type("application/json");
+            return metricsMapper.writeValueAsString(usuarioService.getMetricasCache());
+        });
+        RegistroMetricas.getInstance().registrarColetor("inkids_usuarios_cache", usuarioService::getMetricasCache);
 
-            // Retorna um JSON com a imagem (em array, pois o front espera várias)
-            return "{\"success\":true,\"images\":[\"" + imageUrl + "\"]}";
+        // Métricas do feed de postagens mais recentes (acertos, faltas e recargas)
+        get("/api/metrics/feed", (req, res) -> {
+            res.type("application/json");
+            return metricsMapper.writeValueAsString(postagemService.getMetricasFeed());
         });
+        RegistroMetricas.getInstance().registrarColetor("inkids_postagens_feed", postagemService::getMetricasFeed);
+
+        // Comprime as respostas JSON (gzip ou deflate), depois de todos os outros filtros after.
+        CompressaoHttp.instalar();
 
         System.out.println("\nServidor Java (Spark) iniciado com sucesso!");
         System.out.println("Ouvindo na porta: http://localhost:8080");
@@ -97,6 +123,8 @@ public class Aplicacao {
             response.header("Access-Control-Allow-Origin", "*"); // Permite qualquer origem
             response.header("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
             response.header("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Requested-With");
+            // Permite que o front-end leia o ETag, para revalidar as listagens com If-None-Match
+            response.header("Access-Control-Expose-Headers", "ETag");
             response.type("application/json");
         });
     }
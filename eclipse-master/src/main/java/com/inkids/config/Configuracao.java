@@ -0,0 +1,75 @@
+package com.inkids.config;
+
+/**
+ * Leitura centralizada das configurações da aplicação.
+ * Cada chave (ex: "inkids.db.pool.maxSize") pode ser definida como propriedade do sistema
+ * (-Dinkids.db.pool.maxSize=20) ou como variável de ambiente (INKIDS_DB_POOL_MAXSIZE=20).
+ * A propriedade do sistema tem prioridade sobre a variável de ambiente.
+ */
+public final class Configuracao {
+
+    private Configuracao() {
+    }
+
+    /**
+     * Busca o valor bruto de uma configuração.
+     * @param chave A chave da configuração.
+     * @return O valor configurado, ou null se não houver.
+     */
+    public static String get(String chave) {
+        String valor = System.getProperty(chave);
+        if (valor == null) {
+            valor = System.getenv(chave.toUpperCase().replace('.', '_'));
+        }
+        return valor != null && !valor.trim().isEmpty() ? valor.trim() : null;
+    }
+
+    public static String getString(String chave, String padrao) {
+        String valor = get(chave);
+        return valor != null ? valor : padrao;
+    }
+
+    public static int getInt(String chave, int padrao) {
+        String valor = get(chave);
+        if (valor == null) {
+            return padrao;
+        }
+        try {
+            return Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            System.err.println("Configuração inválida para " + chave + ": '" + valor + "'. Usando " + padrao + ".");
+            return padrao;
+        }
+    }
+
+    public static long getLong(String chave, long padrao) {
+        String valor = get(chave);
+        if (valor == null) {
+            return padrao;
+        }
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            System.err.println("Configuração inválida para " + chave + ": '" + valor + "'. Usando " + padrao + ".");
+            return padrao;
+        }
+    }
+
+    public static double getDouble(String chave, double padrao) {
+        String valor = get(chave);
+        if (valor == null) {
+            return padrao;
+        }
+        try {
+            return Double.parseDouble(valor);
+        } catch (NumberFormatException e) {
+            System.err.println("Configuração inválida para " + chave + ": '" + valor + "'. Usando " + padrao + ".");
+            return padrao;
+        }
+    }
+
+    public static boolean getBoolean(String chave, boolean padrao) {
+        String valor = get(chave);
+        return valor != null ? Boolean.parseBoolean(valor) : padrao;
+    }
+}
@@ -0,0 +1,268 @@
+package com.inkids.controller;
+
+import com.inkids.config.Configuracao;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static spark.Spark.*;
+
+/**
+ * Compressão das respostas HTTP (gzip ou deflate), negociada pelo cabeçalho Accept-Encoding.
+ * - Corpos retornados pelas rotas (strings): comprimidos por um filtro after, a partir de
+ *   inkids.http.compressao.tamanhoMinimo bytes (padrão 1024); abaixo disso a compressão não compensa.
+ * - Corpos escritos direto na resposta: as listagens em streaming usam {@link #saida}, que só decide comprimir
+ *   quando o corpo passa do tamanho mínimo; as respostas prontas em memória usam {@link #negociar} e {@link #enviar},
+ *   e o feed de postagens guarda os bytes já comprimidos.
+ * Só JSON e texto são comprimidos: as imagens já estão comprimidas e o NDJSON das variações precisa
+ * chegar ao cliente linha a linha. A compressão pode ser desligada com inkids.http.compressao.habilitada=false.
+ *
+ * Cada codificação é uma representação diferente do recurso, então o ETag da resposta comprimida ganha
+ * o sufixo da codificação (ex: "postagens-...--gzip") e as respostas levam Vary: Accept-Encoding.
+ */
+public final class CompressaoHttp {
+
+    private static final boolean HABILITADA = Configuracao.getBoolean("inkids.http.compressao.habilitada", true);
+    private static final int TAMANHO_MINIMO = Math.max(0, Configuracao.getInt("inkids.http.compressao.tamanhoMinimo", 1024));
+
+    // Tamanho usado por quem ainda não sabe o tamanho do corpo: a compressão depende só do Accept-Encoding
+    private static final long TAMANHO_DESCONHECIDO = -1;
+
+    private static final String ATRIBUTO_VARY = "inkids.compressao.vary";
+
+    /**
+     * As codificações suportadas, na ordem de preferência em caso de empate no Accept-Encoding.
+     */
+    enum Codificacao {
+        GZIP("gzip"),
+        DEFLATE("deflate"); // No HTTP, "deflate" é o formato zlib (RFC 1950), que é o do DeflaterOutputStream
+
+        private final String nome;
+
+        Codificacao(String nome) {
+            this.nome = nome;
+        }
+
+        String getNome() {
+            return nome;
+        }
+
+        OutputStream envolver(OutputStream saida) throws IOException {
+            return this == GZIP ? new GZIPOutputStream(saida, 8192) : new DeflaterOutputStream(saida);
+        }
+
+        byte[] comprimir(byte[] corpo) {
+            ByteArrayOutputStream saida = new ByteArrayOutputStream(Math.max(64, corpo.length / 4));
+            try (OutputStream comprimido = envolver(saida)) {
+                comprimido.write(corpo);
+            } catch (IOException e) {
+                // Não acontece: a saída é um ByteArrayOutputStream
+                throw new UncheckedIOException(e);
+            }
+            return saida.toByteArray();
+        }
+    }
+
+    private CompressaoHttp() {
+    }
+
+    /**
+     * Registra o filtro que comprime os corpos retornados pelas rotas.
+     * Deve ser o último filtro after registrado, para comprimir o corpo já alterado pelos outros.
+     */
+    public static void instalar() {
+        if (!HABILITADA) {
+            return;
+        }
+        after((request, response) -> {
+            HttpServletResponse raw = response.raw();
+            String corpo = response.body();
+            // Corpo vazio: a rota escreveu a resposta direto (streaming, imagens) ou não há corpo (ex: 304)
+            if (corpo == null || corpo.isEmpty() || raw.isCommitted() || raw.containsHeader("Content-Encoding")
+                    || !comprimivel(raw.getContentType())) {
+                return;
+            }
+            byte[] bytes = corpo.getBytes(StandardCharsets.UTF_8);
+            Codificacao codificacao = negociar(request, response, bytes.length);
+            if (codificacao == null) {
+                return;
+            }
+            enviar(raw, codificacao.comprimir(bytes), codificacao);
+            // A resposta já foi enviada: o Spark não tem mais nada a escrever
+            response.body("");
+        });
+    }
+
+    /**
+     * Escolhe a codificação do corpo pelo Accept-Encoding da requisição e marca a resposta com Vary: Accept-Encoding.
+     * @param tamanho O tamanho do corpo sem compressão, ou {@link #TAMANHO_DESCONHECIDO}.
+     * @return A codificação, ou null se o corpo deve ir sem compressão.
+     */
+    static Codificacao negociar(Request request, Response response, long tamanho) {
+        if (!HABILITADA) {
+            return null;
+        }
+        marcarVary(request, response);
+        if (tamanho != TAMANHO_DESCONHECIDO && tamanho < TAMANHO_MINIMO) {
+            return null;
+        }
+        return aceita(request.headers("Accept-Encoding"));
+    }
+
+    /**
+     * A saída para um corpo de tamanho desconhecido (ex: uma listagem em streaming). Se o cliente aceita compressão,
+     * os primeiros bytes ficam retidos até o corpo chegar ao tamanho mínimo: só então a resposta passa a ser comprimida.
+     * Um corpo menor que isso vai sem compressão. Fechar a saída encerra a resposta.
+     */
+    static OutputStream saida(Request request, Response response) throws IOException {
+        Codificacao codificacao = negociar(request, response, TAMANHO_DESCONHECIDO);
+        HttpServletResponse raw = response.raw();
+        return codificacao != null ? new SaidaNegociada(raw, codificacao) : raw.getOutputStream();
+    }
+
+    /**
+     * Indica aos caches que a resposta varia com o Accept-Encoding (uma vez por resposta).
+     */
+    static void marcarVary(Request request, Response response) {
+        if (HABILITADA && request.attribute(ATRIBUTO_VARY) == null) {
+            request.attribute(ATRIBUTO_VARY, Boolean.TRUE);
+            response.raw().addHeader("Vary", "Accept-Encoding");
+        }
+    }
+
+    /**
+     * O ETag da representação que o cliente vai receber: com o sufixo da codificação, se ele aceita uma.
+     * A variante depende só do Accept-Encoding (não do tamanho), para que o ETag seja conhecido antes do corpo.
+     */
+    static String etagDaVariante(Request request, String etag) {
+        Codificacao codificacao = HABILITADA ? aceita(request.headers("Accept-Encoding")) : null;
+        if (codificacao == null || !etag.endsWith("\"")) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "--" + codificacao.getNome() + "\"";
+    }
+
+    /**
+     * Envia um corpo já comprimido (ou sem compressão, se a codificação for null) e encerra a resposta.
+     */
+    static void enviar(HttpServletResponse raw, byte[] corpo, Codificacao codificacao) throws IOException {
+        if (codificacao != null) {
+            raw.setHeader("Content-Encoding", codificacao.getNome());
+        }
+        raw.setContentLength(corpo.length);
+        raw.getOutputStream().write(corpo);
+        // Com a resposta enviada, o Spark não escreve mais nada (senão ele acrescentaria um gzip vazio ao corpo)
+        raw.flushBuffer();
+    }
+
+    // Retém o início do corpo até saber se ele alcança o tamanho mínimo para a compressão
+    private static final class SaidaNegociada extends OutputStream {
+        private final HttpServletResponse raw;
+        private final Codificacao codificacao;
+        private final ByteArrayOutputStream inicio = new ByteArrayOutputStream(Math.min(TAMANHO_MINIMO, 8192));
+        private OutputStream destino; // null enquanto o corpo é menor que o tamanho mínimo
+
+        SaidaNegociada(HttpServletResponse raw, Codificacao codificacao) {
+            this.raw = raw;
+            this.codificacao = codificacao;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (destino != null) {
+                destino.write(b, off, len);
+                return;
+            }
+            if (inicio.size() + len < TAMANHO_MINIMO) {
+                inicio.write(b, off, len);
+                return;
+            }
+            // Passou do tamanho mínimo: os cabeçalhos ainda não foram enviados, então ainda dá para comprimir
+            raw.setHeader("Content-Encoding", codificacao.getNome());
+            destino = codificacao.envolver(raw.getOutputStream());
+            inicio.writeTo(destino);
+            destino.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (destino != null) {
+                destino.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (destino == null) {
+                // O corpo inteiro coube no início: vai sem compressão
+                destino = raw.getOutputStream();
+                raw.setContentLength(inicio.size());
+                inicio.writeTo(destino);
+            }
+            destino.close();
+        }
+    }
+
+    private static boolean comprimivel(String contentType) {
+        return contentType != null && (contentType.startsWith("application/json") || contentType.startsWith("text/"));
+    }
+
+    // A codificação aceita com maior q (gzip no empate), ou null se o cliente não aceita nenhuma
+    private static Codificacao aceita(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        double[] qualidades = new double[Codificacao.values().length];
+        double qualidadeCuringa = -1;
+        boolean[] citadas = new boolean[qualidades.length];
+        for (String item : acceptEncoding.split(",")) {
+            String[] partes = item.trim().split(";");
+            String nome = partes[0].trim().toLowerCase();
+            double q = 1.0;
+            for (int i = 1; i < partes.length; i++) {
+                String parametro = partes[i].trim();
+                if (parametro.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(parametro.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (nome.equals("*")) {
+                qualidadeCuringa = q;
+                continue;
+            }
+            for (Codificacao codificacao : Codificacao.values()) {
+                if (nome.equals(codificacao.getNome())) {
+                    qualidades[codificacao.ordinal()] = q;
+                    citadas[codificacao.ordinal()] = true;
+                }
+            }
+        }
+
+        Codificacao escolhida = null;
+        double melhor = 0;
+        for (Codificacao codificacao : Codificacao.values()) {
+            double q = citadas[codificacao.ordinal()] ? qualidades[codificacao.ordinal()] : qualidadeCuringa;
+            if (q > melhor) {
+                melhor = q;
+                escolhida = codificacao;
+            }
+        }
+        return escolhida;
+    }
+}
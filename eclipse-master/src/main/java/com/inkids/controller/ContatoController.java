@@ -1,5 +1,6 @@
 package com.inkids.controller;
 
+import com.inkids.dao.Tabela;
 import com.inkids.model.Contato;
 import com.inkids.service.ContatoService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -45,9 +46,21 @@ public class ContatoController {
             }
         });
 
-        // Endpoint: Listar todas as mensagens de contato (para admin)
+        // Endpoint: Listar todas as mensagens de contato (para admin), ou uma página com ?limit=&after=
         get("/api/contatos", (request, response) -> {
             response.type("application/json");
+            if (RespostaCondicional.naoModificado(request, response, RespostaCondicional.etag(Tabela.CONTATOS))) {
+                return "";
+            }
+            if (Paginacao.solicitada(request)) {
+                try {
+                    return objectMapper.writeValueAsString(
+                            contatoService.listarPaginaMensagens(Paginacao.limite(request), Paginacao.cursor(request)));
+                } catch (IllegalArgumentException e) {
+                    response.status(400);
+                    return "{\"error\":\"" + e.getMessage() + "\"}";
+                }
+            }
             response.status(200);
             return objectMapper.writeValueAsString(contatoService.listarTodasMensagens());
         });
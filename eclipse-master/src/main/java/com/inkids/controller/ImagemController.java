@@ -0,0 +1,322 @@
+package com.inkids.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inkids.model.ImagemGerada;
+import com.inkids.service.GeminiImageService;
+import com.inkids.service.ImagemBlobStore;
+import com.inkids.service.ImagemDerivadasService;
+import org.eclipse.jetty.server.HttpOutput;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static spark.Spark.*;
+
+/**
+ * Controller para a geração de imagens por IA e para servir as imagens gravadas no {@link ImagemBlobStore}.
+ * O conteúdo de uma URL de imagem nunca muda (o nome é o hash dos bytes), então a resposta tem ETag forte
+ * e pode ficar em cache para sempre. Pedidos parciais (Range) são suportados.
+ * Os tamanhos menores (miniatura e média) são servidos em GET /api/imagens/:hash/:tamanho.
+ */
+public class ImagemController {
+
+    private static final String CACHE_IMUTAVEL = "public, max-age=31536000, immutable";
+    private static final String CACHE_REVALIDAR = RespostaCondicional.CACHE_REVALIDAR;
+
+    private final ImagemBlobStore blobStore;
+    private final GeminiImageService imageService;
+    private final ImagemDerivadasService derivadas;
+    private final ObjectMapper objectMapper;
+
+    public ImagemController(ImagemBlobStore blobStore, GeminiImageService imageService, ImagemDerivadasService derivadas) {
+        this.blobStore = blobStore;
+        this.imageService = imageService;
+        this.derivadas = derivadas;
+        this.objectMapper = new ObjectMapper();
+
+        setupRoutes();
+    }
+
+    private void setupRoutes() {
+
+        // Endpoint: Gerar imagens a partir de um título
+        // Corpo: {"title": "...", "count": N, "stream": true|false}. Com count, gera até N variações em paralelo.
+        // Com stream (ou ?stream=true), cada imagem é enviada assim que fica pronta, uma por linha (NDJSON).
+        post("/api/generate-images", (request, response) -> {
+            response.type("application/json");
+            String prompt = "imagem"; // valor padrão
+            int quantidade = 1;
+            // O corpo é lido antes dos parâmetros da URL: com Content-Type de formulário, ler os parâmetros consumiria o corpo
+            String corpo = request.body();
+            boolean transmitir = "true".equalsIgnoreCase(request.queryParams("stream"));
+
+            try {
+                // Extrai o título e as opções do JSON recebido
+                JsonNode json = objectMapper.readTree(corpo);
+                if (json.hasNonNull("title")) {
+                    prompt = json.get("title").asText();
+                }
+                if (json.hasNonNull("count")) {
+                    quantidade = json.get("count").asInt(1);
+                }
+                if (json.hasNonNull("stream")) {
+                    transmitir = json.get("stream").asBoolean();
+                }
+            } catch (Exception e) {
+                // Se der erro, usa os valores padrão
+            }
+            if (request.queryParams("count") != null) {
+                try {
+                    quantidade = Integer.parseInt(request.queryParams("count"));
+                } catch (NumberFormatException e) {
+                    response.status(400);
+                    return "{\"error\":\"Parâmetro count inválido.\"}";
+                }
+            }
+            quantidade = Math.max(1, Math.min(quantidade, GeminiImageService.getMaxVariacoes()));
+
+            if (transmitir) {
+                transmitirVariacoes(response, prompt, quantidade);
+                return ""; // A resposta já foi escrita
+            }
+
+            // O serviço retorna o caminho relativo das imagens; o site roda em outra origem e recebe a URL completa
+            List<String> imagens;
+            if (quantidade == 1) {
+                imagens = Collections.singletonList(blobStore.urlPublica(imageService.generateImageUrl(prompt)));
+            } else {
+                // As variações entram na lista na ordem em que ficam prontas
+                List<String> prontas = new ArrayList<>();
+                imageService.gerarVariacoes(prompt, quantidade, new GeminiImageService.ReceptorVariacoes() {
+                    @Override
+                    public void pronta(int variacao, String url) {
+                        prontas.add(blobStore.urlPublica(url));
+                    }
+
+                    @Override
+                    public void falhou(int variacao, String erro) {
+                        // A variação é omitida da resposta
+                    }
+                });
+                imagens = prontas.isEmpty() ? Collections.singletonList(blobStore.urlPublica(imageService.getFallbackUrl(prompt))) : prontas;
+            }
+
+            // Retorna um JSON com as imagens (em array, pois o front espera várias)
+            Map<String, Object> resposta = new LinkedHashMap<>();
+            resposta.put("success", true);
+            resposta.put("images", imagens);
+            return objectMapper.writeValueAsString(resposta);
+        });
+
+        // Endpoint: Servir o placeholder padrão, da memória (registrado antes de /api/imagens/:hash)
+        // É a URL de fallback quando o placeholder do título não pôde ser gravado no disco.
+        get(GeminiImageService.CAMINHO_PLACEHOLDER_PADRAO, (request, response) -> {
+            ImagemGerada placeholder = imageService.getPlaceholderPadrao();
+            if (placeholder == null) {
+                response.type("application/json");
+                response.status(404);
+                return "{\"error\":\"Imagem não encontrada.\"}";
+            }
+            response.type(placeholder.getMimeType());
+            response.header("Cache-Control", CACHE_REVALIDAR);
+            return placeholder.getBytes();
+        });
+
+        // Endpoint: Servir uma imagem pelo hash do conteúdo
+        get("/api/imagens/:hash", (request, response) -> {
+            ImagemBlobStore.Blob blob = blobStore.abrir(request.params(":hash"));
+            if (blob == null) {
+                response.type("application/json");
+                response.status(404);
+                return "{\"error\":\"Imagem não encontrada.\"}";
+            }
+            return servir(request, response, blob, CACHE_IMUTAVEL);
+        });
+
+        // Endpoint: Servir um tamanho menor da imagem (thumb ou media), em JPEG
+        // Enquanto o tamanho menor não fica pronto, a imagem original é servida sem cache de longa duração.
+        get("/api/imagens/:hash/:tamanho", (request, response) -> {
+            String hash = request.params(":hash");
+            ImagemBlobStore.Tamanho tamanho = ImagemBlobStore.Tamanho.doSufixo(request.params(":tamanho"));
+            ImagemBlobStore.Blob blob = tamanho != null ? blobStore.abrirDerivada(hash, tamanho) : null;
+            if (blob != null) {
+                return servir(request, response, blob, CACHE_IMUTAVEL);
+            }
+
+            ImagemBlobStore.Blob original = tamanho != null ? blobStore.abrir(hash) : null;
+            if (original == null) {
+                response.type("application/json");
+                response.status(404);
+                return "{\"error\":\"Imagem não encontrada.\"}";
+            }
+            // Imagem antiga, ou a fila estava cheia quando ela foi gravada
+            derivadas.agendar(hash);
+            return servir(request, response, original, CACHE_REVALIDAR);
+        });
+    }
+
+    // Responde com a imagem gravada, com ETag, 304 e pedidos parciais (Range)
+    private static Object servir(Request request, Response response, ImagemBlobStore.Blob blob, String cacheControl) throws IOException {
+        String etag = "\"" + blob.getHash() + "\"";
+        response.header("ETag", etag);
+        response.header("Cache-Control", cacheControl);
+        response.header("Accept-Ranges", "bytes");
+
+        if (RespostaCondicional.corresponde(request.headers("If-None-Match"), etag)) {
+            response.status(304); // 304 Not Modified
+            response.raw().setContentType(null);
+            return "";
+        }
+
+        long tamanho = blob.getTamanho();
+        long inicio = 0;
+        long fim = tamanho - 1;
+
+        // Com If-Range, o intervalo só é atendido se o cliente tiver esta mesma versão; senão a imagem inteira é enviada
+        String range = request.headers("Range");
+        String ifRange = request.headers("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] intervalo = intervalo(range, tamanho);
+            if (intervalo == null) {
+                response.status(416); // 416 Range Not Satisfiable
+                response.header("Content-Range", "bytes */" + tamanho);
+                response.type("application/json");
+                return "{\"error\":\"Intervalo inválido.\"}";
+            }
+            if (intervalo.length == 2) {
+                inicio = intervalo[0];
+                fim = intervalo[1];
+                response.status(206); // 206 Partial Content
+                response.header("Content-Range", "bytes " + inicio + "-" + fim + "/" + tamanho);
+            }
+        }
+
+        response.type(blob.getMimeType());
+        enviar(response, blob, inicio, fim - inicio + 1);
+        return ""; // A resposta já foi escrita
+    }
+
+    /**
+     * Gera as variações e escreve cada uma na resposta assim que fica pronta, uma linha JSON por imagem:
+     * {"variacao":0,"url":"..."} ou {"variacao":1,"error":"..."}. Se nenhuma variação for gerada,
+     * a última linha traz a imagem de fallback: {"variacao":0,"url":"...","fallback":true}.
+     */
+    private void transmitirVariacoes(Response response, String prompt, int quantidade) throws IOException {
+        response.type("application/x-ndjson");
+        response.status(200);
+        OutputStream saida = response.raw().getOutputStream();
+
+        int prontas = imageService.gerarVariacoes(prompt, quantidade, new GeminiImageService.ReceptorVariacoes() {
+            @Override
+            public void pronta(int variacao, String url) throws IOException {
+                Map<String, Object> linha = new LinkedHashMap<>();
+                linha.put("variacao", variacao);
+                linha.put("url", blobStore.urlPublica(url));
+                escreverLinha(saida, linha);
+            }
+
+            @Override
+            public void falhou(int variacao, String erro) throws IOException {
+                Map<String, Object> linha = new LinkedHashMap<>();
+                linha.put("variacao", variacao);
+                linha.put("error", erro);
+                escreverLinha(saida, linha);
+            }
+        });
+
+        if (prontas == 0) {
+            Map<String, Object> linha = new LinkedHashMap<>();
+            linha.put("variacao", 0);
+            linha.put("url", blobStore.urlPublica(imageService.getFallbackUrl(prompt)));
+            linha.put("fallback", true);
+            escreverLinha(saida, linha);
+        }
+    }
+
+    private void escreverLinha(OutputStream saida, Map<String, Object> linha) throws IOException {
+        saida.write(objectMapper.writeValueAsBytes(linha));
+        saida.write('\n');
+        // Envia a linha ao cliente imediatamente
+        saida.flush();
+    }
+
+    // Envia o trecho do arquivo mapeado em memória, sem copiá-lo para o heap
+    private static void enviar(Response response, ImagemBlobStore.Blob blob, long inicio, long tamanho) throws IOException {
+        HttpServletResponse raw = response.raw();
+        raw.setContentLengthLong(tamanho);
+        if (tamanho == 0) {
+            raw.flushBuffer();
+            return;
+        }
+
+        MappedByteBuffer mapeado;
+        try (FileChannel canal = FileChannel.open(blob.getArquivo(), StandardOpenOption.READ)) {
+            // O mapeamento continua válido depois que o canal é fechado
+            mapeado = canal.map(FileChannel.MapMode.READ_ONLY, inicio, tamanho);
+        }
+
+        ServletOutputStream saida = raw.getOutputStream();
+        if (saida instanceof HttpOutput) {
+            ((HttpOutput) saida).sendContent(mapeado);
+        } else {
+            byte[] bytes = new byte[(int) tamanho];
+            ((ByteBuffer) mapeado).get(bytes);
+            saida.write(bytes);
+            saida.flush();
+        }
+    }
+
+    /**
+     * Interpreta o cabeçalho Range ("bytes=0-99", "bytes=100-" ou "bytes=-100").
+     * @return {inicio, fim} do intervalo; um array vazio para ignorar o cabeçalho (ex: vários intervalos);
+     *         ou null se o intervalo não puder ser atendido.
+     */
+    private static long[] intervalo(String range, long tamanho) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String especificacao = range.substring("bytes=".length()).trim();
+        int traco = especificacao.indexOf('-');
+        if (traco < 0) {
+            return new long[0];
+        }
+        try {
+            String inicioTexto = especificacao.substring(0, traco).trim();
+            String fimTexto = especificacao.substring(traco + 1).trim();
+            long inicio;
+            long fim;
+            if (inicioTexto.isEmpty()) {
+                // Sufixo: os últimos N bytes
+                long sufixo = Long.parseLong(fimTexto);
+                if (sufixo <= 0) {
+                    return null;
+                }
+                inicio = Math.max(0, tamanho - sufixo);
+                fim = tamanho - 1;
+            } else {
+                inicio = Long.parseLong(inicioTexto);
+                fim = fimTexto.isEmpty() ? tamanho - 1 : Math.min(Long.parseLong(fimTexto), tamanho - 1);
+            }
+            if (inicio >= tamanho || inicio > fim) {
+                return null;
+            }
+            return new long[] {inicio, fim};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.inkids.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.inkids.dao.RowHandler;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escreve listagens JSON diretamente no corpo da resposta HTTP, item a item,
+ * à medida que as linhas são lidas do banco. O uso de memória por requisição
+ * fica constante, independentemente do número de registros: o DAO lê as linhas sob demanda
+ * (ver DAO.conectarStreaming), com a ordenação vinda de um índice.
+ * Enquanto a listagem é escrita, a conexão com o banco fica emprestada: um cliente lento a segura
+ * até terminar de receber, por isso o número de listagens simultâneas é limitado no pool.
+ */
+final class JsonStreaming {
+
+    /**
+     * Fonte de itens de uma listagem em streaming (normalmente um método de serviço).
+     */
+    @FunctionalInterface
+    interface Fonte<T> {
+        boolean percorrer(RowHandler<T> handler);
+    }
+
+    private JsonStreaming() {
+    }
+
+    /**
+     * Escreve um array JSON com os itens da fonte na resposta, comprimido se o cliente aceitar.
+     * A rota deve retornar o resultado deste método para o Spark.
+     * @return Uma string vazia (o corpo já foi escrito), ou a mensagem de erro se nada tiver sido enviado.
+     */
+    static <T> String escreverArray(Request request, Response response, ObjectMapper objectMapper, Fonte<T> fonte) throws IOException {
+        HttpServletResponse raw = response.raw();
+        raw.setContentType("application/json");
+        raw.setCharacterEncoding("UTF-8");
+
+        // O tamanho da listagem não é conhecido antes: a saída decide a compressão quando o corpo passa do mínimo
+        OutputStream saida = CompressaoHttp.saida(request, response);
+
+        // Sem flush a cada item: o buffer do Jetty decide quando enviar os blocos
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(saida);
+        // Em caso de erro no meio da listagem o array fica incompleto, para o cliente perceber a falha
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+
+        generator.writeStartArray();
+        boolean concluido = fonte.percorrer(item -> writer.writeValue(generator, item));
+        if (concluido) {
+            generator.writeEndArray();
+            // Fecha também a saída da resposta, que fica encerrada (o Spark não acrescenta nada ao corpo comprimido)
+            generator.close();
+            return "";
+        }
+
+        if (!raw.isCommitted()) {
+            // Nada foi enviado ainda: descarta o que está no buffer e responde com erro
+            raw.resetBuffer();
+            raw.setHeader("Content-Encoding", null);
+            response.status(500);
+            return "{\"error\":\"Ocorreu um erro ao listar os registros.\"}";
+        }
+        generator.close();
+        return "";
+    }
+
+    /**
+     * Escreve na resposta um corpo JSON já serializado (ex: uma página do feed de postagens).
+     * @param corpo O corpo, já comprimido com a codificação informada.
+     * @param codificacao A codificação do corpo (escolhida com {@link CompressaoHttp#negociar}), ou null se não for comprimido.
+     * @return Uma string vazia (o corpo já foi escrito).
+     */
+    static String escreverBytes(Response response, byte[] corpo, CompressaoHttp.Codificacao codificacao) throws IOException {
+        HttpServletResponse raw = response.raw();
+        raw.setContentType("application/json");
+        raw.setCharacterEncoding("UTF-8");
+        CompressaoHttp.enviar(raw, corpo, codificacao);
+        return "";
+    }
+}
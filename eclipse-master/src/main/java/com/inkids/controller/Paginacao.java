@@ -0,0 +1,53 @@
+package com.inkids.controller;
+
+import spark.Request;
+
+/**
+ * Leitura dos parâmetros de paginação por cursor (?limit=&after=) das rotas de listagem.
+ * Quando nenhum dos dois parâmetros é enviado, as rotas mantêm a resposta antiga
+ * (array com todos os registros), para não quebrar clientes existentes.
+ */
+final class Paginacao {
+
+    static final int LIMITE_PADRAO = 20;
+    static final int LIMITE_MAXIMO = 100;
+
+    private Paginacao() {
+    }
+
+    /**
+     * Indica se a requisição pediu uma listagem paginada.
+     */
+    static boolean solicitada(Request request) {
+        return request.queryParams("limit") != null || request.queryParams("after") != null;
+    }
+
+    /**
+     * Lê o tamanho da página, limitado a {@link #LIMITE_MAXIMO}.
+     * @throws IllegalArgumentException se o parâmetro não for um número positivo.
+     */
+    static int limite(Request request) {
+        String valor = request.queryParams("limit");
+        if (valor == null || valor.isEmpty()) {
+            return LIMITE_PADRAO;
+        }
+        try {
+            int limite = Integer.parseInt(valor);
+            if (limite <= 0) {
+                throw new IllegalArgumentException("Parâmetro limit deve ser maior que zero.");
+            }
+            return Math.min(limite, LIMITE_MAXIMO);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parâmetro limit inválido.");
+        }
+    }
+
+    /**
+     * Lê o cursor opaco da página anterior.
+     * @return O cursor, ou null para a primeira página.
+     */
+    static String cursor(Request request) {
+        String valor = request.queryParams("after");
+        return valor == null || valor.isEmpty() ? null : valor;
+    }
+}
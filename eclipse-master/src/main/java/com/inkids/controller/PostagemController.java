@@ -1,9 +1,16 @@
 package com.inkids.controller;
 
+import com.inkids.dao.Tabela;
 import com.inkids.model.Postagem;
+import com.inkids.model.StatusImagem;
+import com.inkids.service.FeedPostagens;
 import com.inkids.service.PostagemService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import spark.Request;
+import spark.Response;
+
+import java.io.IOException;
 
 import static spark.Spark.*;
 
@@ -12,6 +19,8 @@ import static spark.Spark.*;
  */
 public class PostagemController {
 
+    private static final int MAX_ESPERA_IMAGEM_SEGUNDOS = 30;
+
     private final PostagemService postagemService;
     private final ObjectMapper objectMapper;
 
@@ -25,7 +34,7 @@ public class PostagemController {
 
     private void setupRoutes() {
 
-        // Endpoint: Criar uma nova postagem (com geração de imagem por IA)
+        // Endpoint: Criar uma nova postagem (a imagem por IA é gerada em segundo plano)
         post("/api/postagens", (request, response) -> {
             response.type("application/json");
             try {
@@ -53,6 +62,10 @@ public class PostagemController {
                 Postagem postagem = postagemService.buscarPostagemPorId(id);
 
                 if (postagem != null) {
+                    if (RespostaCondicional.naoModificado(request, response,
+                            RespostaCondicional.etag("postagem", id, postagem.getUpdatedAt()))) {
+                        return "";
+                    }
                     response.status(200); // 200 OK
                     return objectMapper.writeValueAsString(postagem);
                 } else {
@@ -65,7 +78,39 @@ public class PostagemController {
             }
         });
 
+        // Endpoint: Consultar o andamento da geração da imagem de uma postagem
+        // Com ?aguardar=<segundos> a resposta espera a imagem ficar pronta (até 30 segundos). Com muitos clientes
+        // já aguardando (inkids.imagem.maxAguardando), responde na hora com o status atual.
+        get("/api/postagens/:id/imagem/status", (request, response) -> {
+            response.type("application/json");
+            try {
+                int id = Integer.parseInt(request.params(":id"));
+                String aguardarParam = request.queryParams("aguardar");
+                StatusImagem status;
+                if (aguardarParam != null && !aguardarParam.isEmpty()) {
+                    int segundos = Math.min(Math.max(Integer.parseInt(aguardarParam), 0), MAX_ESPERA_IMAGEM_SEGUNDOS);
+                    status = postagemService.aguardarImagem(id, segundos * 1000L);
+                } else {
+                    status = postagemService.buscarStatusImagem(id);
+                }
+
+                if (status != null) {
+                    response.status(200);
+                    return objectMapper.writeValueAsString(status);
+                } else {
+                    response.status(404);
+                    return "{\"error\":\"Postagem não encontrada.\"}";
+                }
+            } catch (NumberFormatException e) {
+                response.status(400);
+                return "{\"error\":\"ID de postagem ou tempo de espera inválido.\"}";
+            }
+        });
+
         // Endpoint: Listar todas as postagens ou as de um usuário específico
+        // Com ?limit=&after= a listagem é paginada por cursor. As páginas mais recentes (e a listagem
+        // completa, quando há poucas postagens) saem prontas do feed em memória, sem consultar o banco.
+        // Com If-None-Match, a resposta é 304 se as postagens não mudaram (ETag da versão da tabela ou do feed).
         get("/api/postagens", (request, response) -> {
             response.type("application/json");
             String usuarioIdParam = request.queryParams("usuarioId");
@@ -74,14 +119,50 @@ public class PostagemController {
                 // Lista postagens por usuário
                 try {
                     int usuarioId = Integer.parseInt(usuarioIdParam);
-                    return objectMapper.writeValueAsString(postagemService.listarPostagensPorUsuario(usuarioId));
+                    if (RespostaCondicional.naoModificado(request, response, RespostaCondicional.etag(Tabela.POSTAGENS))) {
+                        return "";
+                    }
+                    if (Paginacao.solicitada(request)) {
+                        return objectMapper.writeValueAsString(postagemService.listarPaginaPostagensPorUsuario(
+                                usuarioId, Paginacao.limite(request), Paginacao.cursor(request)));
+                    }
+                    return JsonStreaming.<Postagem>escreverArray(request, response, objectMapper,
+                            handler -> postagemService.percorrerPostagensPorUsuario(usuarioId, handler));
                 } catch (NumberFormatException e) {
                     response.status(400);
                     return "{\"error\":\"ID de usuário inválido.\"}";
+                } catch (IllegalArgumentException e) {
+                    response.status(400);
+                    return "{\"error\":\"" + e.getMessage() + "\"}";
+                }
+            } else if (Paginacao.solicitada(request)) {
+                // Lista uma página de postagens
+                try {
+                    int limite = Paginacao.limite(request);
+                    String cursor = Paginacao.cursor(request);
+                    FeedPostagens.Conteudo doFeed = postagemService.buscarPaginaNoFeed(limite, cursor);
+                    if (doFeed != null) {
+                        return responderDoFeed(request, response, doFeed);
+                    }
+                    if (RespostaCondicional.naoModificado(request, response, RespostaCondicional.etag(Tabela.POSTAGENS))) {
+                        return "";
+                    }
+                    return objectMapper.writeValueAsString(postagemService.listarPaginaPostagens(limite, cursor));
+                } catch (IllegalArgumentException e) {
+                    response.status(400);
+                    return "{\"error\":\"" + e.getMessage() + "\"}";
                 }
             } else {
-                // Lista todas as postagens
-                return objectMapper.writeValueAsString(postagemService.listarTodasPostagens());
+                // Lista todas as postagens: do feed, se todas couberem nele, ou escrevendo cada uma
+                // na resposta assim que é lida do banco
+                FeedPostagens.Conteudo doFeed = postagemService.buscarTodasNoFeed();
+                if (doFeed != null) {
+                    return responderDoFeed(request, response, doFeed);
+                }
+                if (RespostaCondicional.naoModificado(request, response, RespostaCondicional.etag(Tabela.POSTAGENS))) {
+                    return "";
+                }
+                return JsonStreaming.escreverArray(request, response, objectMapper, postagemService::percorrerTodasPostagens);
             }
         });
 
@@ -127,4 +208,15 @@ public class PostagemController {
             }
         });
     }
-}
\ No newline at end of file
+
+    // Responde com o JSON pronto do feed; o ETag é o da versão do feed, que muda junto com o conteúdo dele.
+    // A versão comprimida fica guardada no feed, para não comprimir de novo a cada acerto.
+    private static String responderDoFeed(Request request, Response response, FeedPostagens.Conteudo conteudo) throws IOException {
+        if (RespostaCondicional.naoModificado(request, response, RespostaCondicional.etag(conteudo.getIdentificadorVersao()))) {
+            return "";
+        }
+        CompressaoHttp.Codificacao codificacao = CompressaoHttp.negociar(request, response, conteudo.getCorpo().length);
+        byte[] corpo = codificacao != null ? conteudo.getCorpo(codificacao.getNome(), codificacao::comprimir) : conteudo.getCorpo();
+        return JsonStreaming.escreverBytes(response, corpo, codificacao);
+    }
+}
@@ -0,0 +1,88 @@
+package com.inkids.controller;
+
+import com.inkids.dao.Tabela;
+import spark.Request;
+import spark.Response;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * ETags e GET condicional (If-None-Match / 304 Not Modified) das rotas de leitura.
+ * - Listagens: o ETag vem da versão da tabela ({@link Tabela}), então o 304 sai sem consultar o banco.
+ * - Um registro: o ETag vem do updated_at dele (ou da versão da tabela, se ela não tiver essa coluna).
+ * - Respostas montadas em memória (ex: o feed de postagens): o ETag vem da versão de quem as montou.
+ * As respostas usam Cache-Control: no-cache, para que o navegador sempre revalide antes de reaproveitar a cópia.
+ */
+final class RespostaCondicional {
+
+    static final String CACHE_REVALIDAR = "no-cache";
+
+    private RespostaCondicional() {
+    }
+
+    /**
+     * ETag de uma listagem da tabela. O mesmo para todas as URLs da tabela (ex: páginas diferentes),
+     * já que o cliente guarda um ETag por URL.
+     */
+    static String etag(Tabela tabela) {
+        return etag(tabela.getIdentificadorVersao());
+    }
+
+    /**
+     * ETag a partir de um identificador de versão já pronto (ex: o do feed de postagens).
+     */
+    static String etag(String identificadorVersao) {
+        return "\"" + identificadorVersao + "\"";
+    }
+
+    /**
+     * ETag de um registro, a partir do updated_at dele.
+     * @return O ETag, ou null se o registro não tiver data de atualização.
+     */
+    static String etag(String recurso, int id, LocalDateTime updatedAt) {
+        if (updatedAt == null) {
+            return null;
+        }
+        long micros = updatedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + updatedAt.getNano() / 1_000;
+        return "\"" + recurso + "-" + id + "-" + Long.toString(micros, 36) + "\"";
+    }
+
+    /**
+     * Define o ETag da resposta e verifica se o cliente já tem esta versão (If-None-Match).
+     * O ETag recebe o sufixo da compressão que o cliente aceita ({@link CompressaoHttp#etagDaVariante}).
+     * @param etag O ETag da resposta; se for null, nada é feito.
+     * @return true se a resposta foi marcada como 304 (a rota deve retornar uma string vazia, sem corpo).
+     */
+    static boolean naoModificado(Request request, Response response, String etag) {
+        if (etag == null) {
+            return false;
+        }
+        etag = CompressaoHttp.etagDaVariante(request, etag);
+        CompressaoHttp.marcarVary(request, response);
+        response.header("ETag", etag);
+        response.header("Cache-Control", CACHE_REVALIDAR);
+        if (corresponde(request.headers("If-None-Match"), etag)) {
+            response.status(304); // 304 Not Modified
+            response.raw().setContentType(null);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Verifica se o ETag está na lista do If-None-Match (comparação fraca, como manda o HTTP para o If-None-Match).
+     */
+    static boolean corresponde(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidata : ifNoneMatch.split(",")) {
+            String valor = candidata.trim();
+            if (valor.equals("*") || valor.equals(etag) || valor.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,10 +1,16 @@
 package com.inkids.controller;
 
+import com.inkids.config.Configuracao;
+import com.inkids.dao.Tabela;
+import com.inkids.model.ResultadoLote;
 import com.inkids.model.Tarefa;
 import com.inkids.service.TarefaService;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import java.util.List;
+
 import static spark.Spark.*;
 
 /**
@@ -12,6 +18,9 @@ import static spark.Spark.*;
  */
 public class TarefaController {
 
+    // Número máximo de itens aceitos em uma requisição de lote
+    private static final int MAX_ITENS_LOTE = Configuracao.getInt("inkids.batch.maxItens", 1000);
+
     private final TarefaService tarefaService;
     private final ObjectMapper objectMapper;
 
@@ -45,11 +54,40 @@ public class TarefaController {
             }
         });
 
+        // Endpoint: Criar várias tarefas de uma vez (array JSON)
+        post("/api/tarefas/batch", (request, response) -> {
+            response.type("application/json");
+            List<Tarefa> tarefas;
+            try {
+                tarefas = objectMapper.readValue(request.body(), new TypeReference<List<Tarefa>>() {});
+            } catch (Exception e) {
+                response.status(400);
+                return "{\"error\":\"O corpo da requisição deve ser um array de tarefas.\"}";
+            }
+            if (tarefas == null || tarefas.isEmpty() || tarefas.size() > MAX_ITENS_LOTE) {
+                response.status(400);
+                return "{\"error\":\"O lote deve ter entre 1 e " + MAX_ITENS_LOTE + " itens.\"}";
+            }
+
+            ResultadoLote resultado = tarefaService.criarTarefasEmLote(tarefas);
+            if (resultado == null) {
+                response.status(500);
+                return "{\"error\":\"Não foi possível inserir o lote. Nenhum item foi salvo.\"}";
+            }
+            // 201 se ao menos um item foi criado; os rejeitados vêm detalhados em "resultados"
+            response.status(resultado.getInseridos() > 0 ? 201 : 400);
+            return objectMapper.writeValueAsString(resultado);
+        });
+
         // Endpoint: Buscar uma tarefa por ID
+        // As tarefas não têm updated_at: o ETag é o da versão da tabela, verificado antes da consulta.
         get("/api/tarefas/:id", (request, response) -> {
             response.type("application/json");
             try {
                 int id = Integer.parseInt(request.params(":id"));
+                if (RespostaCondicional.naoModificado(request, response, RespostaCondicional.etag(Tabela.TAREFAS))) {
+                    return "";
+                }
                 Tarefa tarefa = tarefaService.buscarTarefaPorId(id);
 
                 if (tarefa != null) {
@@ -65,11 +103,25 @@ public class TarefaController {
             }
         });
 
-        // Endpoint: Listar todas as tarefas
+        // Endpoint: Listar todas as tarefas (ou uma página, com ?limit=&after=)
+        // Com If-None-Match, a resposta é 304 se nenhuma tarefa mudou desde a versão que o cliente tem.
         get("/api/tarefas", (request, response) -> {
             response.type("application/json");
+            if (RespostaCondicional.naoModificado(request, response, RespostaCondicional.etag(Tabela.TAREFAS))) {
+                return "";
+            }
+            if (Paginacao.solicitada(request)) {
+                try {
+                    return objectMapper.writeValueAsString(
+                            tarefaService.listarPaginaTarefas(Paginacao.limite(request), Paginacao.cursor(request)));
+                } catch (IllegalArgumentException e) {
+                    response.status(400);
+                    return "{\"error\":\"" + e.getMessage() + "\"}";
+                }
+            }
             response.status(200);
-            return objectMapper.writeValueAsString(tarefaService.listarTodasTarefas());
+            // Escreve cada tarefa na resposta assim que é lida do banco
+            return JsonStreaming.escreverArray(request, response, objectMapper, tarefaService::percorrerTodasTarefas);
         });
 
         // Endpoint: Atualizar uma tarefa
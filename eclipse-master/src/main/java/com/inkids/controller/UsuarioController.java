@@ -1,10 +1,16 @@
 package com.inkids.controller;
 
+import com.inkids.config.Configuracao;
+import com.inkids.dao.Tabela;
+import com.inkids.model.ResultadoLote;
 import com.inkids.model.Usuario;
 import com.inkids.service.UsuarioService;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import java.util.List;
+
 import static spark.Spark.*;
 
 /**
@@ -12,6 +18,9 @@ import static spark.Spark.*;
  */
 public class UsuarioController {
 
+    // Número máximo de itens aceitos em uma requisição de lote
+    private static final int MAX_ITENS_LOTE = Configuracao.getInt("inkids.batch.maxItens", 1000);
+
     private final UsuarioService usuarioService;
     private final ObjectMapper objectMapper;
 
@@ -46,6 +55,31 @@ public class UsuarioController {
             }
         });
 
+        // Endpoint: Criar vários usuários de uma vez (array JSON)
+        post("/api/usuarios/batch", (request, response) -> {
+            response.type("application/json");
+            List<Usuario> usuarios;
+            try {
+                usuarios = objectMapper.readValue(request.body(), new TypeReference<List<Usuario>>() {});
+            } catch (Exception e) {
+                response.status(400);
+                return "{\"error\":\"O corpo da requisição deve ser um array de usuários.\"}";
+            }
+            if (usuarios == null || usuarios.isEmpty() || usuarios.size() > MAX_ITENS_LOTE) {
+                response.status(400);
+                return "{\"error\":\"O lote deve ter entre 1 e " + MAX_ITENS_LOTE + " itens.\"}";
+            }
+
+            ResultadoLote resultado = usuarioService.criarUsuariosEmLote(usuarios);
+            if (resultado == null) {
+                response.status(500);
+                return "{\"error\":\"Não foi possível inserir o lote. Nenhum item foi salvo.\"}";
+            }
+            // 201 se ao menos um item foi criado; os rejeitados vêm detalhados em "resultados"
+            response.status(resultado.getInseridos() > 0 ? 201 : 400);
+            return objectMapper.writeValueAsString(resultado);
+        });
+
         // Endpoint: Buscar um usuário por ID
         get("/api/usuarios/:id", (request, response) -> {
             response.type("application/json");
@@ -54,6 +88,10 @@ public class UsuarioController {
                 Usuario usuario = usuarioService.buscarUsuarioPorId(id);
 
                 if (usuario != null) {
+                    if (RespostaCondicional.naoModificado(request, response,
+                            RespostaCondicional.etag("usuario", id, usuario.getUpdatedAt()))) {
+                        return "";
+                    }
                     response.status(200); // 200 OK
                     return objectMapper.writeValueAsString(usuario);
                 } else {
@@ -66,9 +104,22 @@ public class UsuarioController {
             }
         });
 
-        // Endpoint: Listar todos os usuários
+        // Endpoint: Listar todos os usuários (ou uma página, com ?limit=&after=)
+        // Com If-None-Match, a resposta é 304 se nenhum usuário mudou desde a versão que o cliente tem.
         get("/api/usuarios", (request, response) -> {
             response.type("application/json");
+            if (RespostaCondicional.naoModificado(request, response, RespostaCondicional.etag(Tabela.USUARIOS))) {
+                return "";
+            }
+            if (Paginacao.solicitada(request)) {
+                try {
+                    return objectMapper.writeValueAsString(
+                            usuarioService.listarPaginaUsuarios(Paginacao.limite(request), Paginacao.cursor(request)));
+                } catch (IllegalArgumentException e) {
+                    response.status(400);
+                    return "{\"error\":\"" + e.getMessage() + "\"}";
+                }
+            }
             response.status(200);
             return objectMapper.writeValueAsString(usuarioService.listarTodosUsuarios());
         });
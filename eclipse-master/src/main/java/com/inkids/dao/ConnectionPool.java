@@ -0,0 +1,196 @@
+package com.inkids.dao;
+
+import com.inkids.config.Configuracao;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool de conexões compartilhado por todos os DAOs.
+ * Mantém um número limitado de conexões abertas com o banco, evitando o custo de abrir
+ * uma conexão nova a cada operação. O banco e os limites podem ser ajustados pelas configurações:
+ * <ul>
+ *   <li>inkids.db.mode - "mem" (padrão, volátil) ou "file" (persistido em disco)</li>
+ *   <li>inkids.db.path - caminho do arquivo no modo "file" (padrão ./data/inkidsdb)</li>
+ *   <li>inkids.db.cacheSizeKb - cache de páginas do H2 no modo "file", em KB (padrão 65536)</li>
+ *   <li>inkids.db.writeDelayMs - atraso máximo para gravar alterações em disco no modo "file" (padrão 500)</li>
+ *   <li>inkids.db.pool.minIdle - conexões ociosas mínimas (padrão 2)</li>
+ *   <li>inkids.db.pool.maxSize - tamanho máximo do pool (padrão 10)</li>
+ *   <li>inkids.db.pool.acquireTimeoutMs - tempo máximo de espera por uma conexão (padrão 5000)</li>
+ *   <li>inkids.db.pool.validationTimeoutMs - tempo máximo da validação de uma conexão (padrão 1000)</li>
+ *   <li>inkids.db.pool.leakDetectionMs - tempo a partir do qual uma conexão emprestada é reportada como vazamento (padrão 10000, 0 desliga)</li>
+ *   <li>inkids.db.streaming.maxConexoes - listagens em streaming simultâneas (padrão metade do pool, mínimo 1)</li>
+ * </ul>
+ * Uma listagem em streaming fica com a conexão enquanto as linhas são escritas para o cliente, então
+ * poucos clientes lentos poderiam ocupar o pool inteiro. O limite de listagens simultâneas deixa o resto
+ * do pool livre para as demais operações; uma listagem que não consegue vaga a tempo falha.
+ */
+public final class ConnectionPool {
+
+    // --- Detalhes da Conexão com o Banco de Dados ---
+    // Modo "mem": H2 em memória, volátil, ótimo para desenvolvimento e testes. Os dados são perdidos quando a aplicação para.
+    // Modo "file": H2 com MVStore em disco, os dados sobrevivem a reinicializações.
+    private static final String JDBC_URL_MEMORIA = "jdbc:h2:mem:inkidsdb;DB_CLOSE_DELAY=-1";
+    private static final String JDBC_USER = "sa";
+    private static final String JDBC_PASSWORD = "";
+
+    private static volatile HikariDataSource dataSource;
+
+    // Métricas de aquisição de conexões, usadas para dimensionar o pool
+    private static final LongAdder aquisicoes = new LongAdder();
+    private static final LongAdder falhasAquisicao = new LongAdder();
+    private static final LongAdder tempoAquisicaoNanos = new LongAdder();
+    private static final AtomicLong maiorTempoAquisicaoNanos = new AtomicLong();
+
+    private static final int MAX_STREAMING = Math.max(1, Configuracao.getInt("inkids.db.streaming.maxConexoes", Math.max(1, tamanhoMaximo() / 2)));
+    private static final Semaphore vagasStreaming = new Semaphore(MAX_STREAMING);
+    private static final LongAdder streamingRecusados = new LongAdder();
+
+    private ConnectionPool() {
+    }
+
+    /**
+     * Retorna o DataSource compartilhado, criando o pool na primeira chamada.
+     * @return O DataSource com pool de conexões.
+     */
+    public static DataSource getDataSource() {
+        HikariDataSource ds = dataSource;
+        if (ds == null) {
+            synchronized (ConnectionPool.class) {
+                ds = dataSource;
+                if (ds == null) {
+                    ds = criarDataSource();
+                    dataSource = ds;
+                }
+            }
+        }
+        return ds;
+    }
+
+    private static HikariDataSource criarDataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("inkids-pool");
+        config.setJdbcUrl(getJdbcUrl());
+        config.setUsername(JDBC_USER);
+        config.setPassword(JDBC_PASSWORD);
+
+        int maxSize = tamanhoMaximo();
+        config.setMaximumPoolSize(maxSize);
+        config.setMinimumIdle(Math.min(maxSize, Math.max(0, Configuracao.getInt("inkids.db.pool.minIdle", 2))));
+        config.setConnectionTimeout(Configuracao.getLong("inkids.db.pool.acquireTimeoutMs", 5000));
+        // A validação usa Connection.isValid(), suportado pelo driver do H2
+        config.setValidationTimeout(Configuracao.getLong("inkids.db.pool.validationTimeoutMs", 1000));
+        long leakMs = Configuracao.getLong("inkids.db.pool.leakDetectionMs", 10000);
+        if (leakMs > 0) {
+            config.setLeakDetectionThreshold(leakMs);
+        }
+        config.setRegisterMbeans(true);
+
+        System.out.println("Pool de conexões iniciado (" + config.getJdbcUrl() + ", min=" + config.getMinimumIdle() + ", max=" + maxSize + ").");
+        return new HikariDataSource(config);
+    }
+
+    private static int tamanhoMaximo() {
+        return Math.max(1, Configuracao.getInt("inkids.db.pool.maxSize", 10));
+    }
+
+    /**
+     * Monta a URL JDBC de acordo com o modo de armazenamento configurado.
+     * @return A URL JDBC do banco.
+     */
+    public static String getJdbcUrl() {
+        String modo = Configuracao.getString("inkids.db.mode", "mem");
+        if ("file".equalsIgnoreCase(modo)) {
+            String caminho = Configuracao.getString("inkids.db.path", "./data/inkidsdb");
+            // DB_CLOSE_ON_EXIT=FALSE: o banco é fechado pelo shutdown do pool, depois que as conexões são devolvidas
+            return "jdbc:h2:file:" + caminho
+                    + ";CACHE_SIZE=" + Configuracao.getInt("inkids.db.cacheSizeKb", 65536)
+                    + ";WRITE_DELAY=" + Configuracao.getInt("inkids.db.writeDelayMs", 500)
+                    + ";DB_CLOSE_ON_EXIT=FALSE";
+        }
+        if (!"mem".equalsIgnoreCase(modo)) {
+            System.err.println("Modo de armazenamento desconhecido: '" + modo + "'. Usando banco em memória.");
+        }
+        return JDBC_URL_MEMORIA;
+    }
+
+    /**
+     * Registra o tempo gasto para obter uma conexão do pool.
+     * @param nanos Duração da aquisição em nanossegundos.
+     * @param sucesso true se a conexão foi obtida.
+     */
+    static void registrarAquisicao(long nanos, boolean sucesso) {
+        if (!sucesso) {
+            falhasAquisicao.increment();
+            return;
+        }
+        aquisicoes.increment();
+        tempoAquisicaoNanos.add(nanos);
+        maiorTempoAquisicaoNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Reserva uma vaga para uma listagem em streaming, esperando no máximo o tempo de aquisição de conexões.
+     * @return true se a vaga foi reservada; ela deve ser devolvida com {@link #liberarStreaming()}.
+     */
+    static boolean reservarStreaming() {
+        try {
+            if (vagasStreaming.tryAcquire(Configuracao.getLong("inkids.db.pool.acquireTimeoutMs", 5000), TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        streamingRecusados.increment();
+        return false;
+    }
+
+    static void liberarStreaming() {
+        vagasStreaming.release();
+    }
+
+    /**
+     * Retorna um retrato das métricas atuais do pool.
+     * @return Um mapa com os contadores do pool, pronto para ser serializado em JSON.
+     */
+    public static Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        HikariDataSource ds = dataSource;
+        if (ds != null && !ds.isClosed()) {
+            HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+            metricas.put("tamanhoMaximo", ds.getMaximumPoolSize());
+            metricas.put("ociosasMinimas", ds.getMinimumIdle());
+            metricas.put("ativas", pool.getActiveConnections());
+            metricas.put("ociosas", pool.getIdleConnections());
+            metricas.put("total", pool.getTotalConnections());
+            metricas.put("threadsAguardando", pool.getThreadsAwaitingConnection());
+        }
+        long total = aquisicoes.sum();
+        metricas.put("aquisicoes", total);
+        metricas.put("falhasAquisicao", falhasAquisicao.sum());
+        metricas.put("tempoMedioAquisicaoMs", total > 0 ? TimeUnit.NANOSECONDS.toMicros(tempoAquisicaoNanos.sum() / total) / 1000.0 : 0.0);
+        metricas.put("maiorTempoAquisicaoMs", TimeUnit.NANOSECONDS.toMicros(maiorTempoAquisicaoNanos.get()) / 1000.0);
+        metricas.put("streamingMaximo", MAX_STREAMING);
+        metricas.put("streamingAtivos", MAX_STREAMING - vagasStreaming.availablePermits());
+        metricas.put("streamingRecusados", streamingRecusados.sum());
+        return metricas;
+    }
+
+    /**
+     * Fecha todas as conexões do pool. Deve ser chamado no encerramento da aplicação.
+     */
+    public static synchronized void shutdown() {
+        if (dataSource != null) {
+            dataSource.close();
+            dataSource = null;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.inkids.dao;
 
 import com.inkids.model.Contato;
+import com.inkids.model.Pagina;
 
 import java.sql.*;
 import java.time.LocalDateTime;
@@ -26,7 +27,7 @@ public class ContatoDAO extends DAO {
         String sql = "INSERT INTO Contatos (nome, email, telefone, assunto, mensagem, created_at) VALUES (?, ?, ?, ?, ?, ?)";
         int generatedId = -1;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 pstmt.setString(1, contato.getNome());
                 pstmt.setString(2, contato.getEmail());
                 pstmt.setString(3, contato.getTelefone());
@@ -49,6 +50,9 @@ public class ContatoDAO extends DAO {
                 close();
             }
         }
+        if (generatedId != -1) {
+            Tabela.CONTATOS.alterada();
+        }
         return generatedId;
     }
 
@@ -61,18 +65,11 @@ public class ContatoDAO extends DAO {
         String sql = "SELECT * FROM Contatos WHERE id = ?";
         Contato contato = null;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setInt(1, id);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     if (rs.next()) {
-                        contato = new Contato();
-                        contato.setId(rs.getInt("id"));
-                        contato.setNome(rs.getString("nome"));
-                        contato.setEmail(rs.getString("email"));
-                        contato.setTelefone(rs.getString("telefone"));
-                        contato.setAssunto(rs.getString("assunto"));
-                        contato.setMensagem(rs.getString("mensagem"));
-                        contato.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+                        contato = mapear(rs);
                     }
                 }
             } catch (SQLException e) {
@@ -92,18 +89,10 @@ public class ContatoDAO extends DAO {
         String sql = "SELECT * FROM Contatos ORDER BY created_at DESC";
         List<Contato> contatos = new ArrayList<>();
         if (conectar()) {
-            try (Statement stmt = connection.createStatement();
+            try (Statement stmt = getConnection().createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
-                    Contato contato = new Contato();
-                    contato.setId(rs.getInt("id"));
-                    contato.setNome(rs.getString("nome"));
-                    contato.setEmail(rs.getString("email"));
-                    contato.setTelefone(rs.getString("telefone"));
-                    contato.setAssunto(rs.getString("assunto"));
-                    contato.setMensagem(rs.getString("mensagem"));
-                    contato.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                    contatos.add(contato);
+                    contatos.add(mapear(rs));
                 }
             } catch (SQLException e) {
                 System.err.println("Erro ao listar contatos: " + e.getMessage());
@@ -113,6 +102,53 @@ public class ContatoDAO extends DAO {
         }
         return contatos;
     }
+
+    /**
+     * Lista uma página de mensagens de contato, ordenadas pela mais recente.
+     * Usa paginação por chave (created_at, id): o custo de cada página não depende
+     * de quantas páginas vieram antes.
+     * @param limite O número máximo de mensagens na página.
+     * @param apos O cursor da página anterior, ou null para a primeira página.
+     * @return A página de mensagens com o cursor da próxima página.
+     */
+    public Pagina<Contato> getPage(int limite, Cursor apos) {
+        String sql = apos == null
+                ? "SELECT * FROM Contatos ORDER BY created_at DESC, id DESC LIMIT ?"
+                : "SELECT * FROM Contatos WHERE created_at <= ? AND (created_at < ? OR (created_at = ? AND id < ?)) "
+                  + "ORDER BY created_at DESC, id DESC LIMIT ?";
+        List<Contato> contatos = new ArrayList<>();
+        if (conectar()) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+                int i = 1;
+                if (apos != null) {
+                    Timestamp chave = apos.getChaveTimestamp();
+                    pstmt.setTimestamp(i++, chave);
+                    pstmt.setTimestamp(i++, chave);
+                    pstmt.setTimestamp(i++, chave);
+                    pstmt.setInt(i++, apos.getId());
+                }
+                // Busca um item a mais para saber se existe uma próxima página
+                pstmt.setInt(i, limite + 1);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        contatos.add(mapear(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao listar página de contatos: " + e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        String proximoCursor = null;
+        if (contatos.size() > limite) {
+            contatos.remove(limite);
+            Contato ultimo = contatos.get(limite - 1);
+            proximoCursor = Cursor.of(ultimo.getCreatedAt(), ultimo.getId()).encode();
+        }
+        return new Pagina<>(contatos, proximoCursor);
+    }
     
     /**
      * Deleta uma mensagem de contato do banco de dados pelo seu ID.
@@ -123,7 +159,7 @@ public class ContatoDAO extends DAO {
         String sql = "DELETE FROM Contatos WHERE id = ?";
         boolean success = false;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setInt(1, id);
                 success = pstmt.executeUpdate() > 0;
             } catch (SQLException e) {
@@ -132,6 +168,24 @@ public class ContatoDAO extends DAO {
                 close();
             }
         }
+        if (success) {
+            Tabela.CONTATOS.alterada();
+        }
         return success;
     }
+
+    /**
+     * Converte a linha atual do ResultSet em um objeto Contato.
+     */
+    private Contato mapear(ResultSet rs) throws SQLException {
+        Contato contato = new Contato();
+        contato.setId(rs.getInt("id"));
+        contato.setNome(rs.getString("nome"));
+        contato.setEmail(rs.getString("email"));
+        contato.setTelefone(rs.getString("telefone"));
+        contato.setAssunto(rs.getString("assunto"));
+        contato.setMensagem(rs.getString("mensagem"));
+        contato.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        return contato;
+    }
 }
\ No newline at end of file
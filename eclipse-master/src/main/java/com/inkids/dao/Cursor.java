@@ -0,0 +1,75 @@
+package com.inkids.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Cursor de paginação por chave (keyset pagination).
+ * Guarda a chave de ordenação e o ID do último item de uma página. Para o cliente,
+ * o cursor é apenas uma string opaca (Base64 URL-safe).
+ */
+public final class Cursor {
+
+    private final String chave;
+    private final int id;
+
+    public Cursor(String chave, int id) {
+        this.chave = chave;
+        this.id = id;
+    }
+
+    /**
+     * Cria um cursor cuja chave de ordenação é uma data/hora.
+     */
+    public static Cursor of(LocalDateTime chave, int id) {
+        return new Cursor(chave.toString(), id);
+    }
+
+    public String getChave() {
+        return chave;
+    }
+
+    public Timestamp getChaveTimestamp() {
+        try {
+            return Timestamp.valueOf(LocalDateTime.parse(chave));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor inválido.", e);
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Codifica o cursor na string opaca entregue ao cliente.
+     */
+    public String encode() {
+        String bruto = chave + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bruto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica um cursor recebido do cliente.
+     * @param valor A string opaca gerada por {@link #encode()}.
+     * @return O cursor decodificado.
+     * @throws IllegalArgumentException se o valor não for um cursor válido.
+     */
+    public static Cursor decode(String valor) {
+        try {
+            String bruto = new String(Base64.getUrlDecoder().decode(valor), StandardCharsets.UTF_8);
+            // A chave pode conter '|', então o ID é sempre o que vem depois do último separador
+            int separador = bruto.lastIndexOf('|');
+            if (separador < 0) {
+                throw new IllegalArgumentException("Cursor inválido.");
+            }
+            return new Cursor(bruto.substring(0, separador), Integer.parseInt(bruto.substring(separador + 1)));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException também é uma IllegalArgumentException
+            throw new IllegalArgumentException("Cursor inválido.", e);
+        }
+    }
+}
@@ -1,12 +1,10 @@
 package com.inkids.dao;
 
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import com.inkids.config.Configuracao;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Scanner;
 
 /**
  * Classe base para Acesso a Dados (Data Access Object).
@@ -14,44 +12,112 @@ import java.util.Scanner;
  */
 public abstract class DAO {
 
-    // --- Detalhes da Conexão com o Banco de Dados ---
-    // Usando H2 em memória: volátil, ótimo para desenvolvimento e testes.
-    // Os dados são perdidos quando a aplicação para.
-    private static final String JDBC_URL = "jdbc:h2:mem:inkidsdb;DB_CLOSE_DELAY=-1";
-    private static final String JDBC_USER = "sa";
-    private static final String JDBC_PASSWORD = "";
+    // Quantidade de linhas que o driver busca por vez nas listagens em streaming.
+    // No H2 embarcado só vale com a execução sob demanda ligada (ver conectarStreaming)
+    protected static final int FETCH_SIZE = Configuracao.getInt("inkids.db.fetchSize", 500);
+
+    // Quantidade de linhas enviadas ao banco em cada executeBatch das inserções em lote
+    protected static final int TAMANHO_LOTE = Math.max(1, Configuracao.getInt("inkids.batch.tamanhoLote", 100));
 
-    protected Connection connection;
+    // Conexão emprestada do pool para a thread atual. Os DAOs são compartilhados entre
+    // as threads do servidor, então cada requisição precisa da sua própria conexão.
+    private final ThreadLocal<Connection> connection = new ThreadLocal<>();
 
     public DAO() {
-        this.connection = null;
     }
 
     /**
-     * Abre uma conexão com o banco de dados.
+     * Obtém uma conexão do pool para a thread atual.
      * @return true se a conexão for bem-sucedida, false caso contrário.
      */
     public boolean conectar() {
+        // Garante que a conexão não seja recriada se já estiver aberta
+        if (connection.get() != null) {
+            return true;
+        }
+        long inicio = System.nanoTime();
         try {
-            // Garante que a conexão não seja recriada se já estiver aberta
-            if (connection == null || connection.isClosed()) {
-                connection = DriverManager.getConnection(JDBC_URL, JDBC_USER, JDBC_PASSWORD);
+            Connection conn = ConnectionPool.getDataSource().getConnection();
+            long aquisicao = System.nanoTime() - inicio;
+            ConnectionPool.registrarAquisicao(aquisicao, true);
+            if (JdbcMonitorado.HABILITADO) {
+                // Mede preparação, execução e mapeamento dos comandos, atribuídos ao método do DAO que conectou
+                String metodo = JdbcMonitorado.metodoChamador();
+                JdbcMonitorado.registrarConexao(metodo, aquisicao);
+                conn = JdbcMonitorado.monitorar(conn, metodo);
             }
+            connection.set(conn);
             return true;
         } catch (SQLException e) {
+            ConnectionPool.registrarAquisicao(System.nanoTime() - inicio, false);
             System.err.println("Erro ao conectar ao banco de dados: " + e.getMessage());
             return false;
         }
     }
 
     /**
-     * Fecha a conexão com o banco de dados.
-     * @return true se a conexão for fechada com sucesso ou se já estava nula/fechada, false se ocorrer um erro.
+     * Obtém a conexão para uma listagem em streaming, que deve ser devolvida com {@link #closeStreaming()}.
+     * Por padrão o H2 monta o resultado inteiro da consulta antes da primeira linha; aqui a conexão passa a
+     * executar as consultas sob demanda (LAZY_QUERY_EXECUTION), lendo as linhas à medida que são percorridas.
+     * Para isso a ordenação da consulta precisa vir de um índice ("index sorted" no EXPLAIN); senão o H2 ainda
+     * ordena o resultado inteiro antes de começar.
+     * Como a conexão fica emprestada enquanto as linhas são escritas para o cliente, o número de listagens
+     * simultâneas é limitado (ver {@link ConnectionPool}).
+     * @return true se a conexão foi obtida, false se não há vaga para a listagem ou se a conexão falhou.
+     */
+    protected boolean conectarStreaming() {
+        if (!ConnectionPool.reservarStreaming()) {
+            System.err.println("Limite de listagens em streaming simultâneas atingido.");
+            return false;
+        }
+        if (!conectar()) {
+            ConnectionPool.liberarStreaming();
+            return false;
+        }
+        try (Statement stmt = getConnection().createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Erro ao preparar a conexão para streaming: " + e.getMessage());
+            closeStreaming();
+            return false;
+        }
+    }
+
+    /**
+     * Devolve ao pool a conexão obtida por {@link #conectarStreaming()}, já com a execução sob demanda desligada.
+     */
+    protected void closeStreaming() {
+        Connection conn = getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION FALSE");
+        } catch (SQLException e) {
+            // Os resultados não mudam com a execução sob demanda: a conexão pode voltar ao pool assim mesmo
+            System.err.println("Erro ao restaurar a conexão após o streaming: " + e.getMessage());
+        } finally {
+            close();
+            ConnectionPool.liberarStreaming();
+        }
+    }
+
+    /**
+     * Retorna a conexão obtida por {@link #conectar()} na thread atual.
+     * @return A conexão ativa, ou null se a thread não estiver conectada.
+     */
+    protected Connection getConnection() {
+        return connection.get();
+    }
+
+    /**
+     * Devolve a conexão da thread atual ao pool.
+     * @return true se a conexão for devolvida com sucesso ou se já estava nula, false se ocorrer um erro.
      */
     public boolean close() {
+        Connection conn = connection.get();
+        connection.remove();
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+            if (conn != null) {
+                conn.close();
             }
             return true;
         } catch (SQLException e) {
@@ -61,40 +127,18 @@ public abstract class DAO {
     }
 
     /**
-     * Inicializa o banco de dados executando o script SQL de `src/main/resources`.
+     * Inicializa o banco de dados aplicando as migrações pendentes de `src/main/resources/script-bd/migracoes`.
      * Este método deve ser chamado uma única vez no início da aplicação.
-     * Em um ambiente de produção, ferramentas como Flyway ou Liquibase são recomendadas.
+     * Os dados existentes são preservados: apenas as migrações ainda não registradas são executadas.
+     * @throws IllegalStateException se o esquema não puder ser migrado.
      */
     public static void initializeDatabase() {
-        // Carrega o arquivo script.sql da pasta resources
-        try (InputStream is = DAO.class.getResourceAsStream("/script-bd/script.sql")) {
-            if (is == null) {
-                System.err.println("Erro: script.sql não encontrado nos resources.");
-                return;
-            }
-
-            // Lê o conteúdo do script
-            String sqlScript;
-              try (Scanner scanner = new Scanner(is, StandardCharsets.UTF_8.name()).useDelimiter("\\A")) {
-               sqlScript = scanner.hasNext() ? scanner.next() : "";
-         }
-            
-            // Conecta ao banco e executa o script
-            try (Connection conn = DriverManager.getConnection(JDBC_URL, JDBC_USER, JDBC_PASSWORD);
-                 Statement stmt = conn.createStatement()) {
-                
-                // Executa o script inteiro
-                stmt.execute(sqlScript);
-                System.out.println("Banco de dados inicializado com sucesso.");
-
-            } catch (SQLException e) {
-                System.err.println("Erro ao inicializar o banco de dados: " + e.getMessage());
-                e.printStackTrace();
-            }
-
-        } catch (Exception e) {
-            System.err.println("Erro ao ler o arquivo script.sql: " + e.getMessage());
-            e.printStackTrace();
+        try {
+            MigrationRunner.migrar(ConnectionPool.getDataSource());
+            System.out.println("Banco de dados inicializado com sucesso.");
+        } catch (SQLException e) {
+            System.err.println("Erro ao inicializar o banco de dados: " + e.getMessage());
+            throw new IllegalStateException("Não foi possível migrar o esquema do banco de dados.", e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,269 @@
+package com.inkids.dao;
+
+import com.inkids.model.ImagemJob;
+import com.inkids.model.StatusImagem;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DAO para a fila de geração de imagens (tabela ImagemJobs).
+ * Os jobs são criados junto com a postagem (ver {@link PostagemDAO#insertWithImageJob})
+ * e consumidos pelos workers do ImagemJobService.
+ */
+public class ImagemJobDAO extends DAO {
+
+    private static final int TAMANHO_MAXIMO_ERRO = 1024;
+
+    public ImagemJobDAO() {
+        super();
+    }
+
+    /**
+     * Reserva os jobs pendentes cuja próxima tentativa já venceu, marcando-os como EM_PROCESSAMENTO.
+     * A reserva só vale se o job ainda estiver pendente, então um job nunca é entregue duas vezes.
+     * @param limite O número máximo de jobs a reservar.
+     * @return Os jobs reservados, com o número de tentativas já incrementado.
+     */
+    public List<ImagemJob> claimDue(int limite) {
+        // Junto com o job vem a preferência do autor da postagem sobre o reaproveitamento de imagens
+        String select = "SELECT j.*, COALESCE(u.reutilizar_imagens, TRUE) AS reutilizar_imagens FROM ImagemJobs j "
+                + "JOIN Postagens p ON p.id = j.postagem_id LEFT JOIN Usuarios u ON u.id = p.autor_id "
+                + "WHERE j.status = 'PENDENTE' AND j.proxima_tentativa <= ? ORDER BY j.proxima_tentativa, j.id LIMIT " + limite;
+        String update = "UPDATE ImagemJobs SET status = 'EM_PROCESSAMENTO', tentativas = tentativas + 1, updated_at = ? WHERE id = ? AND status = 'PENDENTE'";
+        List<ImagemJob> reservados = new ArrayList<>();
+        if (conectar()) {
+            try (PreparedStatement selectStmt = getConnection().prepareStatement(select);
+                 PreparedStatement updateStmt = getConnection().prepareStatement(update)) {
+                LocalDateTime agora = LocalDateTime.now();
+                selectStmt.setTimestamp(1, Timestamp.valueOf(agora));
+                List<ImagemJob> candidatos = new ArrayList<>();
+                try (ResultSet rs = selectStmt.executeQuery()) {
+                    while (rs.next()) {
+                        ImagemJob job = mapear(rs);
+                        job.setReutilizarImagens(rs.getBoolean("reutilizar_imagens"));
+                        candidatos.add(job);
+                    }
+                }
+                for (ImagemJob job : candidatos) {
+                    updateStmt.setTimestamp(1, Timestamp.valueOf(agora));
+                    updateStmt.setInt(2, job.getId());
+                    if (updateStmt.executeUpdate() > 0) {
+                        job.setStatus("EM_PROCESSAMENTO");
+                        job.setTentativas(job.getTentativas() + 1);
+                        job.setUpdatedAt(agora);
+                        reservados.add(job);
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao reservar jobs de imagem: " + e.getMessage());
+            } finally {
+                close();
+            }
+        }
+        return reservados;
+    }
+
+    /**
+     * Conclui o job e anexa a imagem gerada à postagem, na mesma transação.
+     * Só vale para a reserva do worker: se o job já foi devolvido à fila e reservado de novo
+     * (ver {@link #resetInProgress(LocalDateTime)}), concluído por outro worker ou removido com a postagem, nada muda.
+     * @param job O job concluído, como foi reservado em {@link #claimDue}.
+     * @param imagemUrl A URL da imagem gerada.
+     * @return true se o job e a postagem foram atualizados, false caso contrário.
+     */
+    public boolean complete(ImagemJob job, String imagemUrl) {
+        return finalizar(job, "CONCLUIDO", null, imagemUrl, "PRONTA");
+    }
+
+    /**
+     * Encerra o job depois de esgotadas as tentativas, anexando a imagem de fallback à postagem.
+     * Como em {@link #complete}, só vale para a reserva do worker.
+     * @param job O job que falhou, como foi reservado em {@link #claimDue}.
+     * @param fallbackUrl A URL da imagem de fallback.
+     * @param erro A mensagem do último erro.
+     * @return true se a atualização foi bem-sucedida, false caso contrário.
+     */
+    public boolean fail(ImagemJob job, String fallbackUrl, String erro) {
+        return finalizar(job, "FALHOU", erro, fallbackUrl, "FALHOU");
+    }
+
+    private boolean finalizar(ImagemJob job, String statusJob, String erro, String imagemUrl, String statusImagem) {
+        // O número de tentativas identifica a reserva: cada nova reserva do mesmo job o incrementa
+        String sqlJob = "UPDATE ImagemJobs SET status = ?, ultimo_erro = ?, updated_at = ? "
+                + "WHERE id = ? AND status = 'EM_PROCESSAMENTO' AND tentativas = ?";
+        String sqlPostagem = "UPDATE Postagens SET imagem_url = ?, imagem_status = ?, updated_at = ? WHERE id = ?";
+        boolean sucesso = false;
+        if (conectar()) {
+            Connection conn = getConnection();
+            try {
+                conn.setAutoCommit(false);
+                Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+                try (PreparedStatement jobStmt = conn.prepareStatement(sqlJob);
+                     PreparedStatement postagemStmt = conn.prepareStatement(sqlPostagem)) {
+                    jobStmt.setString(1, statusJob);
+                    jobStmt.setString(2, truncar(erro));
+                    jobStmt.setTimestamp(3, agora);
+                    jobStmt.setInt(4, job.getId());
+                    jobStmt.setInt(5, job.getTentativas());
+                    if (jobStmt.executeUpdate() > 0) {
+                        postagemStmt.setString(1, imagemUrl);
+                        postagemStmt.setString(2, statusImagem);
+                        postagemStmt.setTimestamp(3, agora);
+                        postagemStmt.setInt(4, job.getPostagemId());
+                        postagemStmt.executeUpdate();
+                        sucesso = true;
+                    }
+                }
+                conn.commit();
+                if (sucesso) {
+                    job.setStatus(statusJob);
+                    job.setUltimoErro(erro);
+                }
+            } catch (SQLException e) {
+                sucesso = false;
+                System.err.println("Erro ao finalizar job de imagem: " + e.getMessage());
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    System.err.println("Erro ao desfazer finalização do job: " + ex.getMessage());
+                }
+            } finally {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Erro ao restaurar auto-commit: " + e.getMessage());
+                }
+                close();
+            }
+        }
+        if (sucesso) {
+            Tabela.POSTAGENS.alterada();
+        }
+        return sucesso;
+    }
+
+    /**
+     * Devolve o job à fila para uma nova tentativa no horário indicado.
+     * Como em {@link #complete}, só vale para a reserva do worker.
+     * @param job O job que falhou, como foi reservado em {@link #claimDue}.
+     * @param proximaTentativa Quando o job volta a ficar disponível.
+     * @param erro A mensagem do erro desta tentativa.
+     * @return true se o job foi reagendado, false caso contrário.
+     */
+    public boolean scheduleRetry(ImagemJob job, LocalDateTime proximaTentativa, String erro) {
+        String sql = "UPDATE ImagemJobs SET status = 'PENDENTE', proxima_tentativa = ?, ultimo_erro = ?, updated_at = ? "
+                + "WHERE id = ? AND status = 'EM_PROCESSAMENTO' AND tentativas = ?";
+        boolean sucesso = false;
+        if (conectar()) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+                pstmt.setTimestamp(1, Timestamp.valueOf(proximaTentativa));
+                pstmt.setString(2, truncar(erro));
+                pstmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+                pstmt.setInt(4, job.getId());
+                pstmt.setInt(5, job.getTentativas());
+                sucesso = pstmt.executeUpdate() > 0;
+                if (sucesso) {
+                    job.setStatus("PENDENTE");
+                    job.setProximaTentativa(proximaTentativa);
+                    job.setUltimoErro(erro);
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao reagendar job de imagem: " + e.getMessage());
+            } finally {
+                close();
+            }
+        }
+        return sucesso;
+    }
+
+    /**
+     * Devolve à fila os jobs que estavam em processamento quando a aplicação parou.
+     * @return O número de jobs devolvidos.
+     */
+    public int resetInProgress() {
+        return resetInProgress(null);
+    }
+
+    /**
+     * Devolve à fila os jobs que estão em processamento desde antes do limite (reservados ou atualizados
+     * pela última vez antes dele). São jobs cujo worker não conseguiu gravar o resultado nem reagendá-los.
+     * @param limite Os jobs sem atualização desde este momento voltam à fila; null devolve todos.
+     * @return O número de jobs devolvidos.
+     */
+    public int resetInProgress(LocalDateTime limite) {
+        String sql = "UPDATE ImagemJobs SET status = 'PENDENTE', updated_at = ? WHERE status = 'EM_PROCESSAMENTO'"
+                + (limite != null ? " AND updated_at < ?" : "");
+        int devolvidos = 0;
+        if (conectar()) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+                pstmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+                if (limite != null) {
+                    pstmt.setTimestamp(2, Timestamp.valueOf(limite));
+                }
+                devolvidos = pstmt.executeUpdate();
+            } catch (SQLException e) {
+                System.err.println("Erro ao devolver jobs de imagem à fila: " + e.getMessage());
+            } finally {
+                close();
+            }
+        }
+        return devolvidos;
+    }
+
+    /**
+     * Busca o andamento da imagem de uma postagem, combinando a postagem com o seu job mais recente.
+     * Postagens criadas sem job (imagem já pronta) também têm status.
+     * @param postagemId O ID da postagem.
+     * @return O status da imagem, ou null se a postagem não existir.
+     */
+    public StatusImagem getStatus(int postagemId) {
+        String sql = "SELECT p.id, p.imagem_url, p.imagem_status, j.tentativas, j.ultimo_erro FROM Postagens p "
+                + "LEFT JOIN ImagemJobs j ON j.id = (SELECT MAX(id) FROM ImagemJobs WHERE postagem_id = p.id) "
+                + "WHERE p.id = ?";
+        StatusImagem status = null;
+        if (conectar()) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+                pstmt.setInt(1, postagemId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        status = new StatusImagem();
+                        status.setPostagemId(rs.getInt("id"));
+                        status.setImagemUrl(rs.getString("imagem_url"));
+                        status.setStatus(rs.getString("imagem_status"));
+                        status.setTentativas(rs.getInt("tentativas"));
+                        status.setUltimoErro(rs.getString("ultimo_erro"));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao buscar status da imagem: " + e.getMessage());
+            } finally {
+                close();
+            }
+        }
+        return status;
+    }
+
+    private ImagemJob mapear(ResultSet rs) throws SQLException {
+        ImagemJob job = new ImagemJob();
+        job.setId(rs.getInt("id"));
+        job.setPostagemId(rs.getInt("postagem_id"));
+        job.setPrompt(rs.getString("prompt"));
+        job.setStatus(rs.getString("status"));
+        job.setTentativas(rs.getInt("tentativas"));
+        job.setProximaTentativa(rs.getTimestamp("proxima_tentativa").toLocalDateTime());
+        job.setUltimoErro(rs.getString("ultimo_erro"));
+        job.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        job.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        return job;
+    }
+
+    private static String truncar(String erro) {
+        if (erro == null || erro.length() <= TAMANHO_MAXIMO_ERRO) {
+            return erro;
+        }
+        return erro.substring(0, TAMANHO_MAXIMO_ERRO);
+    }
+}
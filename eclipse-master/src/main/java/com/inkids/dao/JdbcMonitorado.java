@@ -0,0 +1,319 @@
+package com.inkids.dao;
+
+import com.inkids.config.Configuracao;
+import com.inkids.metrics.Histograma;
+import com.inkids.metrics.RegistroMetricas;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentação do JDBC usado pelos DAOs. A conexão emprestada em {@link DAO#conectar()} é envolvida
+ * por proxies que medem, para cada método de DAO (ex: "PostagemDAO.getPage"), o tempo de cada fase:
+ * - conexao: obter a conexão do pool;
+ * - preparacao: prepareStatement/createStatement;
+ * - execucao: executeQuery/executeUpdate/executeBatch;
+ * - mapeamento: o tempo dentro das chamadas ao ResultSet (next() e os getters). O que o DAO faz entre elas
+ *   não conta, para que um streaming lento (ex: escrevendo a resposta HTTP linha a linha) não pareça uma consulta lenta.
+ * Os tempos vão para o histograma inkids_jdbc_segundos (GET /api/metrics).
+ *
+ * Comandos cuja execução mais mapeamento passe de inkids.db.consultaLentaMs (padrão 200) são escritos no
+ * System.err com o SQL e o formato dos parâmetros (tipos e tamanhos, nunca os valores).
+ * A instrumentação pode ser desligada com inkids.db.monitorar=false.
+ */
+final class JdbcMonitorado {
+
+    static final boolean HABILITADO = Configuracao.getBoolean("inkids.db.monitorar", true);
+    private static final long LIMITE_LENTA_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Math.max(0, Configuracao.getLong("inkids.db.consultaLentaMs", 200)));
+    private static final int MAX_SQL_LOG = 500;
+
+    private static final String HISTOGRAMA = "inkids_jdbc_segundos";
+    private static final String AJUDA = "Tempo das operações JDBC, por método de DAO e fase (conexao, preparacao, execucao, mapeamento).";
+
+    private static final StackWalker PILHA = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    // Histogramas por "metodo|fase", para não formatar os rótulos a cada comando
+    private static final ConcurrentMap<String, Histograma> histogramas = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongAdder> lentas = new ConcurrentHashMap<>();
+
+    private JdbcMonitorado() {
+    }
+
+    /**
+     * Nome do método de DAO que está pedindo a conexão (ex: "UsuarioDAO.get"), achado na pilha de chamadas.
+     */
+    static String metodoChamador() {
+        Optional<StackWalker.StackFrame> quadro = PILHA.walk(quadros -> quadros
+                .filter(q -> DAO.class.isAssignableFrom(q.getDeclaringClass()) && q.getDeclaringClass() != DAO.class)
+                .findFirst());
+        return quadro.map(q -> q.getDeclaringClass().getSimpleName() + "." + nomeDoMetodo(q.getMethodName()))
+                .orElse("desconhecido");
+    }
+
+    // Lambdas dentro de um método (ex: "lambda$streamAll$2") contam para o próprio método ("streamAll")
+    private static String nomeDoMetodo(String nome) {
+        if (nome.startsWith("lambda$")) {
+            int fim = nome.indexOf('$', 7);
+            return fim > 7 ? nome.substring(7, fim) : nome;
+        }
+        return nome;
+    }
+
+    static void registrarConexao(String metodo, long nanos) {
+        fase(metodo, "conexao").registrarNanos(nanos);
+    }
+
+    /**
+     * Envolve a conexão com a instrumentação, atribuindo os comandos dela ao método informado.
+     */
+    static Connection monitorar(Connection conexao, String metodo) {
+        return (Connection) Proxy.newProxyInstance(JdbcMonitorado.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConexaoMonitorada(conexao, metodo));
+    }
+
+    private static Histograma fase(String metodo, String fase) {
+        return histogramas.computeIfAbsent(metodo + "|" + fase,
+                chave -> RegistroMetricas.getInstance().histograma(HISTOGRAMA, AJUDA, "metodo", metodo, "fase", fase));
+    }
+
+    private static Object invocar(Object alvo, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(alvo, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConexaoMonitorada implements InvocationHandler {
+        private final Connection conexao;
+        private final String metodo;
+
+        ConexaoMonitorada(Connection conexao, String metodo) {
+            this.conexao = conexao;
+            this.metodo = metodo;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method chamada, Object[] args) throws Throwable {
+            String nome = chamada.getName();
+            if (!nome.equals("prepareStatement") && !nome.equals("prepareCall") && !nome.equals("createStatement")) {
+                return invocar(conexao, chamada, args);
+            }
+
+            long inicio = System.nanoTime();
+            Statement comando = (Statement) invocar(conexao, chamada, args);
+            fase(metodo, "preparacao").registrarNanos(System.nanoTime() - inicio);
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            Class<?> tipo = comando instanceof CallableStatement ? CallableStatement.class
+                    : comando instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return Proxy.newProxyInstance(JdbcMonitorado.class.getClassLoader(), new Class<?>[] {tipo},
+                    new ComandoMonitorado(comando, metodo, sql));
+        }
+    }
+
+    private static final class ComandoMonitorado implements InvocationHandler {
+        private final Statement comando;
+        private final String metodo;
+        private String sql;
+
+        // Formato dos parâmetros do comando atual, por posição (ex: 1 -> "Integer", 2 -> "String(12)")
+        private final Map<Integer, String> parametros = new TreeMap<>();
+        private int lotes;
+        private ResultadoMonitorado resultadoAberto;
+
+        ComandoMonitorado(Statement comando, String metodo, String sql) {
+            this.comando = comando;
+            this.metodo = metodo;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method chamada, Object[] args) throws Throwable {
+            String nome = chamada.getName();
+            if (nome.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parametros.put((Integer) args[0], nome.equals("setNull") ? "NULL" : formato(args[1]));
+                return invocar(comando, chamada, args);
+            }
+            switch (nome) {
+                case "clearParameters":
+                    parametros.clear();
+                    return invocar(comando, chamada, args);
+                case "addBatch":
+                    lotes++;
+                    return invocar(comando, chamada, args);
+                case "clearBatch":
+                    lotes = 0;
+                    return invocar(comando, chamada, args);
+                case "close":
+                    encerrarResultado();
+                    return invocar(comando, chamada, args);
+                case "getResultSet":
+                    ResultSet atual = (ResultSet) invocar(comando, chamada, args);
+                    return atual != null && resultadoAberto == null ? abrirResultado(atual, 0) : atual;
+                default:
+                    break;
+            }
+            if (!nome.startsWith("execute")) {
+                return invocar(comando, chamada, args);
+            }
+
+            if (args != null && args.length > 0 && args[0] instanceof String) {
+                sql = (String) args[0]; // Statement.execute*(sql)
+            }
+            encerrarResultado();
+            long inicio = System.nanoTime();
+            Object retorno;
+            try {
+                retorno = invocar(comando, chamada, args);
+            } finally {
+                long execucao = System.nanoTime() - inicio;
+                fase(metodo, "execucao").registrarNanos(execucao);
+                if (nome.equals("executeBatch")) {
+                    lotes = 0;
+                }
+                if (!nome.equals("executeQuery")) {
+                    verificarLenta(execucao, 0, -1);
+                }
+            }
+            if (retorno instanceof ResultSet) {
+                return abrirResultado((ResultSet) retorno, System.nanoTime() - inicio);
+            }
+            return retorno;
+        }
+
+        private ResultSet abrirResultado(ResultSet resultado, long execucaoNanos) {
+            resultadoAberto = new ResultadoMonitorado(this, resultado, execucaoNanos);
+            return (ResultSet) Proxy.newProxyInstance(JdbcMonitorado.class.getClassLoader(),
+                    new Class<?>[] {ResultSet.class}, resultadoAberto);
+        }
+
+        // Fechar o comando (ou executá-lo de novo) também fecha o ResultSet anterior
+        private void encerrarResultado() {
+            if (resultadoAberto != null) {
+                resultadoAberto.encerrar();
+            }
+        }
+
+        void resultadoEncerrado(ResultadoMonitorado resultado, long mapeamentoNanos) {
+            if (resultadoAberto == resultado) {
+                resultadoAberto = null;
+            }
+            fase(metodo, "mapeamento").registrarNanos(mapeamentoNanos);
+            verificarLenta(resultado.execucaoNanos, mapeamentoNanos, resultado.linhas);
+        }
+
+        private void verificarLenta(long execucaoNanos, long mapeamentoNanos, long linhas) {
+            long total = execucaoNanos + mapeamentoNanos;
+            if (total < LIMITE_LENTA_NANOS) {
+                return;
+            }
+            lentas.computeIfAbsent(metodo, m -> RegistroMetricas.getInstance().contador("inkids_jdbc_consultas_lentas_total",
+                    "Comandos SQL acima de inkids.db.consultaLentaMs, por método de DAO.", "metodo", m)).increment();
+
+            StringBuilder log = new StringBuilder(256);
+            log.append("[consulta lenta] ").append(metodo).append(' ').append(milis(total)).append(" ms (execução ")
+                    .append(milis(execucaoNanos)).append(" ms");
+            if (linhas >= 0) {
+                log.append(", mapeamento ").append(milis(mapeamentoNanos)).append(" ms, ").append(linhas).append(" linha(s)");
+            }
+            if (lotes > 0) {
+                log.append(", ").append(lotes).append(" lote(s)");
+            }
+            log.append("): ").append(resumirSql(sql));
+            if (!parametros.isEmpty()) {
+                log.append(" | parâmetros: ").append(parametros);
+            }
+            System.err.println(log);
+        }
+    }
+
+    private static final class ResultadoMonitorado implements InvocationHandler {
+        private final ComandoMonitorado comando;
+        private final ResultSet resultado;
+        private final long execucaoNanos;
+        // Tempo acumulado dentro das chamadas ao ResultSet
+        private long mapeamentoNanos;
+        private long linhas;
+        private boolean encerrado;
+
+        ResultadoMonitorado(ComandoMonitorado comando, ResultSet resultado, long execucaoNanos) {
+            this.comando = comando;
+            this.resultado = resultado;
+            this.execucaoNanos = execucaoNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method chamada, Object[] args) throws Throwable {
+            String nome = chamada.getName();
+            if (nome.equals("close")) {
+                encerrar();
+                return invocar(resultado, chamada, args);
+            }
+            long inicio = System.nanoTime();
+            try {
+                Object retorno = invocar(resultado, chamada, args);
+                if (nome.equals("next") && Boolean.TRUE.equals(retorno)) {
+                    linhas++;
+                }
+                return retorno;
+            } finally {
+                mapeamentoNanos += System.nanoTime() - inicio;
+            }
+        }
+
+        void encerrar() {
+            if (!encerrado) {
+                encerrado = true;
+                comando.resultadoEncerrado(this, mapeamentoNanos);
+            }
+        }
+    }
+
+    // Tipo e tamanho do parâmetro, sem o valor (que pode ter dados pessoais)
+    private static String formato(Object valor) {
+        if (valor == null) {
+            return "NULL";
+        }
+        if (valor instanceof String) {
+            return "String(" + ((String) valor).length() + ")";
+        }
+        if (valor instanceof byte[]) {
+            return "byte[](" + ((byte[]) valor).length + ")";
+        }
+        if (valor instanceof Object[]) {
+            return valor.getClass().getComponentType().getSimpleName() + "[](" + ((Object[]) valor).length + ")";
+        }
+        if (valor instanceof java.sql.Array) {
+            return "Array";
+        }
+        return valor.getClass().getSimpleName();
+    }
+
+    private static String resumirSql(String sql) {
+        if (sql == null) {
+            return "(sem SQL)";
+        }
+        String resumo = sql.replaceAll("\\s+", " ").trim();
+        return resumo.length() > MAX_SQL_LOG ? resumo.substring(0, MAX_SQL_LOG) + "…" : resumo;
+    }
+
+    private static String milis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,164 @@
+package com.inkids.dao;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executor de migrações versionadas do esquema do banco de dados.
+ * As migrações ficam em `src/main/resources/script-bd/migracoes` e são aplicadas em ordem.
+ * Cada migração aplicada é registrada na tabela schema_historico com o checksum do script,
+ * então só as migrações pendentes são executadas a cada inicialização.
+ *
+ * As migrações não rodam em uma transação: o H2 confirma cada comando DDL (CREATE, ALTER, DROP) na hora,
+ * então um rollback não desfaz a parte de um script que já foi executada. Se uma migração falhar no meio,
+ * ela não é registrada e é executada de novo, do início, na próxima inicialização. Por isso todo script deve
+ * poder ser reexecutado sobre um esquema parcialmente migrado (CREATE TABLE IF NOT EXISTS, ADD COLUMN IF NOT EXISTS,
+ * DROP INDEX IF EXISTS...). Um script que não possa ser reexecutado exige reparo manual do esquema após uma falha.
+ */
+public final class MigrationRunner {
+
+    private static final String PASTA = "/script-bd/migracoes/";
+
+    // Migrações em ordem de aplicação. Novas migrações devem ser adicionadas ao final.
+    private static final List<String> MIGRACOES = List.of(
+        "V1__esquema_inicial.sql",
+        "V2__indices.sql",
+        "V3__fila_imagens.sql",
+        "V4__imagem_url_clob.sql",
+        "V5__reutilizar_imagens.sql",
+        "V6__indices_decrescentes.sql",
+        "V7__indices_paginacao.sql",
+        "V8__imagem_url_relativa.sql"
+    );
+
+    private MigrationRunner() {
+    }
+
+    /**
+     * Aplica as migrações pendentes.
+     * @param dataSource O DataSource do banco a ser migrado.
+     * @return O número de migrações aplicadas nesta execução.
+     * @throws SQLException se uma migração falhar.
+     * @throws IllegalStateException se uma migração já aplicada tiver sido alterada.
+     */
+    public static int migrar(DataSource dataSource) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            criarTabelaHistorico(conn);
+            Map<Integer, String> aplicadas = carregarHistorico(conn);
+
+            int executadas = 0;
+            for (String arquivo : MIGRACOES) {
+                int versao = versao(arquivo);
+                String script = lerScript(arquivo);
+                String checksum = checksum(script);
+
+                String checksumAplicado = aplicadas.get(versao);
+                if (checksumAplicado != null) {
+                    if (!checksumAplicado.equals(checksum)) {
+                        throw new IllegalStateException("A migração " + arquivo + " foi alterada depois de aplicada.");
+                    }
+                    continue;
+                }
+
+                aplicar(conn, versao, arquivo, script, checksum);
+                executadas++;
+            }
+
+            if (executadas == 0) {
+                System.out.println("Esquema do banco de dados já está atualizado.");
+            }
+            return executadas;
+        }
+    }
+
+    private static void criarTabelaHistorico(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_historico ("
+                    + "versao INT PRIMARY KEY, "
+                    + "descricao VARCHAR(255) NOT NULL, "
+                    + "checksum VARCHAR(64) NOT NULL, "
+                    + "aplicado_em TIMESTAMP NOT NULL, "
+                    + "duracao_ms BIGINT NOT NULL)");
+        }
+    }
+
+    private static Map<Integer, String> carregarHistorico(Connection conn) throws SQLException {
+        Map<Integer, String> aplicadas = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT versao, checksum FROM schema_historico")) {
+            while (rs.next()) {
+                aplicadas.put(rs.getInt("versao"), rs.getString("checksum"));
+            }
+        }
+        return aplicadas;
+    }
+
+    // O script e o registro no histórico não são atômicos (ver a documentação da classe): o registro só é
+    // gravado depois que o script inteiro rodou, e uma falha deixa a migração pendente para ser reexecutada
+    private static void aplicar(Connection conn, int versao, String arquivo, String script, String checksum) throws SQLException {
+        long inicio = System.currentTimeMillis();
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement historico = conn.prepareStatement(
+                     "INSERT INTO schema_historico (versao, descricao, checksum, aplicado_em, duracao_ms) VALUES (?, ?, ?, ?, ?)")) {
+            stmt.execute(script);
+
+            historico.setInt(1, versao);
+            historico.setString(2, descricao(arquivo));
+            historico.setString(3, checksum);
+            historico.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            historico.setLong(5, System.currentTimeMillis() - inicio);
+            historico.executeUpdate();
+
+            System.out.println("Migração aplicada: " + arquivo + " (" + (System.currentTimeMillis() - inicio) + " ms)");
+        } catch (SQLException e) {
+            throw new SQLException("Erro ao aplicar a migração " + arquivo + " (ela será reexecutada na próxima inicialização): "
+                    + e.getMessage(), e);
+        }
+    }
+
+    private static String lerScript(String arquivo) {
+        try (InputStream is = MigrationRunner.class.getResourceAsStream(PASTA + arquivo)) {
+            if (is == null) {
+                throw new IllegalStateException("Migração não encontrada nos resources: " + arquivo);
+            }
+            // Normaliza as quebras de linha para o checksum não depender do sistema operacional
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao ler a migração " + arquivo + ": " + e.getMessage(), e);
+        }
+    }
+
+    // "V2__indices.sql" -> 2
+    private static int versao(String arquivo) {
+        return Integer.parseInt(arquivo.substring(1, arquivo.indexOf("__")));
+    }
+
+    // "V2__indices.sql" -> "indices"
+    private static String descricao(String arquivo) {
+        return arquivo.substring(arquivo.indexOf("__") + 2, arquivo.lastIndexOf('.')).replace('_', ' ');
+    }
+
+    private static String checksum(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
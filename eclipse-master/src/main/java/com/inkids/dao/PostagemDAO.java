@@ -1,7 +1,9 @@
 package com.inkids.dao;
 
+import com.inkids.model.Pagina;
 import com.inkids.model.Postagem;
 
+import java.io.IOException;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -13,6 +15,11 @@ import java.util.List;
  */
 public class PostagemDAO extends DAO {
 
+    // Nas consultas por autor, o H2 prefere o índice da chave estrangeira (só autor_id) e ordena todas as postagens
+    // do autor antes de entregar a primeira. O índice (autor_id, created_at DESC, id DESC) entrega as linhas já
+    // na ordem do ORDER BY (que repete autor_id para casar com as colunas do índice), então é escolhido à força.
+    private static final String INDICE_AUTOR = " USE INDEX (idx_postagens_autor_created_desc)";
+
     public PostagemDAO() {
         super();
     }
@@ -23,35 +30,98 @@ public class PostagemDAO extends DAO {
      * @return O ID gerado para a nova postagem, ou -1 em caso de erro.
      */
     public int insert(Postagem postagem) {
-        String sql = "INSERT INTO Postagens (titulo, conteudo, autor_id, imagem_url, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
         int generatedId = -1;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                pstmt.setString(1, postagem.getTitulo());
-                pstmt.setString(2, postagem.getConteudo());
-                pstmt.setInt(3, postagem.getAutorId());
-                pstmt.setString(4, postagem.getImagemUrl());
-                pstmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
-                pstmt.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
-
-                int affectedRows = pstmt.executeUpdate();
-                if (affectedRows > 0) {
-                    try (ResultSet rs = pstmt.getGeneratedKeys()) {
-                        if (rs.next()) {
-                            generatedId = rs.getInt(1);
-                            postagem.setId(generatedId);
-                        }
-                    }
-                }
+            try {
+                generatedId = insertPostagem(postagem);
             } catch (SQLException e) {
                 System.err.println("Erro ao inserir postagem: " + e.getMessage());
             } finally {
                 close();
             }
         }
+        if (generatedId != -1) {
+            Tabela.POSTAGENS.alterada();
+        }
+        return generatedId;
+    }
+
+    /**
+     * Insere uma nova postagem com a imagem pendente e, na mesma transação,
+     * o job que vai gerar a imagem em segundo plano.
+     * @param postagem O objeto Postagem a ser inserido.
+     * @return O ID gerado para a nova postagem, ou -1 em caso de erro.
+     */
+    public int insertWithImageJob(Postagem postagem) {
+        String sql = "INSERT INTO ImagemJobs (postagem_id, prompt, status, proxima_tentativa, created_at, updated_at) VALUES (?, ?, 'PENDENTE', ?, ?, ?)";
+        int generatedId = -1;
+        if (conectar()) {
+            Connection conn = getConnection();
+            try {
+                conn.setAutoCommit(false);
+                postagem.setImagemStatus("PENDENTE");
+                int id = insertPostagem(postagem);
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+                    pstmt.setInt(1, id);
+                    pstmt.setString(2, postagem.getTitulo());
+                    pstmt.setTimestamp(3, agora);
+                    pstmt.setTimestamp(4, agora);
+                    pstmt.setTimestamp(5, agora);
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+                generatedId = id;
+            } catch (SQLException e) {
+                System.err.println("Erro ao inserir postagem com job de imagem: " + e.getMessage());
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    System.err.println("Erro ao desfazer inserção da postagem: " + ex.getMessage());
+                }
+            } finally {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Erro ao restaurar auto-commit: " + e.getMessage());
+                }
+                close();
+            }
+        }
+        if (generatedId != -1) {
+            Tabela.POSTAGENS.alterada();
+        }
         return generatedId;
     }
 
+    private int insertPostagem(Postagem postagem) throws SQLException {
+        String sql = "INSERT INTO Postagens (titulo, conteudo, autor_id, imagem_url, imagem_status, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            LocalDateTime agora = LocalDateTime.now();
+            pstmt.setString(1, postagem.getTitulo());
+            pstmt.setString(2, postagem.getConteudo());
+            pstmt.setInt(3, postagem.getAutorId());
+            pstmt.setString(4, postagem.getImagemUrl());
+            pstmt.setString(5, postagem.getImagemStatus() != null ? postagem.getImagemStatus() : "PRONTA");
+            pstmt.setTimestamp(6, Timestamp.valueOf(agora));
+            pstmt.setTimestamp(7, Timestamp.valueOf(agora));
+
+            int affectedRows = pstmt.executeUpdate();
+            if (affectedRows > 0) {
+                try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        int generatedId = rs.getInt(1);
+                        postagem.setId(generatedId);
+                        postagem.setCreatedAt(agora);
+                        postagem.setUpdatedAt(agora);
+                        return generatedId;
+                    }
+                }
+            }
+        }
+        throw new SQLException("Nenhum ID gerado para a postagem.");
+    }
+
     /**
      * Busca uma postagem pelo seu ID.
      * @param id O ID da postagem.
@@ -61,18 +131,11 @@ public class PostagemDAO extends DAO {
         String sql = "SELECT * FROM Postagens WHERE id = ?";
         Postagem postagem = null;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setInt(1, id);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     if (rs.next()) {
-                        postagem = new Postagem();
-                        postagem.setId(rs.getInt("id"));
-                        postagem.setTitulo(rs.getString("titulo"));
-                        postagem.setConteudo(rs.getString("conteudo"));
-                        postagem.setAutorId(rs.getInt("autor_id"));
-                        postagem.setImagemUrl(rs.getString("imagem_url"));
-                        postagem.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                        postagem.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+                        postagem = mapear(rs);
                     }
                 }
             } catch (SQLException e) {
@@ -92,18 +155,10 @@ public class PostagemDAO extends DAO {
         String sql = "SELECT * FROM Postagens ORDER BY created_at DESC";
         List<Postagem> postagens = new ArrayList<>();
         if (conectar()) {
-            try (Statement stmt = connection.createStatement();
+            try (Statement stmt = getConnection().createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
-                    Postagem postagem = new Postagem();
-                    postagem.setId(rs.getInt("id"));
-                    postagem.setTitulo(rs.getString("titulo"));
-                    postagem.setConteudo(rs.getString("conteudo"));
-                    postagem.setAutorId(rs.getInt("autor_id"));
-                    postagem.setImagemUrl(rs.getString("imagem_url"));
-                    postagem.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                    postagem.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
-                    postagens.add(postagem);
+                    postagens.add(mapear(rs));
                 }
             } catch (SQLException e) {
                 System.err.println("Erro ao listar postagens: " + e.getMessage());
@@ -120,22 +175,14 @@ public class PostagemDAO extends DAO {
      * @return Uma lista de objetos Postagem.
      */
     public List<Postagem> getByUserId(int usuarioId) {
-        String sql = "SELECT * FROM Postagens WHERE autor_id = ? ORDER BY created_at DESC";
+        String sql = "SELECT * FROM Postagens" + INDICE_AUTOR + " WHERE autor_id = ? ORDER BY autor_id, created_at DESC, id DESC";
         List<Postagem> postagens = new ArrayList<>();
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setInt(1, usuarioId);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     while (rs.next()) {
-                        Postagem postagem = new Postagem();
-                        postagem.setId(rs.getInt("id"));
-                        postagem.setTitulo(rs.getString("titulo"));
-                        postagem.setConteudo(rs.getString("conteudo"));
-                        postagem.setAutorId(rs.getInt("autor_id"));
-                        postagem.setImagemUrl(rs.getString("imagem_url"));
-                        postagem.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                        postagem.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
-                        postagens.add(postagem);
+                        postagens.add(mapear(rs));
                     }
                 }
             } catch (SQLException e) {
@@ -147,6 +194,137 @@ public class PostagemDAO extends DAO {
         return postagens;
     }
 
+    /**
+     * Percorre todas as postagens, da mais recente para a mais antiga, entregando
+     * cada uma ao handler assim que é lida. Nenhuma lista é montada em memória.
+     * @param handler O consumidor das postagens.
+     * @return true se todas as postagens foram percorridas, false em caso de erro.
+     */
+    public boolean streamAll(RowHandler<Postagem> handler) {
+        return stream("SELECT * FROM Postagens ORDER BY created_at DESC, id DESC", null, handler);
+    }
+
+    /**
+     * Percorre todas as postagens de um usuário, da mais recente para a mais antiga.
+     * @param usuarioId O ID do usuário (autor).
+     * @param handler O consumidor das postagens.
+     * @return true se todas as postagens foram percorridas, false em caso de erro.
+     */
+    public boolean streamByUserId(int usuarioId, RowHandler<Postagem> handler) {
+        return stream("SELECT * FROM Postagens" + INDICE_AUTOR + " WHERE autor_id = ? ORDER BY autor_id, created_at DESC, id DESC", usuarioId, handler);
+    }
+
+    /**
+     * Percorre as postagens mais recentes, da mais recente para a mais antiga.
+     * Diferente de {@link #getPage}, informa se a leitura falhou (usado para carregar o feed de postagens).
+     * @param limite O número máximo de postagens.
+     * @param handler O consumidor das postagens.
+     * @return true se as postagens foram percorridas, false em caso de erro.
+     */
+    public boolean streamRecentes(int limite, RowHandler<Postagem> handler) {
+        return stream("SELECT * FROM Postagens ORDER BY created_at DESC, id DESC LIMIT ?", limite, handler);
+    }
+
+    // O parâmetro, quando existe, é o único da consulta
+    private boolean stream(String sql, Integer parametro, RowHandler<Postagem> handler) {
+        boolean success = false;
+        if (conectarStreaming()) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+                pstmt.setFetchSize(FETCH_SIZE);
+                if (parametro != null) {
+                    pstmt.setInt(1, parametro);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        handler.handle(mapear(rs));
+                    }
+                }
+                success = true;
+            } catch (SQLException e) {
+                System.err.println("Erro ao percorrer postagens: " + e.getMessage());
+            } catch (IOException e) {
+                System.err.println("Listagem de postagens interrompida: " + e.getMessage());
+            } finally {
+                closeStreaming();
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Lista uma página de postagens, ordenadas pela mais recente.
+     * Usa paginação por chave (created_at, id): o custo de cada página não depende
+     * de quantas páginas vieram antes.
+     * @param limite O número máximo de postagens na página.
+     * @param apos O cursor da página anterior, ou null para a primeira página.
+     * @return A página de postagens com o cursor da próxima página.
+     */
+    public Pagina<Postagem> getPage(int limite, Cursor apos) {
+        return getPage(null, limite, apos);
+    }
+
+    /**
+     * Lista uma página de postagens de um usuário específico, ordenadas pela mais recente.
+     * @param usuarioId O ID do usuário (autor).
+     * @param limite O número máximo de postagens na página.
+     * @param apos O cursor da página anterior, ou null para a primeira página.
+     * @return A página de postagens com o cursor da próxima página.
+     */
+    public Pagina<Postagem> getPageByUserId(int usuarioId, int limite, Cursor apos) {
+        return getPage(usuarioId, limite, apos);
+    }
+
+    private Pagina<Postagem> getPage(Integer usuarioId, int limite, Cursor apos) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM Postagens");
+        if (usuarioId != null) {
+            sql.append(INDICE_AUTOR);
+        }
+        sql.append(" WHERE 1 = 1");
+        if (usuarioId != null) {
+            sql.append(" AND autor_id = ?");
+        }
+        if (apos != null) {
+            sql.append(" AND created_at <= ? AND (created_at < ? OR (created_at = ? AND id < ?))");
+        }
+        sql.append(usuarioId != null ? " ORDER BY autor_id, created_at DESC, id DESC LIMIT ?" : " ORDER BY created_at DESC, id DESC LIMIT ?");
+
+        List<Postagem> postagens = new ArrayList<>();
+        if (conectar()) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql.toString())) {
+                int i = 1;
+                if (usuarioId != null) {
+                    pstmt.setInt(i++, usuarioId);
+                }
+                if (apos != null) {
+                    Timestamp chave = apos.getChaveTimestamp();
+                    pstmt.setTimestamp(i++, chave);
+                    pstmt.setTimestamp(i++, chave);
+                    pstmt.setTimestamp(i++, chave);
+                    pstmt.setInt(i++, apos.getId());
+                }
+                // Busca um item a mais para saber se existe uma próxima página
+                pstmt.setInt(i, limite + 1);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        postagens.add(mapear(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao listar página de postagens: " + e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        String proximoCursor = null;
+        if (postagens.size() > limite) {
+            postagens.remove(limite);
+            Postagem ultima = postagens.get(limite - 1);
+            proximoCursor = Cursor.of(ultima.getCreatedAt(), ultima.getId()).encode();
+        }
+        return new Pagina<>(postagens, proximoCursor);
+    }
+
     /**
      * Atualiza uma postagem existente no banco de dados.
      * @param postagem O objeto Postagem com os dados atualizados.
@@ -156,7 +334,7 @@ public class PostagemDAO extends DAO {
         String sql = "UPDATE Postagens SET titulo = ?, conteudo = ?, imagem_url = ?, updated_at = ? WHERE id = ?";
         boolean success = false;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setString(1, postagem.getTitulo());
                 pstmt.setString(2, postagem.getConteudo());
                 pstmt.setString(3, postagem.getImagemUrl());
@@ -170,6 +348,9 @@ public class PostagemDAO extends DAO {
                 close();
             }
         }
+        if (success) {
+            Tabela.POSTAGENS.alterada();
+        }
         return success;
     }
 
@@ -182,7 +363,7 @@ public class PostagemDAO extends DAO {
         String sql = "DELETE FROM Postagens WHERE id = ?";
         boolean success = false;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setInt(1, id);
                 success = pstmt.executeUpdate() > 0;
             } catch (SQLException e) {
@@ -191,6 +372,25 @@ public class PostagemDAO extends DAO {
                 close();
             }
         }
+        if (success) {
+            Tabela.POSTAGENS.alterada();
+        }
         return success;
     }
+
+    /**
+     * Converte a linha atual do ResultSet em um objeto Postagem.
+     */
+    private Postagem mapear(ResultSet rs) throws SQLException {
+        Postagem postagem = new Postagem();
+        postagem.setId(rs.getInt("id"));
+        postagem.setTitulo(rs.getString("titulo"));
+        postagem.setConteudo(rs.getString("conteudo"));
+        postagem.setAutorId(rs.getInt("autor_id"));
+        postagem.setImagemUrl(rs.getString("imagem_url"));
+        postagem.setImagemStatus(rs.getString("imagem_status"));
+        postagem.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        postagem.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        return postagem;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.inkids.dao;
+
+import java.io.IOException;
+
+/**
+ * Recebe, uma a uma, as entidades lidas de um ResultSet.
+ * Usado nas listagens em streaming, em que as linhas são repassadas ao consumidor
+ * (ex: a resposta HTTP) sem que a lista completa seja montada em memória.
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+
+    /**
+     * Processa uma entidade lida do banco.
+     * @param item A entidade da linha atual.
+     * @throws IOException se o consumidor não puder receber a entidade (ex: cliente desconectado).
+     */
+    void handle(T item) throws IOException;
+}
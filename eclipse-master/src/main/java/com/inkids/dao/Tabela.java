@@ -0,0 +1,40 @@
+package com.inkids.dao;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * As tabelas de dados da aplicação, cada uma com um contador de versão incrementado pelos DAOs a cada escrita.
+ * Com a versão é possível saber, sem consultar o banco, se uma listagem pode ter mudado desde a última leitura
+ * (usado nos ETags das rotas de listagem). Só contam as escritas feitas pelos DAOs desta aplicação.
+ */
+public enum Tabela {
+    USUARIOS,
+    POSTAGENS,
+    TAREFAS,
+    CONTATOS;
+
+    // Os contadores recomeçam do zero a cada execução: a época diferencia as versões de execuções diferentes
+    private static final String EPOCA = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong versao = new AtomicLong();
+
+    /**
+     * Registra uma escrita na tabela. Deve ser chamado depois do commit, para que uma leitura que viu
+     * a versão nova nunca veja os dados antigos.
+     */
+    void alterada() {
+        versao.incrementAndGet();
+    }
+
+    public long getVersao() {
+        return versao.get();
+    }
+
+    /**
+     * Identifica o conteúdo atual da tabela; muda a cada escrita e a cada reinício da aplicação.
+     * Deve ser lido antes da consulta cujo resultado ele identifica.
+     */
+    public String getIdentificadorVersao() {
+        return name().toLowerCase() + "-" + EPOCA + "-" + versao.get();
+    }
+}
@@ -1,7 +1,9 @@
 package com.inkids.dao;
 
+import com.inkids.model.Pagina;
 import com.inkids.model.Tarefa;
 
+import java.io.IOException;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -26,7 +28,7 @@ public class TarefaDAO extends DAO {
         String sql = "INSERT INTO Tarefas (titulo, descricao, status, prioridade, usuario_id, data_criacao) VALUES (?, ?, ?, ?, ?, ?)";
         int generatedId = -1;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 pstmt.setString(1, tarefa.getTitulo());
                 pstmt.setString(2, tarefa.getDescricao());
                 pstmt.setString(3, tarefa.getStatus());
@@ -49,9 +51,84 @@ public class TarefaDAO extends DAO {
                 close();
             }
         }
+        if (generatedId != -1) {
+            Tabela.TAREFAS.alterada();
+        }
         return generatedId;
     }
 
+    /**
+     * Insere várias tarefas em uma única transação, usando lotes JDBC (addBatch/executeBatch)
+     * de inkids.batch.tamanhoLote tarefas.
+     * Se qualquer lote falhar, nenhuma tarefa é inserida.
+     * @param tarefas As tarefas a serem inseridas.
+     * @return Os IDs gerados, na mesma ordem das tarefas, ou null em caso de erro.
+     */
+    public int[] insertBatch(List<Tarefa> tarefas) {
+        String sql = "INSERT INTO Tarefas (titulo, descricao, status, prioridade, usuario_id, data_criacao) VALUES (?, ?, ?, ?, ?, ?)";
+        int[] ids = null;
+        if (conectar()) {
+            Connection conn = getConnection();
+            try {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    int[] gerados = new int[tarefas.size()];
+                    int proximo = 0;
+                    Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+                    for (int i = 0; i < tarefas.size(); i++) {
+                        Tarefa tarefa = tarefas.get(i);
+                        pstmt.setString(1, tarefa.getTitulo());
+                        pstmt.setString(2, tarefa.getDescricao());
+                        pstmt.setString(3, tarefa.getStatus());
+                        pstmt.setString(4, tarefa.getPrioridade());
+                        pstmt.setInt(5, tarefa.getUsuarioId());
+                        pstmt.setTimestamp(6, agora);
+                        pstmt.addBatch();
+
+                        if ((i + 1) % TAMANHO_LOTE == 0 || i == tarefas.size() - 1) {
+                            pstmt.executeBatch();
+                            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                                while (rs.next()) {
+                                    if (proximo < gerados.length) {
+                                        gerados[proximo] = rs.getInt(1);
+                                    }
+                                    proximo++;
+                                }
+                            }
+                            // Uma chave por linha inserida: sem ela o registro ficaria com id 0 e o lote pareceria bem-sucedido
+                            if (proximo != i + 1) {
+                                throw new SQLException("O banco retornou " + proximo + " IDs gerados para " + (i + 1) + " tarefas inseridas.");
+                            }
+                        }
+                    }
+                    conn.commit();
+                    for (int i = 0; i < tarefas.size(); i++) {
+                        tarefas.get(i).setId(gerados[i]);
+                    }
+                    ids = gerados;
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao inserir lote de tarefas: " + e.getMessage());
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    System.err.println("Erro ao desfazer lote de tarefas: " + ex.getMessage());
+                }
+            } finally {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Erro ao restaurar auto-commit: " + e.getMessage());
+                }
+                close();
+            }
+        }
+        if (ids != null) {
+            Tabela.TAREFAS.alterada();
+        }
+        return ids;
+    }
+
     /**
      * Busca uma tarefa pelo seu ID.
      * @param id O ID da tarefa.
@@ -61,22 +138,11 @@ public class TarefaDAO extends DAO {
         String sql = "SELECT * FROM Tarefas WHERE id = ?";
         Tarefa tarefa = null;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setInt(1, id);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     if (rs.next()) {
-                        tarefa = new Tarefa();
-                        tarefa.setId(rs.getInt("id"));
-                        tarefa.setTitulo(rs.getString("titulo"));
-                        tarefa.setDescricao(rs.getString("descricao"));
-                        tarefa.setDataCriacao(rs.getTimestamp("data_criacao").toLocalDateTime());
-                        Timestamp dataConclusao = rs.getTimestamp("data_conclusao");
-                        if (dataConclusao != null) {
-                            tarefa.setDataConclusao(dataConclusao.toLocalDateTime());
-                        }
-                        tarefa.setStatus(rs.getString("status"));
-                        tarefa.setPrioridade(rs.getString("prioridade"));
-                        tarefa.setUsuarioId(rs.getInt("usuario_id"));
+                        tarefa = mapear(rs);
                     }
                 }
             } catch (SQLException e) {
@@ -96,22 +162,10 @@ public class TarefaDAO extends DAO {
         String sql = "SELECT * FROM Tarefas ORDER BY data_criacao DESC";
         List<Tarefa> tarefas = new ArrayList<>();
         if (conectar()) {
-            try (Statement stmt = connection.createStatement();
+            try (Statement stmt = getConnection().createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
-                    Tarefa tarefa = new Tarefa();
-                    tarefa.setId(rs.getInt("id"));
-                    tarefa.setTitulo(rs.getString("titulo"));
-                    tarefa.setDescricao(rs.getString("descricao"));
-                    tarefa.setDataCriacao(rs.getTimestamp("data_criacao").toLocalDateTime());
-                    Timestamp dataConclusao = rs.getTimestamp("data_conclusao");
-                    if (dataConclusao != null) {
-                        tarefa.setDataConclusao(dataConclusao.toLocalDateTime());
-                    }
-                    tarefa.setStatus(rs.getString("status"));
-                    tarefa.setPrioridade(rs.getString("prioridade"));
-                    tarefa.setUsuarioId(rs.getInt("usuario_id"));
-                    tarefas.add(tarefa);
+                    tarefas.add(mapear(rs));
                 }
             } catch (SQLException e) {
                 System.err.println("Erro ao listar tarefas: " + e.getMessage());
@@ -122,6 +176,82 @@ public class TarefaDAO extends DAO {
         return tarefas;
     }
 
+    /**
+     * Percorre todas as tarefas, da mais recente para a mais antiga, entregando
+     * cada uma ao handler assim que é lida. Nenhuma lista é montada em memória.
+     * @param handler O consumidor das tarefas.
+     * @return true se todas as tarefas foram percorridas, false em caso de erro.
+     */
+    public boolean streamAll(RowHandler<Tarefa> handler) {
+        String sql = "SELECT * FROM Tarefas ORDER BY data_criacao DESC, id DESC";
+        boolean success = false;
+        if (conectarStreaming()) {
+            try (Statement stmt = getConnection().createStatement()) {
+                stmt.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        handler.handle(mapear(rs));
+                    }
+                }
+                success = true;
+            } catch (SQLException e) {
+                System.err.println("Erro ao percorrer tarefas: " + e.getMessage());
+            } catch (IOException e) {
+                System.err.println("Listagem de tarefas interrompida: " + e.getMessage());
+            } finally {
+                closeStreaming();
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Lista uma página de tarefas, ordenadas pela mais recente.
+     * Usa paginação por chave (data_criacao, id): o custo de cada página não depende
+     * de quantas páginas vieram antes.
+     * @param limite O número máximo de tarefas na página.
+     * @param apos O cursor da página anterior, ou null para a primeira página.
+     * @return A página de tarefas com o cursor da próxima página.
+     */
+    public Pagina<Tarefa> getPage(int limite, Cursor apos) {
+        String sql = apos == null
+                ? "SELECT * FROM Tarefas ORDER BY data_criacao DESC, id DESC LIMIT ?"
+                : "SELECT * FROM Tarefas WHERE data_criacao <= ? AND (data_criacao < ? OR (data_criacao = ? AND id < ?)) "
+                  + "ORDER BY data_criacao DESC, id DESC LIMIT ?";
+        List<Tarefa> tarefas = new ArrayList<>();
+        if (conectar()) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+                int i = 1;
+                if (apos != null) {
+                    Timestamp chave = apos.getChaveTimestamp();
+                    pstmt.setTimestamp(i++, chave);
+                    pstmt.setTimestamp(i++, chave);
+                    pstmt.setTimestamp(i++, chave);
+                    pstmt.setInt(i++, apos.getId());
+                }
+                // Busca um item a mais para saber se existe uma próxima página
+                pstmt.setInt(i, limite + 1);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        tarefas.add(mapear(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao listar página de tarefas: " + e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        String proximoCursor = null;
+        if (tarefas.size() > limite) {
+            tarefas.remove(limite);
+            Tarefa ultima = tarefas.get(limite - 1);
+            proximoCursor = Cursor.of(ultima.getDataCriacao(), ultima.getId()).encode();
+        }
+        return new Pagina<>(tarefas, proximoCursor);
+    }
+
     /**
      * Atualiza uma tarefa existente no banco de dados.
      * @param tarefa O objeto Tarefa com os dados atualizados.
@@ -131,7 +261,7 @@ public class TarefaDAO extends DAO {
         String sql = "UPDATE Tarefas SET titulo = ?, descricao = ?, data_conclusao = ?, status = ?, prioridade = ? WHERE id = ?";
         boolean success = false;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setString(1, tarefa.getTitulo());
                 pstmt.setString(2, tarefa.getDescricao());
                 pstmt.setTimestamp(3, tarefa.getDataConclusao() != null ? Timestamp.valueOf(tarefa.getDataConclusao()) : null);
@@ -146,6 +276,9 @@ public class TarefaDAO extends DAO {
                 close();
             }
         }
+        if (success) {
+            Tabela.TAREFAS.alterada();
+        }
         return success;
     }
 
@@ -158,7 +291,7 @@ public class TarefaDAO extends DAO {
         String sql = "DELETE FROM Tarefas WHERE id = ?";
         boolean success = false;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setInt(1, id);
                 success = pstmt.executeUpdate() > 0;
             } catch (SQLException e) {
@@ -167,6 +300,28 @@ public class TarefaDAO extends DAO {
                 close();
             }
         }
+        if (success) {
+            Tabela.TAREFAS.alterada();
+        }
         return success;
     }
+
+    /**
+     * Converte a linha atual do ResultSet em um objeto Tarefa.
+     */
+    private Tarefa mapear(ResultSet rs) throws SQLException {
+        Tarefa tarefa = new Tarefa();
+        tarefa.setId(rs.getInt("id"));
+        tarefa.setTitulo(rs.getString("titulo"));
+        tarefa.setDescricao(rs.getString("descricao"));
+        tarefa.setDataCriacao(rs.getTimestamp("data_criacao").toLocalDateTime());
+        Timestamp dataConclusao = rs.getTimestamp("data_conclusao");
+        if (dataConclusao != null) {
+            tarefa.setDataConclusao(dataConclusao.toLocalDateTime());
+        }
+        tarefa.setStatus(rs.getString("status"));
+        tarefa.setPrioridade(rs.getString("prioridade"));
+        tarefa.setUsuarioId(rs.getInt("usuario_id"));
+        return tarefa;
+    }
 }
\ No newline at end of file
@@ -1,11 +1,15 @@
 package com.inkids.dao;
 
+import com.inkids.model.Pagina;
 import com.inkids.model.Usuario;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * DAO para a entidade Usuario.
@@ -23,10 +27,10 @@ public class UsuarioDAO extends DAO {
      * @return O ID gerado para o novo usuário, ou -1 em caso de erro.
      */
     public int insert(Usuario usuario) {
-        String sql = "INSERT INTO Usuarios (nome, email, senha, data_nascimento, genero, telefone, tipo_usuario, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO Usuarios (nome, email, senha, data_nascimento, genero, telefone, tipo_usuario, reutilizar_imagens, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         int generatedId = -1;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 pstmt.setString(1, usuario.getNome());
                 pstmt.setString(2, usuario.getEmail());
                 pstmt.setString(3, usuario.getSenha()); // Lembre-se de usar hash em produção
@@ -34,8 +38,10 @@ public class UsuarioDAO extends DAO {
                 pstmt.setString(5, usuario.getGenero());
                 pstmt.setString(6, usuario.getTelefone());
                 pstmt.setString(7, usuario.getTipoUsuario());
-                pstmt.setTimestamp(8, Timestamp.valueOf(LocalDateTime.now()));
+                usuario.setReutilizarImagens(reutilizarImagens(usuario));
+                pstmt.setBoolean(8, usuario.getReutilizarImagens());
                 pstmt.setTimestamp(9, Timestamp.valueOf(LocalDateTime.now()));
+                pstmt.setTimestamp(10, Timestamp.valueOf(LocalDateTime.now()));
 
                 int affectedRows = pstmt.executeUpdate();
                 if (affectedRows > 0) {
@@ -52,9 +58,149 @@ public class UsuarioDAO extends DAO {
                 close();
             }
         }
+        if (generatedId != -1) {
+            Tabela.USUARIOS.alterada();
+        }
         return generatedId;
     }
 
+    /**
+     * Insere vários usuários em uma única transação, usando lotes JDBC (addBatch/executeBatch)
+     * de inkids.batch.tamanhoLote usuários.
+     * Se qualquer lote falhar, nenhum usuário é inserido.
+     * @param usuarios Os usuários a serem inseridos.
+     * @return Os IDs gerados, na mesma ordem dos usuários, ou null em caso de erro.
+     */
+    public int[] insertBatch(List<Usuario> usuarios) {
+        String sql = "INSERT INTO Usuarios (nome, email, senha, data_nascimento, genero, telefone, tipo_usuario, reutilizar_imagens, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        int[] ids = null;
+        if (conectar()) {
+            Connection conn = getConnection();
+            try {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    int[] gerados = new int[usuarios.size()];
+                    int proximo = 0;
+                    Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+                    for (int i = 0; i < usuarios.size(); i++) {
+                        Usuario usuario = usuarios.get(i);
+                        pstmt.setString(1, usuario.getNome());
+                        pstmt.setString(2, usuario.getEmail());
+                        pstmt.setString(3, usuario.getSenha()); // Lembre-se de usar hash em produção
+                        pstmt.setDate(4, usuario.getDataNascimento() != null ? Date.valueOf(usuario.getDataNascimento()) : null);
+                        pstmt.setString(5, usuario.getGenero());
+                        pstmt.setString(6, usuario.getTelefone());
+                        pstmt.setString(7, usuario.getTipoUsuario());
+                        usuario.setReutilizarImagens(reutilizarImagens(usuario));
+                        pstmt.setBoolean(8, usuario.getReutilizarImagens());
+                        pstmt.setTimestamp(9, agora);
+                        pstmt.setTimestamp(10, agora);
+                        pstmt.addBatch();
+
+                        if ((i + 1) % TAMANHO_LOTE == 0 || i == usuarios.size() - 1) {
+                            pstmt.executeBatch();
+                            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                                while (rs.next()) {
+                                    if (proximo < gerados.length) {
+                                        gerados[proximo] = rs.getInt(1);
+                                    }
+                                    proximo++;
+                                }
+                            }
+                            // Uma chave por linha inserida: sem ela o registro ficaria com id 0 e o lote pareceria bem-sucedido
+                            if (proximo != i + 1) {
+                                throw new SQLException("O banco retornou " + proximo + " IDs gerados para " + (i + 1) + " usuários inseridos.");
+                            }
+                        }
+                    }
+                    conn.commit();
+                    for (int i = 0; i < usuarios.size(); i++) {
+                        usuarios.get(i).setId(gerados[i]);
+                    }
+                    ids = gerados;
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao inserir lote de usuários: " + e.getMessage());
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    System.err.println("Erro ao desfazer lote de usuários: " + ex.getMessage());
+                }
+            } finally {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Erro ao restaurar auto-commit: " + e.getMessage());
+                }
+                close();
+            }
+        }
+        if (ids != null) {
+            Tabela.USUARIOS.alterada();
+        }
+        return ids;
+    }
+
+    /**
+     * Verifica quais dos IDs informados pertencem a usuários cadastrados.
+     * @param ids Os IDs a serem verificados.
+     * @return O conjunto dos IDs que existem no banco, ou null se a consulta falhar.
+     */
+    public Set<Integer> getExistingIds(Collection<Integer> ids) {
+        String sql = "SELECT id FROM Usuarios WHERE id = ANY(?)";
+        Set<Integer> existentes = new HashSet<>();
+        if (ids.isEmpty()) {
+            return existentes;
+        }
+        if (!conectar()) {
+            return null;
+        }
+        try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+            pstmt.setArray(1, getConnection().createArrayOf("INTEGER", ids.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    existentes.add(rs.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao verificar usuários existentes: " + e.getMessage());
+            return null;
+        } finally {
+            close();
+        }
+        return existentes;
+    }
+
+    /**
+     * Verifica quais dos emails informados já estão cadastrados.
+     * @param emails Os emails a serem verificados.
+     * @return O conjunto dos emails que já existem no banco, ou null se a consulta falhar.
+     */
+    public Set<String> getExistingEmails(Collection<String> emails) {
+        String sql = "SELECT email FROM Usuarios WHERE email = ANY(?)";
+        Set<String> existentes = new HashSet<>();
+        if (emails.isEmpty()) {
+            return existentes;
+        }
+        if (!conectar()) {
+            return null;
+        }
+        try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+            pstmt.setArray(1, getConnection().createArrayOf("VARCHAR", emails.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    existentes.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao verificar emails existentes: " + e.getMessage());
+            return null;
+        } finally {
+            close();
+        }
+        return existentes;
+    }
+
     /**
      * Busca um usuário pelo seu ID.
      * @param id O ID do usuário.
@@ -64,24 +210,11 @@ public class UsuarioDAO extends DAO {
         String sql = "SELECT * FROM Usuarios WHERE id = ?";
         Usuario usuario = null;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setInt(1, id);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     if (rs.next()) {
-                        usuario = new Usuario();
-                        usuario.setId(rs.getInt("id"));
-                        usuario.setNome(rs.getString("nome"));
-                        usuario.setEmail(rs.getString("email"));
-                        usuario.setSenha(rs.getString("senha"));
-                        Date dataNasc = rs.getDate("data_nascimento");
-                        if (dataNasc != null) {
-                            usuario.setDataNascimento(dataNasc.toLocalDate());
-                        }
-                        usuario.setGenero(rs.getString("genero"));
-                        usuario.setTelefone(rs.getString("telefone"));
-                        usuario.setTipoUsuario(rs.getString("tipo_usuario"));
-                        usuario.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                        usuario.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+                        usuario = mapear(rs, true);
                     }
                 }
             } catch (SQLException e) {
@@ -101,24 +234,11 @@ public class UsuarioDAO extends DAO {
         String sql = "SELECT * FROM Usuarios ORDER BY nome";
         List<Usuario> usuarios = new ArrayList<>();
         if (conectar()) {
-            try (Statement stmt = connection.createStatement();
+            try (Statement stmt = getConnection().createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
-                    Usuario usuario = new Usuario();
-                    usuario.setId(rs.getInt("id"));
-                    usuario.setNome(rs.getString("nome"));
-                    usuario.setEmail(rs.getString("email"));
                     // Não carregar a senha em listagens por segurança
-                    Date dataNasc = rs.getDate("data_nascimento");
-                    if (dataNasc != null) {
-                        usuario.setDataNascimento(dataNasc.toLocalDate());
-                    }
-                    usuario.setGenero(rs.getString("genero"));
-                    usuario.setTelefone(rs.getString("telefone"));
-                    usuario.setTipoUsuario(rs.getString("tipo_usuario"));
-                    usuario.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                    usuario.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
-                    usuarios.add(usuario);
+                    usuarios.add(mapear(rs, false));
                 }
             } catch (SQLException e) {
                 System.err.println("Erro ao listar usuários: " + e.getMessage());
@@ -129,16 +249,62 @@ public class UsuarioDAO extends DAO {
         return usuarios;
     }
 
+    /**
+     * Lista uma página de usuários, em ordem alfabética.
+     * Usa paginação por chave (nome, id): o custo de cada página não depende
+     * de quantas páginas vieram antes.
+     * @param limite O número máximo de usuários na página.
+     * @param apos O cursor da página anterior, ou null para a primeira página.
+     * @return A página de usuários com o cursor da próxima página.
+     */
+    public Pagina<Usuario> getPage(int limite, Cursor apos) {
+        String sql = apos == null
+                ? "SELECT * FROM Usuarios ORDER BY nome, id LIMIT ?"
+                : "SELECT * FROM Usuarios WHERE nome >= ? AND (nome > ? OR (nome = ? AND id > ?)) ORDER BY nome, id LIMIT ?";
+        List<Usuario> usuarios = new ArrayList<>();
+        if (conectar()) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+                int i = 1;
+                if (apos != null) {
+                    pstmt.setString(i++, apos.getChave());
+                    pstmt.setString(i++, apos.getChave());
+                    pstmt.setString(i++, apos.getChave());
+                    pstmt.setInt(i++, apos.getId());
+                }
+                // Busca um item a mais para saber se existe uma próxima página
+                pstmt.setInt(i, limite + 1);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        // Não carregar a senha em listagens por segurança
+                        usuarios.add(mapear(rs, false));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao listar página de usuários: " + e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        String proximoCursor = null;
+        if (usuarios.size() > limite) {
+            usuarios.remove(limite);
+            Usuario ultimo = usuarios.get(limite - 1);
+            proximoCursor = new Cursor(ultimo.getNome(), ultimo.getId()).encode();
+        }
+        return new Pagina<>(usuarios, proximoCursor);
+    }
+
     /**
      * Atualiza um usuário existente no banco de dados.
      * @param usuario O objeto Usuario com os dados atualizados.
      * @return true se a atualização for bem-sucedida, false caso contrário.
      */
     public boolean update(Usuario usuario) {
-        String sql = "UPDATE Usuarios SET nome = ?, email = ?, senha = ?, data_nascimento = ?, genero = ?, telefone = ?, tipo_usuario = ?, updated_at = ? WHERE id = ?";
+        String sql = "UPDATE Usuarios SET nome = ?, email = ?, senha = ?, data_nascimento = ?, genero = ?, telefone = ?, tipo_usuario = ?, reutilizar_imagens = COALESCE(?, reutilizar_imagens), updated_at = ? WHERE id = ?";
         boolean success = false;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setString(1, usuario.getNome());
                 pstmt.setString(2, usuario.getEmail());
                 pstmt.setString(3, usuario.getSenha());
@@ -146,8 +312,10 @@ public class UsuarioDAO extends DAO {
                 pstmt.setString(5, usuario.getGenero());
                 pstmt.setString(6, usuario.getTelefone());
                 pstmt.setString(7, usuario.getTipoUsuario());
-                pstmt.setTimestamp(8, Timestamp.valueOf(LocalDateTime.now()));
-                pstmt.setInt(9, usuario.getId());
+                // Sem o campo no corpo da requisição, a preferência atual é mantida
+                pstmt.setObject(8, usuario.getReutilizarImagens(), Types.BOOLEAN);
+                pstmt.setTimestamp(9, Timestamp.valueOf(LocalDateTime.now()));
+                pstmt.setInt(10, usuario.getId());
                 
                 success = pstmt.executeUpdate() > 0;
             } catch (SQLException e) {
@@ -156,6 +324,9 @@ public class UsuarioDAO extends DAO {
                 close();
             }
         }
+        if (success) {
+            Tabela.USUARIOS.alterada();
+        }
         return success;
     }
 
@@ -168,7 +339,7 @@ public class UsuarioDAO extends DAO {
         String sql = "DELETE FROM Usuarios WHERE id = ?";
         boolean success = false;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setInt(1, id);
                 success = pstmt.executeUpdate() > 0;
             } catch (SQLException e) {
@@ -177,6 +348,12 @@ public class UsuarioDAO extends DAO {
                 close();
             }
         }
+        if (success) {
+            // As postagens e as tarefas do usuário foram removidas em cascata
+            Tabela.USUARIOS.alterada();
+            Tabela.POSTAGENS.alterada();
+            Tabela.TAREFAS.alterada();
+        }
         return success;
     }
     
@@ -189,25 +366,11 @@ public class UsuarioDAO extends DAO {
         String sql = "SELECT * FROM Usuarios WHERE email = ?";
         Usuario usuario = null;
         if (conectar()) {
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
                 pstmt.setString(1, email);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     if (rs.next()) {
-                        usuario = new Usuario();
-                        usuario.setId(rs.getInt("id"));
-                        usuario.setNome(rs.getString("nome"));
-                        usuario.setEmail(rs.getString("email"));
-                        usuario.setSenha(rs.getString("senha")); // Necessário para autenticação
-                        Date dataNasc = rs.getDate("data_nascimento");
-                        if (dataNasc != null) {
-                            usuario.setDataNascimento(dataNasc.toLocalDate());
-                        }
-                        usuario.setGenero(rs.getString("genero"));
-                        usuario.setTelefone(rs.getString("telefone"));
-                        usuario.setTipoUsuario(rs.getString("tipo_usuario"));
-                        usuario.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-
-                        usuario.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+                        usuario = mapear(rs, true); // A senha é necessária para autenticação
                     }
                 }
             } catch (SQLException e) {
@@ -218,4 +381,34 @@ public class UsuarioDAO extends DAO {
         }
         return usuario;
     }
+
+    /**
+     * Converte a linha atual do ResultSet em um objeto Usuario.
+     * @param incluirSenha true para carregar também a senha do usuário.
+     */
+    // Usuários novos aceitam o reaproveitamento de imagens, a menos que recusem explicitamente
+    private static boolean reutilizarImagens(Usuario usuario) {
+        return usuario.getReutilizarImagens() == null || usuario.getReutilizarImagens();
+    }
+
+    private Usuario mapear(ResultSet rs, boolean incluirSenha) throws SQLException {
+        Usuario usuario = new Usuario();
+        usuario.setId(rs.getInt("id"));
+        usuario.setNome(rs.getString("nome"));
+        usuario.setEmail(rs.getString("email"));
+        if (incluirSenha) {
+            usuario.setSenha(rs.getString("senha"));
+        }
+        Date dataNasc = rs.getDate("data_nascimento");
+        if (dataNasc != null) {
+            usuario.setDataNascimento(dataNasc.toLocalDate());
+        }
+        usuario.setGenero(rs.getString("genero"));
+        usuario.setTelefone(rs.getString("telefone"));
+        usuario.setTipoUsuario(rs.getString("tipo_usuario"));
+        usuario.setReutilizarImagens(rs.getBoolean("reutilizar_imagens"));
+        usuario.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        usuario.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        return usuario;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.inkids.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências no estilo HDR: as faixas crescem em potências de 2 e cada potência
+ * é dividida em 32 sub-faixas iguais, então qualquer valor é guardado com erro relativo de no máximo ~3%,
+ * com memória fixa (cerca de 10 KB) e sem alocação no registro.
+ * Os valores são registrados em microssegundos, de 0 até cerca de 12 dias (valores maiores entram na última faixa).
+ * Seguro para uso por várias threads: cada registro é um incremento atômico.
+ */
+public final class Histograma {
+
+    private static final int BITS_SUB_FAIXA = 5;
+    private static final int SUB_FAIXAS = 1 << BITS_SUB_FAIXA; // 32
+    private static final int MAIOR_EXPOENTE = 40; // 2^40 µs ≈ 12,7 dias
+    private static final int TOTAL_FAIXAS = SUB_FAIXAS + (MAIOR_EXPOENTE - BITS_SUB_FAIXA + 1) * SUB_FAIXAS;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(TOTAL_FAIXAS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder somaMicros = new LongAdder();
+
+    /**
+     * Registra um valor em nanossegundos (ex: a diferença entre dois System.nanoTime()).
+     */
+    public void registrarNanos(long nanos) {
+        registrar(nanos / 1000);
+    }
+
+    /**
+     * Registra um valor em microssegundos.
+     */
+    public void registrar(long micros) {
+        long valor = Math.max(0, micros);
+        contagens.incrementAndGet(indice(valor));
+        total.increment();
+        somaMicros.add(valor);
+    }
+
+    // Valores abaixo de 32 têm uma faixa cada; acima, 32 faixas por potência de 2
+    private static int indice(long valor) {
+        if (valor < SUB_FAIXAS) {
+            return (int) valor;
+        }
+        int expoente = Math.min(63 - Long.numberOfLeadingZeros(valor), MAIOR_EXPOENTE);
+        int deslocamento = expoente - BITS_SUB_FAIXA;
+        int subFaixa = (int) Math.min(valor >>> deslocamento, 2L * SUB_FAIXAS - 1);
+        return SUB_FAIXAS + deslocamento * SUB_FAIXAS + (subFaixa - SUB_FAIXAS);
+    }
+
+    // Limite superior (exclusivo) da faixa, em microssegundos
+    private static long limiteSuperior(int indice) {
+        if (indice < SUB_FAIXAS) {
+            return indice + 1;
+        }
+        int deslocamento = (indice - SUB_FAIXAS) / SUB_FAIXAS;
+        long subFaixa = SUB_FAIXAS + (indice - SUB_FAIXAS) % SUB_FAIXAS;
+        return (subFaixa + 1) << deslocamento;
+    }
+
+    public long getContagem() {
+        return total.sum();
+    }
+
+    public long getSomaMicros() {
+        return somaMicros.sum();
+    }
+
+    /**
+     * Cópia das contagens de todas as faixas, para exportar vários limites de forma consistente.
+     */
+    public Retrato retrato() {
+        long[] copia = new long[TOTAL_FAIXAS];
+        long soma = 0;
+        for (int i = 0; i < TOTAL_FAIXAS; i++) {
+            copia[i] = contagens.get(i);
+            soma += copia[i];
+        }
+        return new Retrato(copia, soma, somaMicros.sum());
+    }
+
+    /**
+     * Contagens do histograma em um instante.
+     */
+    public static final class Retrato {
+        private final long[] contagens;
+        private final long total;
+        private final long somaMicros;
+
+        private Retrato(long[] contagens, long total, long somaMicros) {
+            this.contagens = contagens;
+            this.total = total;
+            this.somaMicros = somaMicros;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getSomaMicros() {
+            return somaMicros;
+        }
+
+        /**
+         * Quantos valores são menores ou iguais ao limite (com a precisão das faixas).
+         * @param limiteMicros O limite, em microssegundos.
+         */
+        public long contagemAte(long limiteMicros) {
+            long acumulado = 0;
+            for (int i = 0; i < contagens.length && limiteSuperior(i) <= limiteMicros + 1; i++) {
+                acumulado += contagens[i];
+            }
+            return acumulado;
+        }
+
+        /**
+         * O percentil informado (ex: 0.99), em microssegundos, ou 0 se não houver valores.
+         */
+        public long percentil(double percentil) {
+            if (total == 0) {
+                return 0;
+            }
+            long alvo = Math.max(1, (long) Math.ceil(percentil * total));
+            long acumulado = 0;
+            for (int i = 0; i < contagens.length; i++) {
+                acumulado += contagens[i];
+                if (acumulado >= alvo) {
+                    return limiteSuperior(i) - 1;
+                }
+            }
+            return limiteSuperior(contagens.length - 1) - 1;
+        }
+    }
+}
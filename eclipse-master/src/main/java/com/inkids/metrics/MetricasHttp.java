@@ -0,0 +1,108 @@
+package com.inkids.metrics;
+
+import spark.Request;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import static spark.Spark.*;
+
+/**
+ * Instrumentação das rotas HTTP com filtros do Spark: um filtro before marca o início da requisição
+ * e um afterAfter (executado mesmo quando a rota lança exceção) registra a latência no histograma
+ * da rota e do status. Também registra a rota GET /api/metrics, que exporta o {@link RegistroMetricas}.
+ *
+ * Nos filtros o Spark não informa qual rota atendeu a requisição, então o caminho é normalizado:
+ * segmentos numéricos viram ":id" e hashes de imagem viram ":hash" (ex: /api/postagens/:id).
+ * Para que caminhos inexistentes não criem séries sem fim, no máximo MAX_ROTAS caminhos distintos são medidos;
+ * os demais são agrupados em "outras".
+ */
+public final class MetricasHttp {
+
+    private static final String LATENCIA = "inkids_http_requisicoes_segundos";
+    private static final String EM_ANDAMENTO = "inkids_http_requisicoes_em_andamento";
+    private static final String ATRIBUTO_INICIO = "inkids.metricas.inicio";
+    private static final String ATRIBUTO_EM_ANDAMENTO = "inkids.metricas.emAndamento";
+    private static final String ATRIBUTO_ROTA = "inkids.metricas.rota";
+    private static final int MAX_ROTAS = 200;
+
+    private static final Pattern NUMERO = Pattern.compile("\\d+");
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private static final Set<String> rotasConhecidas = ConcurrentHashMap.newKeySet();
+
+    private MetricasHttp() {
+    }
+
+    /**
+     * Registra os filtros de medição e a rota /api/metrics.
+     * Deve ser chamado antes dos outros filtros e rotas, para que o tempo deles também seja medido.
+     */
+    public static void instalar() {
+        RegistroMetricas registro = RegistroMetricas.getInstance();
+
+        before((request, response) -> {
+            String rota = rota(request);
+            LongAdder emAndamento = registro.medidor(EM_ANDAMENTO, "Requisições HTTP em andamento, por rota.",
+                    "metodo", request.requestMethod(), "rota", rota);
+            emAndamento.increment();
+            request.attribute(ATRIBUTO_ROTA, rota);
+            request.attribute(ATRIBUTO_EM_ANDAMENTO, emAndamento);
+            request.attribute(ATRIBUTO_INICIO, System.nanoTime());
+        });
+
+        afterAfter((request, response) -> {
+            Long inicio = request.attribute(ATRIBUTO_INICIO);
+            LongAdder emAndamento = request.attribute(ATRIBUTO_EM_ANDAMENTO);
+            if (inicio == null || emAndamento == null) {
+                return;
+            }
+            emAndamento.decrement();
+            registro.histograma(LATENCIA, "Latência das requisições HTTP, por rota e status.",
+                    "metodo", request.requestMethod(),
+                    "rota", request.<String>attribute(ATRIBUTO_ROTA),
+                    "status", Integer.toString(response.raw().getStatus()))
+                    .registrarNanos(System.nanoTime() - inicio);
+        });
+
+        // Endpoint: Métricas no formato texto do Prometheus
+        get("/api/metrics", (request, response) -> {
+            response.type("text/plain; version=0.0.4; charset=utf-8");
+            return registro.exportarPrometheus();
+        });
+    }
+
+    /**
+     * Caminho da requisição com os identificadores trocados por ":id" e ":hash".
+     */
+    private static String rota(Request request) {
+        String caminho = request.pathInfo();
+        if (caminho == null || caminho.isEmpty()) {
+            return "/";
+        }
+        String[] segmentos = caminho.split("/", -1);
+        StringBuilder rota = new StringBuilder(caminho.length());
+        for (int i = 1; i < segmentos.length; i++) {
+            String segmento = segmentos[i];
+            rota.append('/');
+            if (NUMERO.matcher(segmento).matches()) {
+                rota.append(":id");
+            } else if (HASH.matcher(segmento).matches()) {
+                rota.append(":hash");
+            } else {
+                rota.append(segmento);
+            }
+        }
+        String normalizada = rota.length() > 0 ? rota.toString() : "/";
+        if (rotasConhecidas.contains(normalizada)) {
+            return normalizada;
+        }
+        if (rotasConhecidas.size() >= MAX_ROTAS) {
+            return "outras";
+        }
+        rotasConhecidas.add(normalizada);
+        return normalizada;
+    }
+}
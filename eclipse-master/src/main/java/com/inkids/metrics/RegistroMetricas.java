@@ -0,0 +1,245 @@
+package com.inkids.metrics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Registro central das métricas da aplicação, exportadas no formato texto do Prometheus em GET /api/metrics.
+ * Guarda três tipos de métrica, cada uma identificada pelo nome e pelos rótulos:
+ * - histogramas de latência ({@link Histograma}), exportados em segundos;
+ * - contadores e medidores (gauges) baseados em LongAdder, baratos mesmo com muitas threads;
+ * - coletores: mapas de métricas já existentes (ex: ConnectionPool.getMetricas()), lidos no momento da exportação.
+ */
+public final class RegistroMetricas {
+
+    // Limites (em segundos) dos buckets exportados para os histogramas, como no cliente oficial do Prometheus
+    private static final double[] LIMITES_SEGUNDOS = {
+        0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+    };
+
+    private static final RegistroMetricas INSTANCIA = new RegistroMetricas();
+
+    private enum Tipo { HISTOGRAMA, CONTADOR, MEDIDOR }
+
+    private static final class Familia {
+        final String nome;
+        final String ajuda;
+        final Tipo tipo;
+        // Pelos rótulos já formatados (ex: metodo="GET",rota="/api/postagens")
+        final ConcurrentMap<String, Object> series = new ConcurrentHashMap<>();
+
+        Familia(String nome, String ajuda, Tipo tipo) {
+            this.nome = nome;
+            this.ajuda = ajuda;
+            this.tipo = tipo;
+        }
+    }
+
+    private static final class Coletor {
+        final String prefixo;
+        final Supplier<Map<String, Object>> metricas;
+
+        Coletor(String prefixo, Supplier<Map<String, Object>> metricas) {
+            this.prefixo = prefixo;
+            this.metricas = metricas;
+        }
+    }
+
+    private final ConcurrentMap<String, Familia> familias = new ConcurrentHashMap<>();
+    private final List<Coletor> coletores = new CopyOnWriteArrayList<>();
+
+    private RegistroMetricas() {
+    }
+
+    public static RegistroMetricas getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Busca (ou cria) o histograma com o nome e os rótulos informados.
+     * @param nome O nome da métrica (ex: "inkids_http_requisicoes_segundos").
+     * @param ajuda A descrição exportada no # HELP.
+     * @param rotulos Pares nome/valor (ex: "metodo", "GET", "status", "200").
+     */
+    public Histograma histograma(String nome, String ajuda, String... rotulos) {
+        return (Histograma) familia(nome, ajuda, Tipo.HISTOGRAMA).series
+                .computeIfAbsent(formatarRotulos(rotulos), r -> new Histograma());
+    }
+
+    /**
+     * Busca (ou cria) um contador, que só cresce.
+     */
+    public LongAdder contador(String nome, String ajuda, String... rotulos) {
+        return (LongAdder) familia(nome, ajuda, Tipo.CONTADOR).series
+                .computeIfAbsent(formatarRotulos(rotulos), r -> new LongAdder());
+    }
+
+    /**
+     * Busca (ou cria) um medidor, que sobe e desce (ex: requisições em andamento).
+     */
+    public LongAdder medidor(String nome, String ajuda, String... rotulos) {
+        return (LongAdder) familia(nome, ajuda, Tipo.MEDIDOR).series
+                .computeIfAbsent(formatarRotulos(rotulos), r -> new LongAdder());
+    }
+
+    /**
+     * Registra um mapa de métricas lido a cada exportação. Valores numéricos viram medidores
+     * (prefixo_chave_em_snake_case), booleanos viram 0 ou 1, textos viram prefixo_chave{valor="..."} 1
+     * e mapas aninhados são exportados com a chave deles no prefixo.
+     * @param prefixo O prefixo dos nomes (ex: "inkids_pool").
+     * @param metricas Quem fornece o mapa (ex: ConnectionPool::getMetricas).
+     */
+    public void registrarColetor(String prefixo, Supplier<Map<String, Object>> metricas) {
+        coletores.add(new Coletor(prefixo, metricas));
+    }
+
+    private Familia familia(String nome, String ajuda, Tipo tipo) {
+        Familia familia = familias.computeIfAbsent(nome, n -> new Familia(n, ajuda, tipo));
+        if (familia.tipo != tipo) {
+            throw new IllegalArgumentException("A métrica " + nome + " já foi registrada com outro tipo.");
+        }
+        return familia;
+    }
+
+    /**
+     * Escreve todas as métricas no formato texto do Prometheus (versão 0.0.4).
+     */
+    public String exportarPrometheus() {
+        StringBuilder saida = new StringBuilder(16 * 1024);
+        for (Familia familia : new TreeMap<>(familias).values()) {
+            saida.append("# HELP ").append(familia.nome).append(' ').append(escaparAjuda(familia.ajuda)).append('\n');
+            saida.append("# TYPE ").append(familia.nome).append(' ').append(tipoPrometheus(familia.tipo)).append('\n');
+            for (Map.Entry<String, Object> serie : new TreeMap<>(familia.series).entrySet()) {
+                if (familia.tipo == Tipo.HISTOGRAMA) {
+                    escreverHistograma(saida, familia.nome, serie.getKey(), ((Histograma) serie.getValue()).retrato());
+                } else {
+                    escreverAmostra(saida, familia.nome, serie.getKey(), ((LongAdder) serie.getValue()).sum());
+                }
+            }
+        }
+
+        for (Coletor coletor : coletores) {
+            Map<String, Object> metricas;
+            try {
+                metricas = coletor.metricas.get();
+            } catch (RuntimeException e) {
+                System.err.println("Erro ao coletar as métricas de " + coletor.prefixo + ": " + e.getMessage());
+                continue;
+            }
+            escreverMapa(saida, coletor.prefixo, metricas);
+        }
+        return saida.toString();
+    }
+
+    private static void escreverHistograma(StringBuilder saida, String nome, String rotulos, Histograma.Retrato retrato) {
+        String separador = rotulos.isEmpty() ? "" : ",";
+        for (double limite : LIMITES_SEGUNDOS) {
+            long contagem = retrato.contagemAte(Math.round(limite * 1_000_000));
+            saida.append(nome).append("_bucket{").append(rotulos).append(separador)
+                    .append("le=\"").append(formatarNumero(limite)).append("\"} ").append(contagem).append('\n');
+        }
+        saida.append(nome).append("_bucket{").append(rotulos).append(separador)
+                .append("le=\"+Inf\"} ").append(retrato.getTotal()).append('\n');
+        escreverAmostra(saida, nome + "_sum", rotulos, retrato.getSomaMicros() / 1_000_000.0);
+        escreverAmostra(saida, nome + "_count", rotulos, retrato.getTotal());
+    }
+
+    private static void escreverMapa(StringBuilder saida, String prefixo, Map<String, Object> metricas) {
+        for (Map.Entry<String, Object> metrica : metricas.entrySet()) {
+            String nome = prefixo + "_" + snakeCase(metrica.getKey());
+            Object valor = metrica.getValue();
+            if (valor instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> aninhado = (Map<String, Object>) valor;
+                escreverMapa(saida, nome, aninhado);
+            } else if (valor instanceof Number) {
+                saida.append("# TYPE ").append(nome).append(" gauge\n");
+                escreverAmostra(saida, nome, "", ((Number) valor).doubleValue());
+            } else if (valor instanceof Boolean) {
+                saida.append("# TYPE ").append(nome).append(" gauge\n");
+                escreverAmostra(saida, nome, "", (Boolean) valor ? 1 : 0);
+            } else if (valor != null) {
+                saida.append("# TYPE ").append(nome).append(" gauge\n");
+                escreverAmostra(saida, nome, "valor=\"" + escaparValor(valor.toString()) + "\"", 1);
+            }
+        }
+    }
+
+    private static void escreverAmostra(StringBuilder saida, String nome, String rotulos, double valor) {
+        saida.append(nome);
+        if (!rotulos.isEmpty()) {
+            saida.append('{').append(rotulos).append('}');
+        }
+        saida.append(' ').append(formatarNumero(valor)).append('\n');
+    }
+
+    private static String formatarNumero(double valor) {
+        if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) {
+            return Long.toString((long) valor);
+        }
+        if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+            return Double.isNaN(valor) ? "NaN" : (valor > 0 ? "+Inf" : "-Inf");
+        }
+        return BigDecimal.valueOf(valor).stripTrailingZeros().toPlainString();
+    }
+
+    private static String formatarRotulos(String... rotulos) {
+        if (rotulos.length % 2 != 0) {
+            throw new IllegalArgumentException("Os rótulos devem ser pares nome/valor.");
+        }
+        List<String> pares = new ArrayList<>(rotulos.length / 2);
+        for (int i = 0; i < rotulos.length; i += 2) {
+            pares.add(rotulos[i] + "=\"" + escaparValor(rotulos[i + 1]) + "\"");
+        }
+        return String.join(",", pares);
+    }
+
+    private static String tipoPrometheus(Tipo tipo) {
+        switch (tipo) {
+            case HISTOGRAMA:
+                return "histogram";
+            case CONTADOR:
+                return "counter";
+            default:
+                return "gauge";
+        }
+    }
+
+    // tempoMedioAquisicaoMs -> tempo_medio_aquisicao_ms
+    private static String snakeCase(String chave) {
+        StringBuilder nome = new StringBuilder(chave.length() + 8);
+        for (int i = 0; i < chave.length(); i++) {
+            char c = chave.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) {
+                    nome.append('_');
+                }
+                nome.append(Character.toLowerCase(c));
+            } else if (Character.isLetterOrDigit(c) && c < 128) {
+                nome.append(c);
+            } else {
+                nome.append('_');
+            }
+        }
+        return nome.toString();
+    }
+
+    private static String escaparValor(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        return valor.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String escaparAjuda(String ajuda) {
+        return ajuda.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,31 @@
+package com.inkids.model;
+
+/**
+ * Representa uma imagem gerada por um backend de geração de imagens:
+ * o conteúdo binário e o tipo MIME correspondente.
+ */
+public class ImagemGerada {
+    private final byte[] bytes;
+    private final String mimeType;
+
+    public ImagemGerada(byte[] bytes, String mimeType) {
+        this.bytes = bytes;
+        this.mimeType = mimeType;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    @Override
+    public String toString() {
+        return "ImagemGerada{" +
+               "mimeType='" + mimeType + '\'' +
+               ", tamanho=" + bytes.length +
+               '}';
+    }
+}
@@ -0,0 +1,121 @@
+package com.inkids.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Representa um job de geração de imagem de uma postagem.
+ * Os jobs ficam persistidos no banco e são executados em segundo plano,
+ * com novas tentativas (e intervalo crescente entre elas) em caso de falha.
+ */
+public class ImagemJob {
+    private int id;
+    private int postagemId;
+    private String prompt;
+    private String status; // Ex: "PENDENTE", "EM_PROCESSAMENTO", "CONCLUIDO", "FALHOU"
+    private int tentativas;
+    private LocalDateTime proximaTentativa;
+    private String ultimoErro;
+    private boolean reutilizarImagens = true; // Preferência do autor da postagem (não é gravada no job)
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    // Construtor padrão
+    public ImagemJob() {}
+
+    // --- Getters e Setters ---
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getPostagemId() {
+        return postagemId;
+    }
+
+    public void setPostagemId(int postagemId) {
+        this.postagemId = postagemId;
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public void setPrompt(String prompt) {
+        this.prompt = prompt;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getTentativas() {
+        return tentativas;
+    }
+
+    public void setTentativas(int tentativas) {
+        this.tentativas = tentativas;
+    }
+
+    public LocalDateTime getProximaTentativa() {
+        return proximaTentativa;
+    }
+
+    public void setProximaTentativa(LocalDateTime proximaTentativa) {
+        this.proximaTentativa = proximaTentativa;
+    }
+
+    public boolean isReutilizarImagens() {
+        return reutilizarImagens;
+    }
+
+    public void setReutilizarImagens(boolean reutilizarImagens) {
+        this.reutilizarImagens = reutilizarImagens;
+    }
+
+    public String getUltimoErro() {
+        return ultimoErro;
+    }
+
+    public void setUltimoErro(String ultimoErro) {
+        this.ultimoErro = ultimoErro;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ImagemJob{" +
+               "id=" + id +
+               ", postagemId=" + postagemId +
+               ", prompt='" + prompt + '\'' +
+               ", status='" + status + '\'' +
+               ", tentativas=" + tentativas +
+               ", proximaTentativa=" + proximaTentativa +
+               ", ultimoErro='" + ultimoErro + '\'' +
+               ", createdAt=" + createdAt +
+               ", updatedAt=" + updatedAt +
+               '}';
+    }
+}
@@ -0,0 +1,48 @@
+package com.inkids.model;
+
+import java.util.List;
+
+/**
+ * Representa uma página de resultados de uma listagem paginada.
+ * Contém os itens da página e o cursor opaco para buscar a próxima página,
+ * que é null quando não há mais resultados.
+ */
+public class Pagina<T> {
+    private List<T> itens;
+    private String proximoCursor;
+
+    // Construtor padrão
+    public Pagina() {}
+
+    // Construtor com parâmetros essenciais
+    public Pagina(List<T> itens, String proximoCursor) {
+        this.itens = itens;
+        this.proximoCursor = proximoCursor;
+    }
+
+    // --- Getters e Setters ---
+
+    public List<T> getItens() {
+        return itens;
+    }
+
+    public void setItens(List<T> itens) {
+        this.itens = itens;
+    }
+
+    public String getProximoCursor() {
+        return proximoCursor;
+    }
+
+    public void setProximoCursor(String proximoCursor) {
+        this.proximoCursor = proximoCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "Pagina{" +
+               "itens=" + itens +
+               ", proximoCursor='" + proximoCursor + '\'' +
+               '}';
+    }
+}
@@ -6,6 +6,9 @@ import java.time.LocalDateTime;
  * Representa a entidade Postagem.
  * Armazena o conteúdo de uma postagem, incluindo um título, o texto,
  * o ID do autor e uma URL para uma imagem gerada por IA.
+ * A imagem é gerada em segundo plano; imagemStatus indica se ela já está pronta.
+ * imagemMiniaturaUrl e imagemMediaUrl são versões menores da imagem, para as listagens;
+ * não são gravadas no banco e ficam null quando a imagem não é servida pelo próprio servidor.
  */
 public class Postagem {
     private int id;
@@ -13,6 +16,9 @@ public class Postagem {
     private String conteudo;
     private int autorId;
     private String imagemUrl;
+    private String imagemStatus; // Ex: "PENDENTE", "PRONTA", "FALHOU"
+    private String imagemMiniaturaUrl;
+    private String imagemMediaUrl;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -69,6 +75,30 @@ public class Postagem {
         this.imagemUrl = imagemUrl;
     }
 
+    public String getImagemStatus() {
+        return imagemStatus;
+    }
+
+    public void setImagemStatus(String imagemStatus) {
+        this.imagemStatus = imagemStatus;
+    }
+
+    public String getImagemMiniaturaUrl() {
+        return imagemMiniaturaUrl;
+    }
+
+    public void setImagemMiniaturaUrl(String imagemMiniaturaUrl) {
+        this.imagemMiniaturaUrl = imagemMiniaturaUrl;
+    }
+
+    public String getImagemMediaUrl() {
+        return imagemMediaUrl;
+    }
+
+    public void setImagemMediaUrl(String imagemMediaUrl) {
+        this.imagemMediaUrl = imagemMediaUrl;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -93,6 +123,7 @@ public class Postagem {
                ", conteudo='" + conteudo + '\'' +
                ", autorId=" + autorId +
                ", imagemUrl='" + imagemUrl + '\'' +
+               ", imagemStatus='" + imagemStatus + '\'' +
                ", createdAt=" + createdAt +
                ", updatedAt=" + updatedAt +
                '}';
@@ -0,0 +1,120 @@
+package com.inkids.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Representa o resultado de uma inserção em lote.
+ * Cada item enviado recebe um resultado, na mesma ordem da requisição:
+ * o ID gerado, se foi inserido, ou o motivo da rejeição.
+ */
+public class ResultadoLote {
+    private int inseridos;
+    private int rejeitados;
+    private List<Item> resultados = new ArrayList<>();
+
+    // Construtor padrão
+    public ResultadoLote() {}
+
+    /**
+     * Registra um item inserido com sucesso.
+     */
+    public void adicionarInserido(int indice, int id) {
+        resultados.add(new Item(indice, id, null));
+        inseridos++;
+    }
+
+    /**
+     * Registra um item rejeitado na validação.
+     */
+    public void adicionarRejeitado(int indice, String erro) {
+        resultados.add(new Item(indice, null, erro));
+        rejeitados++;
+    }
+
+    // --- Getters e Setters ---
+
+    public int getInseridos() {
+        return inseridos;
+    }
+
+    public void setInseridos(int inseridos) {
+        this.inseridos = inseridos;
+    }
+
+    public int getRejeitados() {
+        return rejeitados;
+    }
+
+    public void setRejeitados(int rejeitados) {
+        this.rejeitados = rejeitados;
+    }
+
+    public List<Item> getResultados() {
+        return resultados;
+    }
+
+    public void setResultados(List<Item> resultados) {
+        this.resultados = resultados;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote{" +
+               "inseridos=" + inseridos +
+               ", rejeitados=" + rejeitados +
+               ", resultados=" + resultados +
+               '}';
+    }
+
+    /**
+     * Resultado de um item do lote.
+     */
+    public static class Item {
+        private int indice;
+        private Integer id;
+        private String erro;
+
+        // Construtor padrão
+        public Item() {}
+
+        public Item(int indice, Integer id, String erro) {
+            this.indice = indice;
+            this.id = id;
+            this.erro = erro;
+        }
+
+        public int getIndice() {
+            return indice;
+        }
+
+        public void setIndice(int indice) {
+            this.indice = indice;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public String getErro() {
+            return erro;
+        }
+
+        public void setErro(String erro) {
+            this.erro = erro;
+        }
+
+        @Override
+        public String toString() {
+            return "Item{" +
+                   "indice=" + indice +
+                   ", id=" + id +
+                   ", erro='" + erro + '\'' +
+                   '}';
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.inkids.model;
+
+/**
+ * Representa o andamento da geração da imagem de uma postagem,
+ * consultado pelo cliente enquanto a imagem é gerada em segundo plano.
+ */
+public class StatusImagem {
+    private int postagemId;
+    private String status; // Ex: "PENDENTE", "PRONTA", "FALHOU"
+    private String imagemUrl;
+    private int tentativas;
+    private String ultimoErro;
+
+    // Construtor padrão
+    public StatusImagem() {}
+
+    // --- Getters e Setters ---
+
+    public int getPostagemId() {
+        return postagemId;
+    }
+
+    public void setPostagemId(int postagemId) {
+        this.postagemId = postagemId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getImagemUrl() {
+        return imagemUrl;
+    }
+
+    public void setImagemUrl(String imagemUrl) {
+        this.imagemUrl = imagemUrl;
+    }
+
+    public int getTentativas() {
+        return tentativas;
+    }
+
+    public void setTentativas(int tentativas) {
+        this.tentativas = tentativas;
+    }
+
+    public String getUltimoErro() {
+        return ultimoErro;
+    }
+
+    public void setUltimoErro(String ultimoErro) {
+        this.ultimoErro = ultimoErro;
+    }
+
+    @Override
+    public String toString() {
+        return "StatusImagem{" +
+               "postagemId=" + postagemId +
+               ", status='" + status + '\'' +
+               ", imagemUrl='" + imagemUrl + '\'' +
+               ", tentativas=" + tentativas +
+               ", ultimoErro='" + ultimoErro + '\'' +
+               '}';
+    }
+}
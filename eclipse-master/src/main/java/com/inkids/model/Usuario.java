@@ -16,6 +16,7 @@ public class Usuario {
     private String genero;
     private String telefone;
     private String tipoUsuario; // Ex: "USER", "ADMIN"
+    private Boolean reutilizarImagens; // Se as postagens podem receber a imagem já gerada para um título parecido
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -99,6 +100,14 @@ public class Usuario {
         this.tipoUsuario = tipoUsuario;
     }
 
+    public Boolean getReutilizarImagens() {
+        return reutilizarImagens;
+    }
+
+    public void setReutilizarImagens(Boolean reutilizarImagens) {
+        this.reutilizarImagens = reutilizarImagens;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -126,6 +135,7 @@ public class Usuario {
                ", genero='" + genero + '\'' +
                ", telefone='" + telefone + '\'' +
                ", tipoUsuario='" + tipoUsuario + '\'' +
+               ", reutilizarImagens=" + reutilizarImagens +
                ", createdAt=" + createdAt +
                ", updatedAt=" + updatedAt +
                '}';
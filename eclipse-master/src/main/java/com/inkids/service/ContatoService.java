@@ -1,7 +1,9 @@
 package com.inkids.service;
 
 import com.inkids.dao.ContatoDAO;
+import com.inkids.dao.Cursor;
 import com.inkids.model.Contato;
+import com.inkids.model.Pagina;
 
 import java.util.List;
 
@@ -45,6 +47,17 @@ public class ContatoService {
     public List<Contato> listarTodasMensagens() {
         return contatoDAO.getAll();
     }
+
+    /**
+     * Lista uma página de mensagens de contato, da mais recente para a mais antiga.
+     * @param limite O número máximo de mensagens na página.
+     * @param cursor O cursor opaco da página anterior, ou null para a primeira página.
+     * @return A página de mensagens.
+     * @throws IllegalArgumentException se o cursor for inválido.
+     */
+    public Pagina<Contato> listarPaginaMensagens(int limite, String cursor) {
+        return contatoDAO.getPage(limite, cursor != null ? Cursor.decode(cursor) : null);
+    }
     
     /**
      * Deleta uma mensagem de contato pelo seu ID.
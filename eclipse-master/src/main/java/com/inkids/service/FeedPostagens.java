@@ -0,0 +1,455 @@
+package com.inkids.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.inkids.config.Configuracao;
+import com.inkids.dao.Cursor;
+import com.inkids.model.Postagem;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Feed das postagens mais recentes, guardado em memória já serializado em JSON, para que a página inicial
+ * e a listagem de postagens (GET /api/postagens) sejam respondidas sem consultar o banco nem chamar o Jackson.
+ *
+ * Guarda as inkids.postagens.feed.maxPostagens postagens mais recentes (padrão 200, 0 desliga o feed), cada uma
+ * com o seu JSON e o seu cursor de paginação. Com elas são respondidas as páginas que cabem no feed e, quando a
+ * tabela inteira cabe nele, a listagem completa. As respostas da listagem completa e das primeiras páginas ficam
+ * prontas até a próxima alteração.
+ *
+ * O {@link PostagemService} carrega o feed do banco na primeira leitura e o atualiza a cada postagem criada,
+ * alterada (inclusive quando a imagem é anexada) ou removida. Se uma alteração cruza com outra, o feed é
+ * descartado e carregado de novo na leitura seguinte, como no {@link UsuarioCache}.
+ */
+public class FeedPostagens {
+
+    private static final int MAX_POSTAGENS = Math.max(0, Configuracao.getInt("inkids.postagens.feed.maxPostagens", 200));
+    private static final FeedPostagens INSTANCIA = new FeedPostagens();
+    // As versões recomeçam do zero a cada execução: a época diferencia as de execuções diferentes
+    private static final String EPOCA = Long.toString(System.currentTimeMillis(), 36);
+
+    private static final byte[] INICIO_PAGINA = "{\"itens\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CURSOR_PAGINA = "],\"proximoCursor\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SEM_CURSOR = "null".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FIM_PAGINA = "}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INICIO_ARRAY = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FIM_ARRAY = "]".getBytes(StandardCharsets.UTF_8);
+
+    // Uma postagem do feed, com o JSON dela e o do cursor que aponta para ela
+    private static final class Item {
+        final int id;
+        final LocalDateTime createdAt;
+        final byte[] json;
+        final byte[] cursor;
+
+        Item(int id, LocalDateTime createdAt, byte[] json, byte[] cursor) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.json = json;
+            this.cursor = cursor;
+        }
+
+        // Mesma ordem da consulta: created_at DESC, id DESC
+        boolean maisRecenteQue(LocalDateTime outroCreatedAt, int outroId) {
+            int comparacao = createdAt.compareTo(outroCreatedAt);
+            return comparacao > 0 || (comparacao == 0 && id > outroId);
+        }
+    }
+
+    /**
+     * Uma resposta montada pelo feed, com o identificador da versão do feed de onde ela saiu (para o ETag).
+     * As respostas guardadas no feed (primeiras páginas e listagem completa) também guardam as versões
+     * comprimidas do corpo, geradas no primeiro pedido de cada codificação.
+     */
+    public static final class Conteudo {
+        private final byte[] corpo;
+        private final String identificadorVersao;
+        private final Map<String, byte[]> codificados = new ConcurrentHashMap<>(4);
+
+        Conteudo(byte[] corpo, String identificadorVersao) {
+            this.corpo = corpo;
+            this.identificadorVersao = identificadorVersao;
+        }
+
+        public byte[] getCorpo() {
+            return corpo;
+        }
+
+        /**
+         * O corpo na codificação pedida (ex: "gzip"), codificado uma única vez por resposta guardada.
+         * @param codificacao O nome da codificação.
+         * @param codificar Gera o corpo codificado a partir do original, quando ele ainda não foi guardado.
+         */
+        public byte[] getCorpo(String codificacao, UnaryOperator<byte[]> codificar) {
+            return codificados.computeIfAbsent(codificacao, nome -> codificar.apply(corpo));
+        }
+
+        /**
+         * Muda sempre que o conteúdo do feed muda (e a cada reinício da aplicação).
+         */
+        public String getIdentificadorVersao() {
+            return identificadorVersao;
+        }
+    }
+
+    // Conteúdo do feed em um instante. Nunca é alterado: cada mudança publica um novo.
+    private static final class Retrato {
+        // Diferente em cada retrato publicado (é a versão do feed no momento da publicação)
+        final String identificadorVersao;
+        final Item[] itens;
+        // true se o feed tem todas as postagens da tabela
+        final boolean completo;
+        // Primeira página já montada, por limite, e a listagem completa
+        final Map<Integer, Conteudo> primeirasPaginas = new ConcurrentHashMap<>();
+        volatile Conteudo todas;
+
+        Retrato(long versao, Item[] itens, boolean completo) {
+            this.identificadorVersao = "postagens-feed-" + EPOCA + "-" + versao;
+            this.itens = itens;
+            this.completo = completo;
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+
+    // null enquanto o feed precisa ser carregado do banco
+    private volatile Retrato retrato;
+    // Protegida por "this". Incrementada a cada alteração: um carregamento ou uma postagem lida do banco
+    // antes dela não pode mais entrar no feed.
+    private long versao;
+    private final AtomicBoolean carregando = new AtomicBoolean();
+
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder faltas = new LongAdder();
+    private final LongAdder carregamentos = new LongAdder();
+    private final LongAdder atualizacoes = new LongAdder();
+    private final LongAdder descartes = new LongAdder();
+
+    private FeedPostagens() {
+        // Configurado como o ObjectMapper dos controllers, para gerar exatamente o mesmo JSON
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.writer = objectMapper.writerFor(Postagem.class);
+    }
+
+    public static FeedPostagens getInstance() {
+        return INSTANCIA;
+    }
+
+    public boolean isHabilitado() {
+        return MAX_POSTAGENS > 0;
+    }
+
+    /**
+     * Reserva o carregamento do feed, quando ele precisa ser lido do banco antes de responder.
+     * Só uma thread carrega por vez; as outras seguem para o banco enquanto isso.
+     * @return true se quem chamou deve carregar o feed (com {@link #carregar}) e depois chamar {@link #concluirCarregamento()}.
+     */
+    public boolean iniciarCarregamento() {
+        return isHabilitado() && retrato == null && carregando.compareAndSet(false, true);
+    }
+
+    /**
+     * Libera o carregamento reservado por {@link #iniciarCarregamento()}, tenha ele dado certo ou não.
+     */
+    public void concluirCarregamento() {
+        carregando.set(false);
+    }
+
+    /**
+     * Quantas postagens o carregamento deve buscar. Uma a mais, para saber se a tabela inteira coube no feed.
+     */
+    public int getTamanhoCarga() {
+        return MAX_POSTAGENS + 1;
+    }
+
+    // --- Leitura ---
+
+    /**
+     * A listagem completa (array JSON com todas as postagens), se a tabela inteira couber no feed.
+     * @return A resposta, ou null se ela precisar ser lida do banco.
+     */
+    public Conteudo buscarTodas() {
+        Retrato atual = retrato;
+        if (atual == null || !atual.completo) {
+            faltas.increment();
+            return null;
+        }
+        Conteudo todas = atual.todas;
+        if (todas == null) {
+            todas = new Conteudo(montarArray(atual.itens), atual.identificadorVersao);
+            atual.todas = todas;
+        }
+        acertos.increment();
+        return todas;
+    }
+
+    /**
+     * Uma página da listagem paginada (mesmo JSON de {@link com.inkids.model.Pagina}), se ela couber no feed.
+     * @param limite O número máximo de postagens na página.
+     * @param cursor O cursor opaco da página anterior, ou null para a primeira página.
+     * @return A resposta, ou null se a página precisar ser lida do banco.
+     * @throws IllegalArgumentException se o cursor for inválido.
+     */
+    public Conteudo buscarPagina(int limite, String cursor) {
+        Retrato atual = retrato;
+        if (atual == null) {
+            faltas.increment();
+            return null;
+        }
+        if (cursor == null) {
+            Conteudo pagina = atual.primeirasPaginas.get(limite);
+            if (pagina == null) {
+                byte[] corpo = montarPagina(atual, 0, limite);
+                if (corpo == null) {
+                    faltas.increment();
+                    return null;
+                }
+                pagina = new Conteudo(corpo, atual.identificadorVersao);
+                atual.primeirasPaginas.put(limite, pagina);
+            }
+            acertos.increment();
+            return pagina;
+        }
+
+        Cursor apos = Cursor.decode(cursor);
+        LocalDateTime chave = apos.getChaveTimestamp().toLocalDateTime();
+        // A página começa na primeira postagem depois do cursor (a do próprio cursor fica de fora)
+        int inicio = 0;
+        while (inicio < atual.itens.length && atual.itens[inicio].maisRecenteQue(chave, apos.getId() - 1)) {
+            inicio++;
+        }
+        byte[] corpo = montarPagina(atual, inicio, limite);
+        if (corpo == null) {
+            faltas.increment();
+            return null;
+        }
+        acertos.increment();
+        return new Conteudo(corpo, atual.identificadorVersao);
+    }
+
+    // A página com até "limite" postagens a partir de "inicio", ou null se o feed não tiver certeza do conteúdo dela
+    private static byte[] montarPagina(Retrato atual, int inicio, int limite) {
+        int fim = inicio + limite;
+        byte[] proximoCursor;
+        if (fim < atual.itens.length) {
+            // Existe pelo menos mais uma postagem depois da página
+            proximoCursor = atual.itens[fim - 1].cursor;
+        } else if (atual.completo) {
+            fim = atual.itens.length;
+            proximoCursor = SEM_CURSOR;
+        } else {
+            // O restante da página (ou a existência de uma próxima) só o banco sabe
+            return null;
+        }
+
+        int tamanho = INICIO_PAGINA.length + CURSOR_PAGINA.length + proximoCursor.length + FIM_PAGINA.length
+                + Math.max(0, fim - inicio - 1);
+        for (int i = inicio; i < fim; i++) {
+            tamanho += atual.itens[i].json.length;
+        }
+        byte[] corpo = new byte[tamanho];
+        int posicao = copiar(INICIO_PAGINA, corpo, 0);
+        posicao = copiarItens(atual.itens, inicio, fim, corpo, posicao);
+        posicao = copiar(CURSOR_PAGINA, corpo, posicao);
+        posicao = copiar(proximoCursor, corpo, posicao);
+        copiar(FIM_PAGINA, corpo, posicao);
+        return corpo;
+    }
+
+    private static byte[] montarArray(Item[] itens) {
+        int tamanho = INICIO_ARRAY.length + FIM_ARRAY.length + Math.max(0, itens.length - 1);
+        for (Item item : itens) {
+            tamanho += item.json.length;
+        }
+        byte[] corpo = new byte[tamanho];
+        int posicao = copiar(INICIO_ARRAY, corpo, 0);
+        posicao = copiarItens(itens, 0, itens.length, corpo, posicao);
+        copiar(FIM_ARRAY, corpo, posicao);
+        return corpo;
+    }
+
+    private static int copiarItens(Item[] itens, int inicio, int fim, byte[] destino, int posicao) {
+        for (int i = inicio; i < fim; i++) {
+            if (i > inicio) {
+                destino[posicao++] = ',';
+            }
+            posicao = copiar(itens[i].json, destino, posicao);
+        }
+        return posicao;
+    }
+
+    private static int copiar(byte[] origem, byte[] destino, int posicao) {
+        System.arraycopy(origem, 0, destino, posicao, origem.length);
+        return posicao + origem.length;
+    }
+
+    // --- Alterações ---
+
+    /**
+     * A versão atual do feed, que deve ser lida antes de consultar o banco e passada para {@link #carregar} ou {@link #guardar}.
+     */
+    public synchronized long getVersao() {
+        return versao;
+    }
+
+    /**
+     * Carrega o feed com as postagens mais recentes lidas do banco, se nenhuma alteração aconteceu desde a leitura.
+     * @param postagens As postagens, da mais recente para a mais antiga, com até {@link #getTamanhoCarga()} itens.
+     * @param versaoLida O valor de {@link #getVersao()} antes da leitura no banco.
+     */
+    public void carregar(List<Postagem> postagens, long versaoLida) {
+        if (!isHabilitado()) {
+            return;
+        }
+        boolean completo = postagens.size() <= MAX_POSTAGENS;
+        int quantidade = Math.min(postagens.size(), MAX_POSTAGENS);
+        Item[] itens = new Item[quantidade];
+        try {
+            for (int i = 0; i < quantidade; i++) {
+                itens[i] = serializar(postagens.get(i));
+            }
+        } catch (JsonProcessingException e) {
+            System.err.println("Erro ao serializar o feed de postagens: " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            if (versaoLida == versao) {
+                retrato = new Retrato(versao, itens, completo);
+                carregamentos.increment();
+            }
+        }
+    }
+
+    /**
+     * Coloca no feed uma postagem criada ou alterada, relida do banco depois da escrita.
+     * Uma postagem alterada que já saiu do feed (mais antiga que todas as dele) continua fora.
+     * @param postagem A postagem como está no banco.
+     * @param versaoLida O valor de {@link #getVersao()} antes da leitura no banco.
+     */
+    public void guardar(Postagem postagem, long versaoLida) {
+        if (!isHabilitado()) {
+            return;
+        }
+        Item novo;
+        try {
+            novo = serializar(postagem);
+        } catch (JsonProcessingException e) {
+            System.err.println("Erro ao serializar postagem do feed: " + e.getMessage());
+            descartar();
+            return;
+        }
+        synchronized (this) {
+            if (versaoLida != versao) {
+                // Outra alteração aconteceu entre a escrita e a leitura desta: o feed pode estar na ordem errada
+                descartar();
+                return;
+            }
+            versao++;
+            Retrato atual = retrato;
+            if (atual == null) {
+                return;
+            }
+            List<Item> itens = new ArrayList<>(atual.itens.length + 1);
+            boolean inserido = false;
+            for (Item item : atual.itens) {
+                if (item.id == novo.id) {
+                    continue;
+                }
+                if (!inserido && novo.maisRecenteQue(item.createdAt, item.id)) {
+                    itens.add(novo);
+                    inserido = true;
+                }
+                itens.add(item);
+            }
+            if (!inserido && atual.completo) {
+                itens.add(novo);
+            }
+            boolean completo = atual.completo;
+            if (itens.size() > MAX_POSTAGENS) {
+                itens.subList(MAX_POSTAGENS, itens.size()).clear();
+                completo = false;
+            }
+            retrato = new Retrato(versao, itens.toArray(new Item[0]), completo);
+            atualizacoes.increment();
+        }
+    }
+
+    /**
+     * Tira do feed uma postagem removida do banco.
+     */
+    public synchronized void remover(int id) {
+        versao++;
+        Retrato atual = retrato;
+        if (atual == null) {
+            return;
+        }
+        List<Item> itens = new ArrayList<>(atual.itens.length);
+        for (Item item : atual.itens) {
+            if (item.id != id) {
+                itens.add(item);
+            }
+        }
+        if (itens.size() == atual.itens.length) {
+            return;
+        }
+        if (!atual.completo && itens.size() < MAX_POSTAGENS / 2) {
+            // As remoções esvaziaram o feed: ele é recarregado com as próximas postagens do banco
+            descartar();
+            return;
+        }
+        retrato = new Retrato(versao, itens.toArray(new Item[0]), atual.completo);
+        atualizacoes.increment();
+    }
+
+    /**
+     * Descarta o feed, que é carregado de novo na próxima leitura.
+     * Usado quando as postagens mudam sem passar pelo {@link PostagemService} (ex: remoção em cascata de um usuário).
+     */
+    public synchronized void descartar() {
+        versao++;
+        if (retrato != null) {
+            retrato = null;
+            descartes.increment();
+        }
+    }
+
+    private Item serializar(Postagem postagem) throws JsonProcessingException {
+        byte[] cursor = objectMapper.writeValueAsBytes(Cursor.of(postagem.getCreatedAt(), postagem.getId()).encode());
+        return new Item(postagem.getId(), postagem.getCreatedAt(), writer.writeValueAsBytes(postagem), cursor);
+    }
+
+    /**
+     * Métricas do feed: tamanho, acertos, faltas, carregamentos e descartes.
+     */
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        Retrato atual = retrato;
+        metricas.put("habilitado", isHabilitado());
+        metricas.put("maxPostagens", MAX_POSTAGENS);
+        metricas.put("carregado", atual != null);
+        metricas.put("postagens", atual != null ? atual.itens.length : 0);
+        metricas.put("completo", atual != null && atual.completo);
+        long acertosTotal = acertos.sum();
+        long faltasTotal = faltas.sum();
+        metricas.put("acertos", acertosTotal);
+        metricas.put("faltas", faltasTotal);
+        metricas.put("taxaAcerto", acertosTotal + faltasTotal > 0 ? (double) acertosTotal / (acertosTotal + faltasTotal) : 0.0);
+        metricas.put("carregamentos", carregamentos.sum());
+        metricas.put("atualizacoes", atualizacoes.sum());
+        metricas.put("descartes", descartes.sum());
+        return metricas;
+    }
+}
@@ -1,83 +1,428 @@
 package com.inkids.service;
 
-import com.google.cloud.aiplatform.v1.EndpointName;
-import com.google.cloud.aiplatform.v1.PredictionServiceClient;
-import com.google.cloud.aiplatform.v1.PredictionServiceSettings;
-import com.google.cloud.aiplatform.v1.PredictResponse;
-import com.google.protobuf.Value;
-import com.google.protobuf.util.JsonFormat;
+import com.inkids.config.Configuracao;
+import com.inkids.model.ImagemGerada;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Serviço responsável por se comunicar com a API do Google (Vertex AI)
- * para gerar imagens a partir de um prompt de texto.
+ * Serviço responsável por gerar imagens a partir de um prompt de texto.
+ * É compartilhado por toda a aplicação (use {@link #getInstance()}) e delega a geração
+ * ao backend configurado em inkids.imagem.backend:
+ * "vertex" (padrão) usa a API do Google (Vertex AI) e "local" gera imagens sintéticas, sem rede.
+ * As imagens geradas são gravadas no {@link ImagemBlobStore}, e o {@link ImagemCache} guarda o hash da imagem de cada prompt,
+ * então prompts repetidos não geram uma nova imagem.
+ * Chamadas simultâneas com o mesmo prompt normalizado compartilham uma única geração em andamento.
+ * O backend fica atrás de um {@link ResilientImageBackend} (prazo, bulkhead e circuit breaker).
+ * Quando a geração falha, o fallback é um placeholder desenhado pelo {@link PlaceholderRenderer}.
+ * Toda imagem gravada tem os tamanhos menores gerados em segundo plano pelo {@link ImagemDerivadasService}.
+ * Com inkids.imagem.similaridade.habilitada, um prompt parecido com outro já gerado (ver {@link IndiceSimilaridade})
+ * reaproveita a imagem dele, a menos que quem pediu tenha recusado o reaproveitamento.
  */
 public class GeminiImageService {
 
-    // --- Configuração para a API Vertex AI ---
-    // Substitua pelos detalhes do seu projeto no Google Cloud.
-    private static final String PROJECT_ID = "seu-gcp-project-id"; // Ex: "my-first-project"
-    private static final String LOCATION = "us-central1"; // Região onde o modelo está hospedado
-    private static final String PUBLISHER = "google";
-    private static final String MODEL = "imagegeneration@005"; // Verifique o nome do modelo mais recente na documentação
+    private static final int MAX_PLACEHOLDERS = 1000;
+    /**
+     * Caminho do placeholder padrão (sem texto), servido da memória: é o fallback quando nem o placeholder
+     * do título pode ser gravado (ex: disco cheio), para que uma URL de imagem nunca seja null.
+     */
+    public static final String CAMINHO_PLACEHOLDER_PADRAO = "/api/imagens/placeholder";
+    private static final int MAX_VARIACOES = Math.max(1, Configuracao.getInt("inkids.imagem.variacoes.max", 4));
+    private static final int PARALELISMO_VARIACOES = Math.max(1, Configuracao.getInt("inkids.imagem.variacoes.paralelismo", 4));
+    private static final boolean SIMILARIDADE_HABILITADA = Configuracao.getBoolean("inkids.imagem.similaridade.habilitada", false);
+    private static final double LIMIAR_SIMILARIDADE = Math.max(0, Math.min(1, Configuracao.getDouble("inkids.imagem.similaridade.limiar", 0.8)));
+    // Custo estimado de uma geração no backend (ex: em dólares), para a métrica de economia
+    private static final double CUSTO_POR_GERACAO = Math.max(0, Configuracao.getDouble("inkids.imagem.custoPorGeracao", 0.02));
+
+    private static final GeminiImageService INSTANCIA = new GeminiImageService(criarBackend());
+
+    private final ResilientImageBackend backend;
+    private final ImagemCache cache;
+    private final ImagemBlobStore blobStore = ImagemBlobStore.getInstance();
+    private final ImagemDerivadasService derivadas = ImagemDerivadasService.getInstance();
+    private final PlaceholderRenderer placeholderRenderer = new PlaceholderRenderer();
+
+    // URLs dos placeholders já desenhados, pelo texto (LRU)
+    private final Map<String, String> placeholders = Collections.synchronizedMap(new LinkedHashMap<String, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> maisAntigo) {
+            return size() > MAX_PLACEHOLDERS;
+        }
+    });
+    private final LongAdder placeholdersDesenhados = new LongAdder();
+    private final LongAdder acertosPlaceholder = new LongAdder();
+    private final LongAdder placeholdersPadrao = new LongAdder();
+    // Desenhado no primeiro uso
+    private volatile ImagemGerada placeholderPadrao;
+
+    // Gerações em andamento, pela chave do prompt normalizado
+    private final Map<String, CompletableFuture<String>> emAndamento = new ConcurrentHashMap<>();
+    private final LongAdder geracoes = new LongAdder();
+    private final LongAdder chamadasAgrupadas = new LongAdder();
+    private final LongAdder variacoesGeradas = new LongAdder();
+
+    // Índice dos prompts já gerados, para reaproveitar imagens de títulos parecidos (null se desabilitado)
+    private final IndiceSimilaridade similaridade;
+    private final LongAdder reaproveitadas = new LongAdder();
+    private final LongAdder geracoesEvitadas = new LongAdder();
+
+    // Gera as variações de um mesmo pedido em paralelo; o total de chamadas ao backend continua limitado pelo bulkhead
+    private final ExecutorService executorVariacoes;
+
+    /**
+     * Recebe as variações de uma imagem à medida que ficam prontas.
+     */
+    public interface ReceptorVariacoes {
+        void pronta(int variacao, String url) throws IOException;
+
+        void falhou(int variacao, String erro) throws IOException;
+    }
+
+    // Visível no pacote para os testes, que usam um backend próprio
+    GeminiImageService(ImageBackend backend) {
+        this.backend = new ResilientImageBackend(backend);
+        this.cache = new ImagemCache();
+        this.similaridade = SIMILARIDADE_HABILITADA ? new IndiceSimilaridade(LIMIAR_SIMILARIDADE) : null;
+        AtomicInteger contador = new AtomicInteger();
+        this.executorVariacoes = Executors.newFixedThreadPool(PARALELISMO_VARIACOES, r -> {
+            Thread t = new Thread(r, "inkids-imagem-variacao-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static GeminiImageService getInstance() {
+        return INSTANCIA;
+    }
+
+    private static ImageBackend criarBackend() {
+        String nome = Configuracao.getString("inkids.imagem.backend", "vertex");
+        switch (nome.toLowerCase()) {
+            case "local":
+                return new LocalImageBackend();
+            case "vertex":
+                return new VertexImageBackend();
+            default:
+                System.err.println("Backend de imagem desconhecido: '" + nome + "'. Usando vertex.");
+                return new VertexImageBackend();
+        }
+    }
 
     /**
-     * Gera uma URL de imagem com base no prompt fornecido, usando o Vertex AI.
-     * Se a chamada de API falhar, retorna uma URL de imagem de placeholder.
+     * Gera uma URL de imagem com base no prompt fornecido.
+     * Se a geração falhar, retorna uma URL de imagem de placeholder.
      *
      * @param prompt O texto a ser usado para gerar a imagem.
-     * @return Uma URL de imagem (seja a imagem real em Base64 ou uma de placeholder).
+     * @return Uma URL de imagem (seja a imagem gerada ou uma de placeholder).
      */
     public String generateImageUrl(String prompt) {
-        System.out.println("Solicitando geração de imagem para o prompt: \"" + prompt + "\"");
-
         try {
-            String endpoint = String.format("%s-aiplatform.googleapis.com:443", LOCATION);
-            PredictionServiceSettings settings = PredictionServiceSettings.newBuilder()
-                .setEndpoint(endpoint)
-                .build();
-
-            try (PredictionServiceClient client = PredictionServiceClient.create(settings)) {
-                EndpointName endpointName = EndpointName.ofProjectLocationPublisherModelName(PROJECT_ID, LOCATION, PUBLISHER, MODEL);
-
-                // Monta o payload da requisição para a API
-                String instanceJson = String.format("{\"prompt\": \"%s\", \"sampleCount\": 1}", prompt);
-                Value.Builder instanceBuilder = Value.newBuilder();
-                JsonFormat.parser().merge(instanceJson, instanceBuilder);
-                List<Value> instances = new ArrayList<>();
-                instances.add(instanceBuilder.build());
-
-                // Chama a API do Vertex AI
-                PredictResponse response = client.predict(endpointName, instances, Value.newBuilder().build());
-                
-                // Extrai a imagem em formato Base64 da resposta
-                // O caminho exato pode variar dependendo da versão da API
-                String base64Image = response.getPredictions(0)
-                                             .getStructValue()
-                                             .getFieldsMap()
-                                             .get("bytesBase64Encoded")
-                                             .getStringValue();
-                
-                System.out.println("Imagem gerada com sucesso!");
-                // Retorna a imagem como uma Data URL, que pode ser usada diretamente no HTML/CSS
-                return "data:image/png;base64," + base64Image;
-
-            }
+            return gerarImagem(prompt);
         } catch (IOException e) {
             // Este erro geralmente acontece se as credenciais do Google Cloud não estiverem configuradas
-            System.err.println("Erro de E/S ao chamar a API Vertex AI. Verifique suas credenciais e configuração do projeto.");
+            System.err.println("Erro de E/S ao gerar imagem (" + backend.getNome() + "). Verifique suas credenciais e configuração do projeto.");
             System.err.println("Mensagem: " + e.getMessage());
         } catch (Exception e) {
-            System.err.println("Erro inesperado ao gerar imagem com Vertex AI: " + e.getClass().getName() + " - " + e.getMessage());
+            System.err.println("Erro inesperado ao gerar imagem (" + backend.getNome() + "): " + e.getClass().getName() + " - " + e.getMessage());
             e.printStackTrace();
         }
 
         // --- Fallback ---
-        // Se a API falhar (por exemplo, credenciais não configuradas), retorna uma imagem de placeholder.
+        // Se a geração falhar (por exemplo, credenciais não configuradas), retorna uma imagem de placeholder.
         System.out.println("Usando imagem de placeholder como fallback.");
-        return "https://via.placeholder.com/600x400.png?text=" + prompt.replace(" ", "+");
+        return getFallbackUrl(prompt);
+    }
+
+    /**
+     * Gera uma imagem sem fallback: qualquer falha é propagada,
+     * para que quem chama possa decidir se tenta novamente.
+     *
+     * @param prompt O texto a ser usado para gerar a imagem.
+     * @return A URL da imagem gerada, servida por GET /api/imagens/:hash.
+     * @throws IOException se a geração ou a gravação da imagem falhar.
+     */
+    public String gerarImagem(String prompt) throws IOException {
+        return gerarImagem(prompt, true);
+    }
+
+    /**
+     * Gera uma imagem sem fallback, como {@link #gerarImagem(String)}, escolhendo se a imagem
+     * de um prompt parecido pode ser reaproveitada (quando o índice de similaridade está habilitado).
+     *
+     * @param prompt O texto a ser usado para gerar a imagem.
+     * @param reutilizarSemelhante false para sempre usar a imagem do próprio prompt (ex: o autor recusou o reaproveitamento).
+     *                             Nesse caso a imagem também não é oferecida a outros prompts.
+     * @return A URL da imagem.
+     * @throws IOException se a geração ou a gravação da imagem falhar.
+     */
+    public String gerarImagem(String prompt, boolean reutilizarSemelhante) throws IOException {
+        if (similaridade == null || !reutilizarSemelhante) {
+            return blobStore.getUrl(obterImagem(prompt));
+        }
+
+        IndiceSimilaridade.Correspondencia parecida = similaridade.buscar(prompt);
+        if (parecida != null) {
+            reaproveitadas.increment();
+            // Se o cache não tivesse a imagem deste prompt, seria uma nova geração
+            if (!ImagemCache.normalizar(parecida.getPrompt()).equals(ImagemCache.normalizar(prompt)) && !cache.contem(prompt)) {
+                geracoesEvitadas.increment();
+                System.out.printf("Reaproveitando a imagem de \"%s\" para \"%s\" (similaridade %.2f).%n",
+                        parecida.getPrompt(), prompt, parecida.getSimilaridade());
+            }
+            return parecida.getUrl();
+        }
+
+        String url = blobStore.getUrl(obterImagem(prompt));
+        similaridade.registrar(prompt, url);
+        return url;
+    }
+
+    // Grava a imagem e agenda a geração da miniatura e do tamanho médio
+    private String salvar(ImagemGerada imagem) throws IOException {
+        String hash = blobStore.salvar(imagem);
+        derivadas.agendar(hash);
+        return blobStore.getUrl(hash);
+    }
+
+    /**
+     * Busca a imagem do prompt no cache ou, se não houver, gera uma nova, grava no {@link ImagemBlobStore} e a guarda no cache.
+     * Se outra thread já estiver gerando a imagem do mesmo prompt, aguarda o resultado dela
+     * em vez de fazer uma nova chamada ao backend; uma falha dessa geração é propagada a todos que aguardam.
+     *
+     * @param prompt O texto a ser usado para gerar a imagem.
+     * @return O hash da imagem no {@link ImagemBlobStore}.
+     * @throws IOException se a geração ou a gravação da imagem falhar.
+     */
+    public String obterImagem(String prompt) throws IOException {
+        String hash = cache.get(prompt);
+        if (hash != null) {
+            return hash;
+        }
+
+        String chave = ImagemCache.chave(prompt);
+        CompletableFuture<String> minha = new CompletableFuture<>();
+        CompletableFuture<String> existente = emAndamento.putIfAbsent(chave, minha);
+        if (existente != null) {
+            chamadasAgrupadas.increment();
+            return aguardar(existente);
+        }
+
+        try {
+            // Outra geração do mesmo prompt pode ter terminado entre a consulta ao cache e o registro acima
+            hash = cache.get(prompt);
+            if (hash == null) {
+                System.out.println("Solicitando geração de imagem (" + backend.getNome() + ") para o prompt: \"" + prompt + "\"");
+                geracoes.increment();
+                ImagemGerada imagem = backend.gerar(prompt);
+                System.out.println("Imagem gerada com sucesso!");
+                hash = blobStore.salvar(imagem);
+                derivadas.agendar(hash);
+                cache.put(prompt, hash);
+            }
+            minha.complete(hash);
+            return hash;
+        } catch (IOException | RuntimeException e) {
+            minha.completeExceptionally(e);
+            throw e;
+        } finally {
+            emAndamento.remove(chave, minha);
+        }
+    }
+
+    // Aguarda a geração feita por outra thread. A interrupção de quem aguarda não cancela a geração compartilhada.
+    private static String aguardar(CompletableFuture<String> geracao) throws IOException {
+        try {
+            return geracao.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrompido aguardando a geração da imagem.", e);
+        } catch (CancellationException e) {
+            throw new IOException("A geração da imagem foi cancelada.", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof IOException) {
+                throw new IOException(causa.getMessage(), causa);
+            }
+            throw new IOException("Erro na geração da imagem: " + causa.getMessage(), causa);
+        }
+    }
+
+    public static int getMaxVariacoes() {
+        return MAX_VARIACOES;
+    }
+
+    /**
+     * Gera várias variações da imagem do prompt, em paralelo (no máximo inkids.imagem.variacoes.max).
+     * A variação 0 é a mesma imagem de {@link #gerarImagem(String)}, com cache; as demais são sempre novas gerações.
+     * Cada variação é entregue ao receptor assim que fica pronta, na thread de quem chamou.
+     * Se o receptor lançar uma exceção (ex: o cliente desconectou), as variações restantes são canceladas.
+     * A variação 0 em andamento não é interrompida: ela é a geração compartilhada do prompt, que outras chamadas
+     * (e os workers da fila de imagens) podem estar aguardando, e o resultado ainda vai para o cache.
+     *
+     * @param prompt O texto a ser usado para gerar as imagens.
+     * @param quantidade O número de variações desejado.
+     * @param receptor Quem recebe cada variação pronta ou com falha.
+     * @return O número de variações geradas com sucesso.
+     * @throws IOException se o receptor falhar.
+     */
+    public int gerarVariacoes(String prompt, int quantidade, ReceptorVariacoes receptor) throws IOException {
+        int total = Math.max(1, Math.min(quantidade, MAX_VARIACOES));
+        CompletionService<ResultadoVariacao> concluidas = new ExecutorCompletionService<>(executorVariacoes);
+        List<Future<ResultadoVariacao>> futuros = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            int variacao = i;
+            futuros.add(concluidas.submit(() -> gerarVariacao(prompt, variacao)));
+        }
+
+        int prontas = 0;
+        try {
+            for (int i = 0; i < total; i++) {
+                ResultadoVariacao resultado = concluidas.take().get();
+                if (resultado.url != null) {
+                    prontas++;
+                    receptor.pronta(resultado.variacao, resultado.url);
+                } else {
+                    receptor.falhou(resultado.variacao, resultado.erro);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrompido aguardando as variações da imagem.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Erro inesperado ao gerar variações da imagem: " + e.getCause(), e.getCause());
+        } finally {
+            // Só as chamadas próprias de cada variação são interrompidas; a variação 0 termina, se já tiver começado
+            futuros.get(0).cancel(false);
+            for (Future<ResultadoVariacao> futuro : futuros.subList(1, futuros.size())) {
+                futuro.cancel(true);
+            }
+        }
+        return prontas;
+    }
+
+    private ResultadoVariacao gerarVariacao(String prompt, int variacao) {
+        try {
+            if (variacao == 0) {
+                return new ResultadoVariacao(variacao, gerarImagem(prompt), null);
+            }
+            geracoes.increment();
+            String url = salvar(backend.gerarVariacao(prompt, variacao));
+            variacoesGeradas.increment();
+            return new ResultadoVariacao(variacao, url, null);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Erro ao gerar a variação " + variacao + " da imagem: " + e.getMessage());
+            return new ResultadoVariacao(variacao, null, e.getMessage());
+        }
+    }
+
+    private static final class ResultadoVariacao {
+        final int variacao;
+        final String url;
+        final String erro;
+
+        ResultadoVariacao(int variacao, String url, String erro) {
+            this.variacao = variacao;
+            this.url = url;
+            this.erro = erro;
+        }
+    }
+
+    /**
+     * URL da imagem de placeholder usada quando a geração falha.
+     * O placeholder é desenhado no próprio servidor e servido por GET /api/imagens/:hash;
+     * placeholders recentes ficam em memória, então o fallback continua rápido durante uma falha do backend.
+     *
+     * @param prompt O texto que seria usado para gerar a imagem.
+     * @return A URL da imagem de placeholder. Nunca é null: se o placeholder não puder ser gravado,
+     *         retorna {@link #CAMINHO_PLACEHOLDER_PADRAO}.
+     */
+    public String getFallbackUrl(String prompt) {
+        String texto = prompt == null ? "" : prompt.trim();
+        String url = placeholders.get(texto);
+        if (url != null) {
+            acertosPlaceholder.increment();
+            return url;
+        }
+        try {
+            url = salvar(placeholderRenderer.renderizar(texto));
+            placeholdersDesenhados.increment();
+            placeholders.put(texto, url);
+            return url;
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar a imagem de placeholder, usando o placeholder padrão: " + e.getMessage());
+            placeholdersPadrao.increment();
+            return CAMINHO_PLACEHOLDER_PADRAO;
+        }
+    }
+
+    /**
+     * O placeholder padrão, sem texto, servido em {@link #CAMINHO_PLACEHOLDER_PADRAO}.
+     * @return A imagem, ou null se ela não puder ser desenhada.
+     */
+    public ImagemGerada getPlaceholderPadrao() {
+        ImagemGerada imagem = placeholderPadrao;
+        if (imagem == null) {
+            try {
+                // Sempre a mesma imagem: duas threads desenhando ao mesmo tempo não é um problema
+                imagem = placeholderRenderer.renderizar("");
+                placeholderPadrao = imagem;
+            } catch (IOException e) {
+                System.err.println("Erro ao desenhar o placeholder padrão: " + e.getMessage());
+            }
+        }
+        return imagem;
+    }
+
+    /**
+     * Métricas da geração de imagens: chamadas ao backend, chamadas agrupadas
+     * com uma geração em andamento, o estado da camada de resiliência, as métricas do cache
+     * e as da geração dos tamanhos menores.
+     */
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("backend", backend.getNome());
+        metricas.put("geracoes", geracoes.sum());
+        metricas.put("chamadasAgrupadas", chamadasAgrupadas.sum());
+        metricas.put("variacoesGeradas", variacoesGeradas.sum());
+        metricas.put("geracoesEmAndamento", emAndamento.size());
+        metricas.put("placeholdersDesenhados", placeholdersDesenhados.sum());
+        metricas.put("acertosPlaceholder", acertosPlaceholder.sum());
+        metricas.put("placeholdersPadrao", placeholdersPadrao.sum());
+        metricas.put("resiliencia", backend.getMetricas());
+        metricas.put("cache", cache.getMetricas());
+        metricas.put("derivadas", derivadas.getMetricas());
+        if (similaridade != null) {
+            Map<String, Object> reaproveitamento = new LinkedHashMap<>();
+            reaproveitamento.put("reaproveitadas", reaproveitadas.sum());
+            reaproveitamento.put("geracoesEvitadas", geracoesEvitadas.sum());
+            reaproveitamento.put("economiaEstimada", geracoesEvitadas.sum() * CUSTO_POR_GERACAO);
+            reaproveitamento.put("indice", similaridade.getMetricas());
+            metricas.put("similaridade", reaproveitamento);
+        }
+        return metricas;
+    }
+
+    /**
+     * Libera os recursos do backend. Chamado no encerramento da aplicação.
+     */
+    public void fechar() {
+        executorVariacoes.shutdownNow();
+        backend.fechar();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package com.inkids.service;
+
+import com.inkids.model.ImagemGerada;
+
+import java.io.IOException;
+
+/**
+ * Backend de geração de imagens a partir de um prompt de texto.
+ * As implementações são compartilhadas por toda a aplicação e devem ser thread-safe.
+ * O backend é escolhido pela configuração inkids.imagem.backend (ver {@link GeminiImageService}).
+ */
+public interface ImageBackend {
+
+    /**
+     * Gera uma imagem para o prompt. Não há fallback: qualquer falha é propagada.
+     * @param prompt O texto a ser usado para gerar a imagem.
+     * @return A imagem gerada.
+     * @throws IOException se a geração falhar.
+     */
+    ImagemGerada gerar(String prompt) throws IOException;
+
+    /**
+     * Gera uma variação da imagem do prompt; a variação 0 corresponde a {@link #gerar(String)}.
+     * Backends não determinísticos (como o Vertex AI) já produzem uma imagem diferente a cada chamada,
+     * então por padrão a variação é só uma nova geração.
+     * @param prompt O texto a ser usado para gerar a imagem.
+     * @param variacao O número da variação (0, 1, 2...).
+     * @return A imagem gerada.
+     * @throws IOException se a geração falhar.
+     */
+    default ImagemGerada gerarVariacao(String prompt, int variacao) throws IOException {
+        return gerar(prompt);
+    }
+
+    /**
+     * Nome do backend, usado nos logs.
+     */
+    String getNome();
+
+    /**
+     * Libera os recursos do backend (conexões, threads). Chamado no encerramento da aplicação.
+     */
+    default void fechar() {
+    }
+}
@@ -0,0 +1,274 @@
+package com.inkids.service;
+
+import com.inkids.config.Configuracao;
+import com.inkids.model.ImagemGerada;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Armazenamento das imagens em arquivos, endereçados pelo conteúdo:
+ * cada imagem é gravada uma única vez em inkids.imagem.blobs.pasta, com o SHA-256 dos bytes como nome.
+ * As postagens guardam apenas o caminho relativo da imagem (/api/imagens/:hash), e não a imagem em Base64;
+ * a URL pública, com inkids.imagem.baseUrl na frente, é montada por {@link #urlPublica(String)} ao responder.
+ * Os tamanhos menores da imagem (ver {@link Tamanho}) ficam ao lado do original, como &lt;hash&gt;-&lt;tamanho&gt;.jpg,
+ * e são servidos por GET /api/imagens/:hash/:tamanho.
+ */
+public class ImagemBlobStore {
+
+    private static final String PASTA = Configuracao.getString("inkids.imagem.blobs.pasta", "./data/imagens");
+    // URL pública do servidor, colocada na frente do caminho das imagens nas respostas (o site roda em outra origem)
+    private static final String BASE_URL = Configuracao.getString("inkids.imagem.baseUrl", "http://localhost:8080");
+
+    private static final Pattern HASH_VALIDO = Pattern.compile("[0-9a-f]{64}");
+    private static final String CAMINHO_IMAGENS = "/api/imagens/";
+    // Caminho relativo gravado no banco, ou URL absoluta antiga (com qualquer servidor), de uma imagem original
+    private static final Pattern URL_IMAGEM = Pattern.compile("^(?:https?://[^/]+)?" + CAMINHO_IMAGENS + "([0-9a-f]{64})$");
+
+    // Extensão dos arquivos para cada tipo de imagem
+    private static final Map<String, String> EXTENSOES = Map.of(
+        "image/png", ".png",
+        "image/jpeg", ".jpg",
+        "image/webp", ".webp"
+    );
+
+    /**
+     * Tamanhos derivados da imagem original, para as listagens e cards do site.
+     */
+    public enum Tamanho {
+        MINIATURA("thumb"),
+        MEDIA("media");
+
+        private final String sufixo;
+
+        Tamanho(String sufixo) {
+            this.sufixo = sufixo;
+        }
+
+        public String getSufixo() {
+            return sufixo;
+        }
+
+        /**
+         * @return O tamanho com o sufixo informado (ex: "thumb"), ou null se não existir.
+         */
+        public static Tamanho doSufixo(String sufixo) {
+            for (Tamanho tamanho : values()) {
+                if (tamanho.sufixo.equals(sufixo)) {
+                    return tamanho;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final ImagemBlobStore INSTANCIA = new ImagemBlobStore();
+
+    private final Path pasta;
+
+    private ImagemBlobStore() {
+        this.pasta = Paths.get(PASTA);
+    }
+
+    public static ImagemBlobStore getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Grava a imagem, se ainda não estiver gravada.
+     * @param imagem A imagem a ser gravada.
+     * @return O hash (SHA-256 em hexadecimal) do conteúdo, que identifica a imagem.
+     * @throws IOException se a gravação falhar.
+     */
+    public String salvar(ImagemGerada imagem) throws IOException {
+        String extensao = EXTENSOES.get(imagem.getMimeType());
+        if (extensao == null) {
+            throw new IOException("Tipo de imagem não suportado: " + imagem.getMimeType());
+        }
+        String hash = hash(imagem.getBytes());
+        Path destino = pasta.resolve(hash + extensao);
+        if (Files.exists(destino)) {
+            return hash; // Mesmo conteúdo, mesmo arquivo
+        }
+
+        gravar(destino, hash, imagem.getBytes());
+        return hash;
+    }
+
+    /**
+     * Grava um tamanho derivado (JPEG) de uma imagem já gravada.
+     * @param hash O hash da imagem original.
+     * @param tamanho O tamanho derivado.
+     * @param jpeg Os bytes da imagem derivada, em JPEG.
+     * @throws IOException se a gravação falhar.
+     */
+    public void salvarDerivada(String hash, Tamanho tamanho, byte[] jpeg) throws IOException {
+        Path destino = caminhoDerivada(hash, tamanho);
+        if (!Files.exists(destino)) {
+            gravar(destino, hash, jpeg);
+        }
+    }
+
+    // Grava em um arquivo temporário e renomeia, para um leitor nunca ver a imagem pela metade
+    private void gravar(Path destino, String prefixo, byte[] bytes) throws IOException {
+        Files.createDirectories(pasta);
+        Path temporario = Files.createTempFile(pasta, prefixo, ".tmp");
+        try {
+            Files.write(temporario, bytes);
+            Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Outra thread gravou a mesma imagem ao mesmo tempo
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    /**
+     * Grava a imagem e retorna o caminho relativo pelo qual ela é servida.
+     * @param imagem A imagem a ser gravada.
+     * @return O caminho da imagem (ex: /api/imagens/&lt;hash&gt;).
+     * @throws IOException se a gravação falhar.
+     */
+    public String salvarComUrl(ImagemGerada imagem) throws IOException {
+        return getUrl(salvar(imagem));
+    }
+
+    /**
+     * @return O caminho relativo da imagem (/api/imagens/&lt;hash&gt;), que é o que fica gravado no banco.
+     */
+    public String getUrl(String hash) {
+        return CAMINHO_IMAGENS + hash;
+    }
+
+    public String getUrl(String hash, Tamanho tamanho) {
+        return getUrl(hash) + "/" + tamanho.getSufixo();
+    }
+
+    /**
+     * Monta a URL enviada ao cliente a partir do caminho gravado, com inkids.imagem.baseUrl na frente.
+     * @param url O caminho relativo da imagem, ou uma URL absoluta (ex: imagens antigas, em outro servidor).
+     * @return A URL absoluta; URLs que já são absolutas (e null) são retornadas sem alteração.
+     */
+    public String urlPublica(String url) {
+        return url != null && url.startsWith("/") ? BASE_URL + url : url;
+    }
+
+    /**
+     * Converte a URL de uma imagem deste armazenamento para o caminho relativo que é gravado no banco.
+     * @param url A URL da imagem (ex: a imagemUrl enviada pelo cliente, já com o servidor na frente).
+     * @return O caminho relativo, ou a própria URL se ela não for de uma imagem deste armazenamento.
+     */
+    public String urlArmazenada(String url) {
+        String hash = getHash(url);
+        return hash != null ? getUrl(hash) : url;
+    }
+
+    /**
+     * Extrai o hash de uma URL de imagem servida por este armazenamento.
+     * Aceita o caminho relativo gravado no banco e as URLs absolutas antigas, gravadas com o servidor na frente.
+     * @param url A URL da imagem (ex: a imagemUrl de uma postagem).
+     * @return O hash, ou null se a URL não for de uma imagem deste armazenamento (ex: imagens externas).
+     */
+    public String getHash(String url) {
+        if (url == null) {
+            return null;
+        }
+        Matcher correspondencia = URL_IMAGEM.matcher(url);
+        return correspondencia.matches() ? correspondencia.group(1) : null;
+    }
+
+    /**
+     * Localiza uma imagem gravada.
+     * @param hash O hash da imagem.
+     * @return A imagem gravada, ou null se o hash for inválido ou não existir.
+     */
+    public Blob abrir(String hash) throws IOException {
+        // Só aceita hashes, o que também impede caminhos como "../"
+        if (hash == null || !HASH_VALIDO.matcher(hash).matches()) {
+            return null;
+        }
+        for (Map.Entry<String, String> tipo : EXTENSOES.entrySet()) {
+            Path arquivo = pasta.resolve(hash + tipo.getValue());
+            if (Files.exists(arquivo)) {
+                return new Blob(hash, arquivo, tipo.getKey(), Files.size(arquivo));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Localiza um tamanho derivado de uma imagem.
+     * @param hash O hash da imagem original.
+     * @param tamanho O tamanho derivado.
+     * @return A imagem derivada, ou null se o hash for inválido ou ela ainda não tiver sido gerada.
+     */
+    public Blob abrirDerivada(String hash, Tamanho tamanho) throws IOException {
+        if (hash == null || !HASH_VALIDO.matcher(hash).matches()) {
+            return null;
+        }
+        Path arquivo = caminhoDerivada(hash, tamanho);
+        if (!Files.exists(arquivo)) {
+            return null;
+        }
+        return new Blob(hash + "-" + tamanho.getSufixo(), arquivo, "image/jpeg", Files.size(arquivo));
+    }
+
+    public boolean existeDerivada(String hash, Tamanho tamanho) {
+        return Files.exists(caminhoDerivada(hash, tamanho));
+    }
+
+    private Path caminhoDerivada(String hash, Tamanho tamanho) {
+        return pasta.resolve(hash + "-" + tamanho.getSufixo() + ".jpg");
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Uma imagem gravada no armazenamento. Para os tamanhos derivados, o hash é "&lt;hash&gt;-&lt;tamanho&gt;".
+     */
+    public static final class Blob {
+        private final String hash;
+        private final Path arquivo;
+        private final String mimeType;
+        private final long tamanho;
+
+        Blob(String hash, Path arquivo, String mimeType, long tamanho) {
+            this.hash = hash;
+            this.arquivo = arquivo;
+            this.mimeType = mimeType;
+            this.tamanho = tamanho;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public Path getArquivo() {
+            return arquivo;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public long getTamanho() {
+            return tamanho;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.inkids.service;
+
+import com.inkids.config.Configuracao;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cache das imagens geradas, indexado pelo hash do prompt normalizado
+ * (sem diferença de maiúsculas, acentuação composta ou espaços repetidos).
+ * O cache guarda só o hash da imagem no {@link ImagemBlobStore}, que já mantém os bytes em disco. Tem dois níveis:
+ * - memória: LRU limitado por inkids.imagem.cache.maxEntradas (padrão 10000);
+ * - disco: um arquivo pequeno por prompt em inkids.imagem.cache.pasta (&lt;chave&gt;.hash, com o hash da imagem),
+ *   que sobrevive a reinícios, limitado por inkids.imagem.cache.discoMaxEntradas (os mais antigos são removidos primeiro).
+ *   Na inicialização, as entradas mais recentes do disco são carregadas na memória.
+ * Entradas mais velhas que inkids.imagem.cache.ttlHoras são descartadas nos dois níveis.
+ */
+public class ImagemCache {
+
+    private static final int MAX_ENTRADAS = Math.max(0, Configuracao.getInt("inkids.imagem.cache.maxEntradas", 10000));
+    private static final boolean DISCO_HABILITADO = Configuracao.getBoolean("inkids.imagem.cache.disco", true);
+    private static final String PASTA = Configuracao.getString("inkids.imagem.cache.pasta", "./data/imagens-cache");
+    private static final int DISCO_MAX_ENTRADAS = Math.max(1, Configuracao.getInt("inkids.imagem.cache.discoMaxEntradas", 100000));
+    private static final long TTL_MS = TimeUnit.HOURS.toMillis(Math.max(1, Configuracao.getLong("inkids.imagem.cache.ttlHoras", 168)));
+
+    private static final String EXTENSAO = ".hash";
+    private static final Pattern HASH_VALIDO = Pattern.compile("[0-9a-f]{64}");
+    // Cópias das imagens gravadas pela versão anterior do cache, que guardava os bytes em vez do hash
+    private static final Pattern COPIA_ANTIGA = Pattern.compile("[0-9a-f]{64}\\.(png|jpg|webp)");
+
+    // Protegido por "this". A ordem é a do último uso (a primeira entrada é a usada há mais tempo):
+    // get() move a entrada para o fim, e contem() só consulta, sem mudar a ordem
+    private final Map<String, Entrada> entradas = new LinkedHashMap<>(64, 0.75f);
+
+    private final ImagemBlobStore blobStore;
+    private final Path pasta;
+    private final AtomicInteger entradasDisco = new AtomicInteger();
+    private final Object travaDisco = new Object();
+
+    private final LongAdder acertosMemoria = new LongAdder();
+    private final LongAdder acertosDisco = new LongAdder();
+    private final LongAdder faltas = new LongAdder();
+    private final LongAdder remocoesMemoria = new LongAdder();
+    private final LongAdder remocoesDisco = new LongAdder();
+    private final LongAdder expiradas = new LongAdder();
+
+    public ImagemCache() {
+        this(DISCO_HABILITADO ? Paths.get(PASTA) : null, ImagemBlobStore.getInstance());
+    }
+
+    /**
+     * @param pasta A pasta do nível em disco, ou null para um cache só em memória.
+     * @param blobStore O armazenamento das imagens, usado para conferir se a imagem de uma entrada do disco ainda existe.
+     */
+    ImagemCache(Path pasta, ImagemBlobStore blobStore) {
+        this.blobStore = blobStore;
+        this.pasta = pasta != null ? prepararPasta(pasta) : null;
+    }
+
+    /**
+     * Normaliza o prompt para que variações triviais de digitação usem a mesma entrada do cache.
+     */
+    static String normalizar(String prompt) {
+        String texto = Normalizer.normalize(prompt, Normalizer.Form.NFC);
+        return texto.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Chave do cache: SHA-256 (em hexadecimal) do prompt normalizado.
+     */
+    static String chave(String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalizar(prompt).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Conta as entradas do disco, remove as vencidas e carrega as mais recentes na memória
+    private Path prepararPasta(Path caminho) {
+        try {
+            Files.createDirectories(caminho);
+            long agora = System.currentTimeMillis();
+            Map<Path, Long> indices = new HashMap<>();
+            int copiasRemovidas = 0;
+            try (Stream<Path> arquivos = Files.list(caminho)) {
+                for (Path arquivo : (Iterable<Path>) arquivos::iterator) {
+                    String nome = arquivo.getFileName().toString();
+                    if (nome.endsWith(".tmp") || COPIA_ANTIGA.matcher(nome).matches()) {
+                        // Gravação interrompida, ou cópia de uma imagem que já está no ImagemBlobStore
+                        Files.deleteIfExists(arquivo);
+                        copiasRemovidas++;
+                    } else if (nome.endsWith(EXTENSAO) && HASH_VALIDO.matcher(chaveDoArquivo(arquivo)).matches()) {
+                        long criadaEm = modificadoEm(arquivo);
+                        if (agora - criadaEm >= TTL_MS) {
+                            Files.deleteIfExists(arquivo);
+                            expiradas.increment();
+                        } else {
+                            indices.put(arquivo, criadaEm);
+                        }
+                    }
+                }
+            }
+            entradasDisco.set(indices.size());
+
+            // As mais recentes vão para a memória, da mais antiga para a mais nova, que fica no fim do LRU
+            List<Path> recentes = indices.keySet().stream()
+                    .sorted(Comparator.comparingLong(indices::get).reversed())
+                    .limit(MAX_ENTRADAS)
+                    .collect(Collectors.toList());
+            Collections.reverse(recentes);
+            int carregadas = 0;
+            for (Path arquivo : recentes) {
+                Entrada entrada = lerDoDisco(arquivo, agora);
+                if (entrada != null) {
+                    guardarNaMemoria(chaveDoArquivo(arquivo), entrada);
+                    carregadas++;
+                }
+            }
+
+            System.out.println("Cache de imagens em disco: " + caminho.toAbsolutePath() + " (" + entradasDisco.get()
+                    + " entradas, " + carregadas + " carregadas na memória"
+                    + (copiasRemovidas > 0 ? ", " + copiasRemovidas + " arquivos antigos removidos" : "") + ").");
+            if (entradasDisco.get() > DISCO_MAX_ENTRADAS) {
+                liberarDisco(caminho);
+            }
+            return caminho;
+        } catch (IOException e) {
+            System.err.println("Cache de imagens em disco desabilitado, erro ao preparar " + caminho + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Busca a imagem de um prompt, primeiro na memória e depois no disco.
+     * Uma entrada encontrada no disco volta para a memória.
+     * @param prompt O prompt da imagem.
+     * @return O hash da imagem no {@link ImagemBlobStore}, ou null se não houver.
+     */
+    public String get(String prompt) {
+        String chave = chave(prompt);
+        boolean vencida = false;
+        synchronized (this) {
+            Entrada entrada = entradas.remove(chave);
+            if (entrada != null) {
+                if (valida(entrada)) {
+                    entradas.put(chave, entrada);
+                    acertosMemoria.increment();
+                    return entrada.hash;
+                }
+                vencida = true;
+            }
+        }
+
+        if (vencida) {
+            // O arquivo do disco tem a mesma idade: também está vencido
+            expiradas.increment();
+            apagar(arquivoDaChave(chave));
+        } else if (pasta != null) {
+            Entrada doDisco = lerDoDisco(arquivoDaChave(chave), System.currentTimeMillis());
+            if (doDisco != null) {
+                acertosDisco.increment();
+                guardarNaMemoria(chave, doDisco);
+                return doDisco.hash;
+            }
+        }
+        faltas.increment();
+        return null;
+    }
+
+    /**
+     * Diz se o cache tem a imagem de um prompt, sem contar como acerto ou falta
+     * e sem mudar a ordem do LRU.
+     * @param prompt O prompt da imagem.
+     * @return true se houver uma entrada válida para o prompt, na memória ou no disco.
+     */
+    public boolean contem(String prompt) {
+        String chave = chave(prompt);
+        synchronized (this) {
+            Entrada entrada = entradas.get(chave);
+            if (entrada != null) {
+                return valida(entrada);
+            }
+        }
+        if (pasta == null) {
+            return false;
+        }
+        Path arquivo = arquivoDaChave(chave);
+        return Files.exists(arquivo) && System.currentTimeMillis() - modificadoEm(arquivo) < TTL_MS;
+    }
+
+    /**
+     * Guarda a imagem de um prompt nos dois níveis do cache.
+     * @param prompt O prompt da imagem.
+     * @param hash O hash da imagem já gravada no {@link ImagemBlobStore}.
+     */
+    public void put(String prompt, String hash) {
+        String chave = chave(prompt);
+        guardarNaMemoria(chave, new Entrada(hash, System.currentTimeMillis()));
+        gravarNoDisco(chave, hash);
+    }
+
+    private synchronized void guardarNaMemoria(String chave, Entrada entrada) {
+        if (MAX_ENTRADAS == 0) {
+            return;
+        }
+        // remove() antes do put() para que uma entrada substituída também vá para o fim
+        entradas.remove(chave);
+        entradas.put(chave, entrada);
+        if (entradas.size() > MAX_ENTRADAS) {
+            // Remove a entrada usada há mais tempo; ela continua no disco
+            entradas.remove(entradas.keySet().iterator().next());
+            remocoesMemoria.increment();
+        }
+    }
+
+    // Lê uma entrada do disco; entradas vencidas, corrompidas ou de imagens que não existem mais são apagadas
+    private Entrada lerDoDisco(Path arquivo, long agora) {
+        try {
+            long criadaEm = Files.getLastModifiedTime(arquivo).toMillis();
+            if (agora - criadaEm >= TTL_MS) {
+                apagar(arquivo);
+                expiradas.increment();
+                return null;
+            }
+            String hash = Files.readString(arquivo, StandardCharsets.US_ASCII).trim();
+            if (!HASH_VALIDO.matcher(hash).matches() || blobStore.abrir(hash) == null) {
+                apagar(arquivo);
+                return null;
+            }
+            return new Entrada(hash, criadaEm);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Erro ao ler o cache de imagens em disco: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void gravarNoDisco(String chave, String hash) {
+        if (pasta == null) {
+            return;
+        }
+        Path destino = arquivoDaChave(chave);
+        try {
+            // Grava em um arquivo temporário e renomeia, para um leitor nunca ver a entrada pela metade
+            Path temporario = Files.createTempFile(pasta, chave, ".tmp");
+            try {
+                Files.writeString(temporario, hash, StandardCharsets.US_ASCII);
+                boolean nova = !Files.exists(destino);
+                Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (nova && entradasDisco.incrementAndGet() > DISCO_MAX_ENTRADAS) {
+                    liberarDisco(pasta);
+                }
+            } finally {
+                Files.deleteIfExists(temporario);
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar no cache de imagens em disco: " + e.getMessage());
+        }
+    }
+
+    // Remove as entradas mais antigas até o disco voltar a 90% do limite
+    private void liberarDisco(Path caminho) throws IOException {
+        synchronized (travaDisco) {
+            if (entradasDisco.get() <= DISCO_MAX_ENTRADAS) {
+                return;
+            }
+            int alvo = DISCO_MAX_ENTRADAS * 9 / 10;
+            Map<Path, Long> datas;
+            try (Stream<Path> lista = Files.list(caminho)) {
+                // Arquivos .tmp são gravações em andamento
+                datas = lista.filter(p -> p.toString().endsWith(EXTENSAO))
+                        .collect(Collectors.toMap(p -> p, ImagemCache::modificadoEm));
+            }
+            List<Path> arquivos = new ArrayList<>(datas.keySet());
+            arquivos.sort(Comparator.comparingLong(datas::get));
+            for (Path arquivo : arquivos) {
+                if (entradasDisco.get() <= alvo) {
+                    break;
+                }
+                if (apagar(arquivo)) {
+                    remocoesDisco.increment();
+                }
+            }
+        }
+    }
+
+    private boolean apagar(Path arquivo) {
+        if (arquivo == null) {
+            return false;
+        }
+        try {
+            if (Files.deleteIfExists(arquivo)) {
+                entradasDisco.decrementAndGet();
+                return true;
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao remover do cache de imagens em disco: " + e.getMessage());
+        }
+        return false;
+    }
+
+    private Path arquivoDaChave(String chave) {
+        return pasta != null ? pasta.resolve(chave + EXTENSAO) : null;
+    }
+
+    private static String chaveDoArquivo(Path arquivo) {
+        String nome = arquivo.getFileName().toString();
+        return nome.substring(0, nome.length() - EXTENSAO.length());
+    }
+
+    private static long modificadoEm(Path arquivo) {
+        try {
+            return Files.getLastModifiedTime(arquivo).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static boolean valida(Entrada entrada) {
+        return System.currentTimeMillis() - entrada.criadaEm < TTL_MS;
+    }
+
+    /**
+     * Métricas do cache: acertos por nível, faltas, remoções e ocupação.
+     */
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        long acertos = acertosMemoria.sum() + acertosDisco.sum();
+        long total = acertos + faltas.sum();
+        metricas.put("acertosMemoria", acertosMemoria.sum());
+        metricas.put("acertosDisco", acertosDisco.sum());
+        metricas.put("faltas", faltas.sum());
+        metricas.put("taxaAcerto", total > 0 ? (double) acertos / total : 0.0);
+        metricas.put("expiradas", expiradas.sum());
+        metricas.put("remocoesMemoria", remocoesMemoria.sum());
+        metricas.put("remocoesDisco", remocoesDisco.sum());
+        synchronized (this) {
+            metricas.put("entradasMemoria", entradas.size());
+        }
+        metricas.put("maxEntradas", MAX_ENTRADAS);
+        metricas.put("discoHabilitado", pasta != null);
+        metricas.put("entradasDisco", entradasDisco.get());
+        metricas.put("discoMaxEntradas", DISCO_MAX_ENTRADAS);
+        return metricas;
+    }
+
+    private static final class Entrada {
+        final String hash;
+        final long criadaEm;
+
+        Entrada(String hash, long criadaEm) {
+            this.hash = hash;
+            this.criadaEm = criadaEm;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.inkids.service;
+
+import com.inkids.config.Configuracao;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gera os tamanhos menores das imagens (miniatura e média, em JPEG) assim que a imagem original é gravada,
+ * para que as listagens não precisem baixar o PNG em tamanho real.
+ * O trabalho é feito em segundo plano, em um pool limitado (inkids.imagem.derivadas.workers) com uma fila
+ * limitada (inkids.imagem.derivadas.fila): as threads das requisições nunca redimensionam imagens.
+ * Se a fila estiver cheia, o pedido é descartado; o tamanho é pedido de novo quando alguém tentar acessá-lo.
+ */
+public class ImagemDerivadasService {
+
+    private static final int WORKERS = Math.max(1, Configuracao.getInt("inkids.imagem.derivadas.workers", 1));
+    private static final int FILA = Math.max(1, Configuracao.getInt("inkids.imagem.derivadas.fila", 100));
+    private static final float QUALIDADE = Math.max(1, Math.min(100, Configuracao.getInt("inkids.imagem.derivadas.qualidade", 80))) / 100f;
+    private static final int LARGURA_MINIATURA = Math.max(16, Configuracao.getInt("inkids.imagem.miniatura.largura", 240));
+    private static final int LARGURA_MEDIA = Math.max(16, Configuracao.getInt("inkids.imagem.media.largura", 640));
+
+    private static final ImagemDerivadasService INSTANCIA = new ImagemDerivadasService();
+
+    private final ImagemBlobStore blobStore = ImagemBlobStore.getInstance();
+    private final ThreadPoolExecutor executor;
+
+    // Hashes com derivação na fila ou em andamento, para não processar a mesma imagem duas vezes
+    private final Set<String> pendentes = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder imagensProcessadas = new LongAdder();
+    private final LongAdder derivadasGeradas = new LongAdder();
+    private final LongAdder bytesOriginais = new LongAdder();
+    private final LongAdder bytesDerivadas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+
+    private ImagemDerivadasService() {
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(FILA), r -> {
+                    Thread t = new Thread(r, "inkids-imagem-derivadas-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    // Redimensionar é menos urgente que atender as requisições
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+    }
+
+    public static ImagemDerivadasService getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Agenda a geração dos tamanhos derivados de uma imagem gravada, se ainda não existirem.
+     * Retorna imediatamente.
+     * @param hash O hash da imagem original no {@link ImagemBlobStore}.
+     */
+    public void agendar(String hash) {
+        if (hash == null || todasExistem(hash) || !pendentes.add(hash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    derivar(hash);
+                } finally {
+                    pendentes.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Fila cheia ou aplicação sendo encerrada
+            pendentes.remove(hash);
+            descartadas.increment();
+        }
+    }
+
+    private boolean todasExistem(String hash) {
+        for (ImagemBlobStore.Tamanho tamanho : ImagemBlobStore.Tamanho.values()) {
+            if (!blobStore.existeDerivada(hash, tamanho)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void derivar(String hash) {
+        try {
+            ImagemBlobStore.Blob original = blobStore.abrir(hash);
+            if (original == null) {
+                return;
+            }
+            BufferedImage imagem = ImageIO.read(original.getArquivo().toFile());
+            if (imagem == null) {
+                throw new IOException("Formato de imagem não suportado: " + original.getMimeType());
+            }
+
+            for (ImagemBlobStore.Tamanho tamanho : ImagemBlobStore.Tamanho.values()) {
+                if (blobStore.existeDerivada(hash, tamanho)) {
+                    continue;
+                }
+                byte[] jpeg = codificarJpeg(redimensionar(imagem, largura(tamanho)));
+                blobStore.salvarDerivada(hash, tamanho, jpeg);
+                derivadasGeradas.increment();
+                bytesOriginais.add(original.getTamanho());
+                bytesDerivadas.add(jpeg.length);
+            }
+            imagensProcessadas.increment();
+        } catch (IOException | RuntimeException e) {
+            falhas.increment();
+            System.err.println("Erro ao gerar os tamanhos derivados da imagem " + hash + ": " + e.getMessage());
+        }
+    }
+
+    private static int largura(ImagemBlobStore.Tamanho tamanho) {
+        switch (tamanho) {
+            case MINIATURA:
+                return LARGURA_MINIATURA;
+            case MEDIA:
+            default:
+                return LARGURA_MEDIA;
+        }
+    }
+
+    /**
+     * Reduz a imagem para a largura informada, mantendo a proporção (imagens menores não são ampliadas).
+     * A redução é feita pela metade a cada passo, o que com interpolação bilinear dá um resultado
+     * próximo ao de filtros melhores, a um custo bem menor.
+     * O resultado é RGB sobre fundo branco, já que o JPEG não tem transparência.
+     */
+    private static BufferedImage redimensionar(BufferedImage original, int larguraMaxima) {
+        int largura = original.getWidth();
+        int altura = original.getHeight();
+        int larguraFinal = Math.min(largura, larguraMaxima);
+        int alturaFinal = Math.max(1, (int) Math.round((double) altura * larguraFinal / largura));
+
+        BufferedImage atual = original;
+        do {
+            largura = Math.max(larguraFinal, largura / 2);
+            altura = largura == larguraFinal ? alturaFinal : Math.max(alturaFinal, altura / 2);
+            BufferedImage reduzida = new BufferedImage(largura, altura, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = reduzida.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(atual, 0, 0, largura, altura, Color.WHITE, null);
+            } finally {
+                g.dispose();
+            }
+            atual = reduzida;
+        } while (largura > larguraFinal);
+        return atual;
+    }
+
+    private static byte[] codificarJpeg(BufferedImage imagem) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam parametros = writer.getDefaultWriteParam();
+        parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        parametros.setCompressionQuality(QUALIDADE);
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(imagem.getWidth() * imagem.getHeight() / 8);
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(saida)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(imagem, null, null), parametros);
+        } finally {
+            writer.dispose();
+        }
+        return saida.toByteArray();
+    }
+
+    /**
+     * Métricas da geração dos tamanhos derivados: fila, imagens processadas e a economia de bytes.
+     */
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("naFila", executor.getQueue().size());
+        metricas.put("emAndamento", executor.getActiveCount());
+        metricas.put("imagensProcessadas", imagensProcessadas.sum());
+        metricas.put("derivadasGeradas", derivadasGeradas.sum());
+        metricas.put("bytesOriginais", bytesOriginais.sum());
+        metricas.put("bytesDerivadas", bytesDerivadas.sum());
+        metricas.put("descartadas", descartadas.sum());
+        metricas.put("falhas", falhas.sum());
+        return metricas;
+    }
+
+    /**
+     * Para o pool. Chamado no encerramento da aplicação; derivações pendentes são refeitas quando pedidas.
+     */
+    public void fechar() {
+        executor.shutdownNow();
+    }
+}
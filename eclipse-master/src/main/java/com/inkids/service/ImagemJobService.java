@@ -0,0 +1,313 @@
+package com.inkids.service;
+
+import com.inkids.config.Configuracao;
+import com.inkids.dao.ImagemJobDAO;
+import com.inkids.model.ImagemJob;
+import com.inkids.model.StatusImagem;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Executa em segundo plano os jobs de geração de imagem das postagens.
+ * Um agendador busca periodicamente os jobs pendentes no banco e os entrega a um pool limitado de workers.
+ * Em caso de falha, o job volta à fila com intervalo exponencial (com variação aleatória) entre as tentativas;
+ * esgotadas as tentativas, a postagem recebe a imagem de fallback.
+ * Um job que fica em processamento por mais de inkids.imagem.processamentoMaxMs (padrão 5 minutos) sem ser
+ * atualizado volta à fila: é o caso do worker que não conseguiu gravar o resultado nem reagendar o job.
+ * Se o worker original ainda estiver rodando, o resultado dele é descartado: o job só é concluído ou reagendado
+ * pela reserva mais recente (ver {@link ImagemJobDAO#complete}).
+ *
+ * Cada cliente aguardando uma imagem (long polling) ocupa uma thread do servidor. No máximo
+ * inkids.imagem.maxAguardando (padrão 50) clientes aguardam ao mesmo tempo; os demais recebem o status atual na hora.
+ */
+public class ImagemJobService {
+
+    private static final int WORKERS = Math.max(1, Configuracao.getInt("inkids.imagem.workers", 2));
+    private static final long INTERVALO_BUSCA_MS = Math.max(50, Configuracao.getLong("inkids.imagem.pollMs", 1000));
+    private static final int MAX_TENTATIVAS = Math.max(1, Configuracao.getInt("inkids.imagem.maxTentativas", 4));
+    private static final long BACKOFF_BASE_MS = Math.max(1, Configuracao.getLong("inkids.imagem.backoffBaseMs", 2000));
+    private static final long BACKOFF_MAX_MS = Math.max(BACKOFF_BASE_MS, Configuracao.getLong("inkids.imagem.backoffMaxMs", 60000));
+    private static final long PROCESSAMENTO_MAX_MS = Math.max(1000, Configuracao.getLong("inkids.imagem.processamentoMaxMs", 300000));
+    private static final int MAX_AGUARDANDO = Math.max(0, Configuracao.getInt("inkids.imagem.maxAguardando", 50));
+
+    private static final ImagemJobService INSTANCIA = new ImagemJobService();
+
+    private final ImagemJobDAO imagemJobDAO = new ImagemJobDAO();
+    private final GeminiImageService geminiImageService = GeminiImageService.getInstance();
+
+    // Espera compartilhada pelos clientes que aguardam a imagem da mesma postagem (long polling)
+    private static final class Espera {
+        final CompletableFuture<StatusImagem> futuro = new CompletableFuture<>();
+        int clientes; // Alterado só dentro do compute do mapa
+    }
+
+    // Postagens com clientes aguardando a imagem
+    private final Map<Integer, Espera> aguardando = new ConcurrentHashMap<>();
+    // Vagas para clientes aguardando, que seguram uma thread do servidor enquanto esperam
+    private final Semaphore vagasEspera = new Semaphore(MAX_AGUARDANDO);
+    private final LongAdder esperasRecusadas = new LongAdder();
+    private final List<Consumer<StatusImagem>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger emAndamento = new AtomicInteger();
+
+    private ScheduledExecutorService agendador;
+    private ThreadPoolExecutor workers;
+
+    private ImagemJobService() {
+    }
+
+    public static ImagemJobService getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Inicia o agendador e os workers. Jobs interrompidos na execução anterior voltam à fila.
+     */
+    public synchronized void iniciar() {
+        if (agendador != null) {
+            return;
+        }
+        int devolvidos = imagemJobDAO.resetInProgress();
+        if (devolvidos > 0) {
+            System.out.println(devolvidos + " job(s) de imagem interrompido(s) devolvido(s) à fila.");
+        }
+
+        // A fila dos workers nunca enche: só são reservados jobs para os workers livres
+        workers = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(WORKERS), threadFactory("inkids-imagem-worker"));
+        agendador = Executors.newSingleThreadScheduledExecutor(threadFactory("inkids-imagem-agendador"));
+        agendador.scheduleWithFixedDelay(this::buscarJobs, 0, INTERVALO_BUSCA_MS, TimeUnit.MILLISECONDS);
+        long intervaloRecuperacao = Math.min(60000, PROCESSAMENTO_MAX_MS);
+        agendador.scheduleWithFixedDelay(this::recuperarJobsParados, intervaloRecuperacao, intervaloRecuperacao, TimeUnit.MILLISECONDS);
+        System.out.println("Fila de imagens iniciada com " + WORKERS + " worker(s).");
+    }
+
+    /**
+     * Para o agendador e aguarda os workers terminarem os jobs em andamento.
+     * Jobs não concluídos continuam no banco e são retomados na próxima inicialização.
+     */
+    public synchronized void parar() {
+        if (agendador == null) {
+            return;
+        }
+        agendador.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        agendador = null;
+        workers = null;
+    }
+
+    /**
+     * Antecipa a busca de jobs, sem esperar o próximo ciclo do agendador.
+     * Chamado logo após uma postagem ser criada.
+     */
+    public void acordar() {
+        ScheduledExecutorService atual = agendador;
+        if (atual != null) {
+            try {
+                atual.execute(this::buscarJobs);
+            } catch (RejectedExecutionException e) {
+                // A aplicação está sendo encerrada
+            }
+        }
+    }
+
+    /**
+     * Registra um consumidor notificado sempre que a imagem de uma postagem é anexada
+     * (com a imagem gerada ou com a de fallback).
+     */
+    public void adicionarListener(Consumer<StatusImagem> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Busca o andamento da imagem de uma postagem.
+     * @param postagemId O ID da postagem.
+     * @return O status da imagem, ou null se a postagem não existir.
+     */
+    public StatusImagem buscarStatus(int postagemId) {
+        return imagemJobDAO.getStatus(postagemId);
+    }
+
+    /**
+     * Aguarda a imagem de uma postagem ficar pronta (ou falhar), até o tempo limite.
+     * Com inkids.imagem.maxAguardando clientes já aguardando, retorna o status atual sem esperar.
+     * @param postagemId O ID da postagem.
+     * @param timeoutMs O tempo máximo de espera, em milissegundos.
+     * @return O status da imagem ao fim da espera, ou null se a postagem não existir.
+     */
+    public StatusImagem aguardar(int postagemId, long timeoutMs) throws InterruptedException {
+        if (timeoutMs <= 0) {
+            return imagemJobDAO.getStatus(postagemId);
+        }
+        if (!vagasEspera.tryAcquire()) {
+            esperasRecusadas.increment();
+            return imagemJobDAO.getStatus(postagemId);
+        }
+        try {
+            return aguardarComVaga(postagemId, timeoutMs);
+        } finally {
+            vagasEspera.release();
+        }
+    }
+
+    private StatusImagem aguardarComVaga(int postagemId, long timeoutMs) throws InterruptedException {
+        // Registra a espera antes de consultar o banco, para não perder uma notificação entre as duas coisas
+        Espera espera = aguardando.compute(postagemId, (id, atual) -> {
+            Espera registrada = atual != null ? atual : new Espera();
+            registrada.clientes++;
+            return registrada;
+        });
+        try {
+            StatusImagem status = imagemJobDAO.getStatus(postagemId);
+            if (status == null || !"PENDENTE".equals(status.getStatus())) {
+                return status;
+            }
+            try {
+                return espera.futuro.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return status;
+            } catch (ExecutionException e) {
+                return imagemJobDAO.getStatus(postagemId);
+            }
+        } finally {
+            // O último cliente a desistir remove a espera, que senão ficaria no mapa se a imagem nunca fosse
+            // anexada (ex: postagem removida). Uma espera já concluída foi removida por notificar().
+            aguardando.computeIfPresent(postagemId, (id, atual) -> atual == espera && --atual.clientes == 0 ? null : atual);
+        }
+    }
+
+    /**
+     * Métricas da fila de imagens: jobs em andamento e clientes aguardando imagens.
+     */
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("jobsEmAndamento", emAndamento.get());
+        metricas.put("workers", WORKERS);
+        metricas.put("clientesAguardando", MAX_AGUARDANDO - vagasEspera.availablePermits());
+        metricas.put("maxAguardando", MAX_AGUARDANDO);
+        metricas.put("esperasRecusadas", esperasRecusadas.sum());
+        return metricas;
+    }
+
+    private void buscarJobs() {
+        try {
+            int livres = WORKERS - emAndamento.get();
+            if (livres <= 0) {
+                return;
+            }
+            for (ImagemJob job : imagemJobDAO.claimDue(livres)) {
+                emAndamento.incrementAndGet();
+                workers.execute(() -> processar(job));
+            }
+        } catch (Exception e) {
+            // Uma exceção aqui cancelaria o agendamento periódico
+            System.err.println("Erro ao buscar jobs de imagem: " + e.getMessage());
+        }
+    }
+
+    // Devolve à fila os jobs parados em processamento (ver a documentação da classe)
+    private void recuperarJobsParados() {
+        try {
+            int devolvidos = imagemJobDAO.resetInProgress(LocalDateTime.now().minusNanos(PROCESSAMENTO_MAX_MS * 1_000_000L));
+            if (devolvidos > 0) {
+                System.err.println(devolvidos + " job(s) de imagem parado(s) em processamento devolvido(s) à fila.");
+                buscarJobs();
+            }
+        } catch (Exception e) {
+            // Uma exceção aqui cancelaria o agendamento periódico
+            System.err.println("Erro ao recuperar jobs de imagem parados: " + e.getMessage());
+        }
+    }
+
+    private void processar(ImagemJob job) {
+        try {
+            String imagemUrl = geminiImageService.gerarImagem(job.getPrompt(), job.isReutilizarImagens());
+            if (imagemJobDAO.complete(job, imagemUrl)) {
+                notificar(job, "PRONTA", imagemUrl);
+            } else {
+                resultadoDescartado(job, "concluir");
+            }
+        } catch (Exception e) {
+            String erro = e.getClass().getSimpleName() + ": " + e.getMessage();
+            if (job.getTentativas() >= MAX_TENTATIVAS) {
+                System.err.println("Geração de imagem da postagem " + job.getPostagemId() + " falhou após "
+                        + job.getTentativas() + " tentativa(s). Usando imagem de fallback.");
+                String fallbackUrl = geminiImageService.getFallbackUrl(job.getPrompt());
+                if (imagemJobDAO.fail(job, fallbackUrl, erro)) {
+                    notificar(job, "FALHOU", fallbackUrl);
+                } else {
+                    resultadoDescartado(job, "encerrar");
+                }
+            } else {
+                long espera = backoff(job.getTentativas());
+                System.err.println("Geração de imagem da postagem " + job.getPostagemId() + " falhou (tentativa "
+                        + job.getTentativas() + "). Nova tentativa em " + espera + " ms.");
+                if (!imagemJobDAO.scheduleRetry(job, LocalDateTime.now().plusNanos(espera * 1_000_000L), erro)) {
+                    resultadoDescartado(job, "reagendar");
+                }
+            }
+        } finally {
+            emAndamento.decrementAndGet();
+            acordar();
+        }
+    }
+
+    // O job não está mais reservado para este worker (devolvido à fila e reservado de novo, concluído
+    // ou removido com a postagem) ou o banco falhou. Nos dois casos ninguém é notificado.
+    private static void resultadoDescartado(ImagemJob job, String acao) {
+        System.err.println("Não foi possível " + acao + " o job de imagem " + job.getId() + " (tentativa " + job.getTentativas()
+                + "): ele não está mais reservado para este worker ou o banco falhou. Se ainda estiver em processamento,"
+                + " volta à fila depois de " + PROCESSAMENTO_MAX_MS + " ms.");
+    }
+
+    // Intervalo exponencial limitado, com variação aleatória para os jobs que falharam juntos não voltarem juntos
+    private static long backoff(int tentativas) {
+        long teto = BACKOFF_BASE_MS << Math.min(tentativas - 1, 20);
+        teto = Math.min(Math.max(teto, BACKOFF_BASE_MS), BACKOFF_MAX_MS);
+        return teto / 2 + ThreadLocalRandom.current().nextLong(teto / 2 + 1);
+    }
+
+    private void notificar(ImagemJob job, String status, String imagemUrl) {
+        StatusImagem statusImagem = new StatusImagem();
+        statusImagem.setPostagemId(job.getPostagemId());
+        statusImagem.setStatus(status);
+        statusImagem.setImagemUrl(imagemUrl);
+        statusImagem.setTentativas(job.getTentativas());
+        statusImagem.setUltimoErro(job.getUltimoErro());
+
+        Espera espera = aguardando.remove(job.getPostagemId());
+        if (espera != null) {
+            espera.futuro.complete(statusImagem);
+        }
+        for (Consumer<StatusImagem> listener : listeners) {
+            try {
+                listener.accept(statusImagem);
+            } catch (Exception e) {
+                System.err.println("Erro ao notificar listener de imagem: " + e.getMessage());
+            }
+        }
+    }
+
+    private static ThreadFactory threadFactory(String nome) {
+        AtomicInteger contador = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, nome + "-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,292 @@
+package com.inkids.service;
+
+import com.inkids.config.Configuracao;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Índice em memória dos prompts que já têm imagem, para reaproveitar a imagem de um título parecido
+ * (ex: "Minha rotina da manhã" e "minha rotina de manhã!") em vez de pagar uma nova geração.
+ *
+ * Os prompts são normalizados (sem acentos, pontuação, maiúsculas e palavras como "de", "da", "o")
+ * e comparados pelos conjuntos de trigramas de caracteres (similaridade de Jaccard).
+ * Para não comparar com todos os prompts, cada um tem uma assinatura MinHash dividida em faixas (LSH):
+ * só os prompts que coincidem em pelo menos uma faixa são candidatos, e a similaridade exata
+ * é calculada apenas para eles.
+ *
+ * O índice guarda no máximo inkids.imagem.similaridade.maxEntradas prompts; os mais antigos saem primeiro.
+ */
+public class IndiceSimilaridade {
+
+    private static final int MAX_ENTRADAS = Math.max(1, Configuracao.getInt("inkids.imagem.similaridade.maxEntradas", 50000));
+
+    // 64 funções de hash em 16 faixas de 4: prompts com similaridade 0,8 viram candidatos com probabilidade > 99,9%
+    private static final int FAIXAS = 16;
+    private static final int LINHAS_POR_FAIXA = 4;
+    private static final int FUNCOES_HASH = FAIXAS * LINHAS_POR_FAIXA;
+    private static final long[] SEMENTES = new long[FUNCOES_HASH];
+
+    static {
+        long semente = 0x6a09e667f3bcc908L;
+        for (int i = 0; i < FUNCOES_HASH; i++) {
+            semente = misturar(semente + 0x9e3779b97f4a7c15L);
+            SEMENTES[i] = semente;
+        }
+    }
+
+    // Artigos, preposições e contrações (já sem acento), que não mudam o assunto do título
+    private static final Set<String> PALAVRAS_VAZIAS = Set.of(
+        "a", "o", "as", "os", "um", "uma", "uns", "umas",
+        "de", "da", "do", "das", "dos", "em", "na", "no", "nas", "nos", "num", "numa",
+        "ao", "aos", "pela", "pelo", "pelas", "pelos", "por", "para", "pra", "pro", "com",
+        "e", "ou", "que", "se"
+    );
+
+    /**
+     * Um prompt parecido encontrado no índice.
+     */
+    public static final class Correspondencia {
+        private final String prompt;
+        private final String url;
+        private final double similaridade;
+
+        Correspondencia(String prompt, String url, double similaridade) {
+            this.prompt = prompt;
+            this.url = url;
+            this.similaridade = similaridade;
+        }
+
+        public String getPrompt() {
+            return prompt;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public double getSimilaridade() {
+            return similaridade;
+        }
+    }
+
+    private static final class Entrada {
+        final String prompt;
+        final String normalizado;
+        final String url;
+        final long[] faixas;
+
+        Entrada(String prompt, String normalizado, String url, long[] faixas) {
+            this.prompt = prompt;
+            this.normalizado = normalizado;
+            this.url = url;
+            this.faixas = faixas;
+        }
+    }
+
+    private final double limiar;
+
+    // Protegidos por "this": as entradas pelo prompt normalizado (em ordem de inserção) e as faixas LSH
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>();
+    private final Map<Long, List<Entrada>> baldes = new HashMap<>();
+
+    private final LongAdder consultas = new LongAdder();
+    private final LongAdder candidatosComparados = new LongAdder();
+    private final LongAdder encontrados = new LongAdder();
+
+    /**
+     * @param limiar A similaridade mínima (0 a 1) para que a imagem de outro prompt seja reaproveitada.
+     */
+    public IndiceSimilaridade(double limiar) {
+        this.limiar = limiar;
+    }
+
+    /**
+     * Busca o prompt mais parecido com o informado, se a similaridade atingir o limiar.
+     * @param prompt O prompt da nova imagem.
+     * @return O prompt parecido e a URL da imagem dele, ou null se não houver.
+     */
+    public Correspondencia buscar(String prompt) {
+        consultas.increment();
+        String normalizado = normalizar(prompt);
+        if (normalizado.isEmpty()) {
+            return null;
+        }
+        Set<Integer> trigramas = trigramas(normalizado);
+        long[] faixas = faixas(assinatura(trigramas));
+
+        Entrada melhor = null;
+        double melhorSimilaridade = 0;
+        synchronized (this) {
+            Entrada identica = entradas.get(normalizado);
+            if (identica != null) {
+                melhor = identica;
+                melhorSimilaridade = 1.0;
+            } else {
+                Set<Entrada> candidatas = new HashSet<>();
+                for (long faixa : faixas) {
+                    List<Entrada> balde = baldes.get(faixa);
+                    if (balde != null) {
+                        candidatas.addAll(balde);
+                    }
+                }
+                candidatosComparados.add(candidatas.size());
+                for (Entrada candidata : candidatas) {
+                    double similaridade = jaccard(trigramas, trigramas(candidata.normalizado));
+                    if (similaridade > melhorSimilaridade) {
+                        melhor = candidata;
+                        melhorSimilaridade = similaridade;
+                    }
+                }
+            }
+        }
+
+        if (melhor == null || melhorSimilaridade < limiar) {
+            return null;
+        }
+        encontrados.increment();
+        return new Correspondencia(melhor.prompt, melhor.url, melhorSimilaridade);
+    }
+
+    /**
+     * Registra a imagem de um prompt, para que prompts parecidos possam reaproveitá-la.
+     * Se o prompt normalizado já estiver no índice, a entrada existente é mantida.
+     * @param prompt O prompt da imagem.
+     * @param url A URL da imagem gerada.
+     */
+    public void registrar(String prompt, String url) {
+        String normalizado = normalizar(prompt);
+        if (normalizado.isEmpty() || url == null) {
+            return;
+        }
+        long[] faixas = faixas(assinatura(trigramas(normalizado)));
+        synchronized (this) {
+            if (entradas.containsKey(normalizado)) {
+                return;
+            }
+            Entrada entrada = new Entrada(prompt, normalizado, url, faixas);
+            entradas.put(normalizado, entrada);
+            for (long faixa : faixas) {
+                baldes.computeIfAbsent(faixa, f -> new ArrayList<>(1)).add(entrada);
+            }
+            if (entradas.size() > MAX_ENTRADAS) {
+                Iterator<Entrada> maisAntigas = entradas.values().iterator();
+                remover(maisAntigas.next());
+                maisAntigas.remove();
+            }
+        }
+    }
+
+    private void remover(Entrada entrada) {
+        for (long faixa : entrada.faixas) {
+            List<Entrada> balde = baldes.get(faixa);
+            if (balde != null) {
+                balde.remove(entrada);
+                if (balde.isEmpty()) {
+                    baldes.remove(faixa);
+                }
+            }
+        }
+    }
+
+    /**
+     * Normaliza o prompt para a comparação: sem acentos, em minúsculas, só letras e números,
+     * e sem as palavras que não mudam o assunto (artigos, preposições).
+     */
+    static String normalizar(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        String semAcentos = Normalizer.normalize(prompt, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        StringBuilder normalizado = new StringBuilder(semAcentos.length());
+        for (String palavra : semAcentos.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!palavra.isEmpty() && !PALAVRAS_VAZIAS.contains(palavra)) {
+                if (normalizado.length() > 0) {
+                    normalizado.append(' ');
+                }
+                normalizado.append(palavra);
+            }
+        }
+        return normalizado.toString();
+    }
+
+    // Trigramas de caracteres, com espaço nas pontas para que o começo e o fim das palavras também contem
+    private static Set<Integer> trigramas(String normalizado) {
+        String texto = " " + normalizado + " ";
+        Set<Integer> trigramas = new HashSet<>();
+        for (int i = 0; i + 3 <= texto.length(); i++) {
+            trigramas.add(texto.substring(i, i + 3).hashCode());
+        }
+        return trigramas;
+    }
+
+    private static long[] assinatura(Set<Integer> trigramas) {
+        long[] assinatura = new long[FUNCOES_HASH];
+        Arrays.fill(assinatura, Long.MAX_VALUE);
+        for (int trigrama : trigramas) {
+            for (int i = 0; i < FUNCOES_HASH; i++) {
+                long valor = misturar(trigrama ^ SEMENTES[i]);
+                if (valor < assinatura[i]) {
+                    assinatura[i] = valor;
+                }
+            }
+        }
+        return assinatura;
+    }
+
+    // Uma chave por faixa: o hash das linhas da faixa, com o número da faixa para não misturar faixas diferentes
+    private static long[] faixas(long[] assinatura) {
+        long[] faixas = new long[FAIXAS];
+        for (int f = 0; f < FAIXAS; f++) {
+            long chave = f;
+            for (int l = 0; l < LINHAS_POR_FAIXA; l++) {
+                chave = misturar(chave * 31 + assinatura[f * LINHAS_POR_FAIXA + l]);
+            }
+            faixas[f] = chave;
+        }
+        return faixas;
+    }
+
+    private static double jaccard(Set<Integer> a, Set<Integer> b) {
+        int comuns = 0;
+        for (int trigrama : a) {
+            if (b.contains(trigrama)) {
+                comuns++;
+            }
+        }
+        int uniao = a.size() + b.size() - comuns;
+        return uniao == 0 ? 0 : (double) comuns / uniao;
+    }
+
+    // Finalizador do SplitMix64: espalha bem os bits de entradas parecidas
+    private static long misturar(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * Métricas do índice: tamanho, consultas e quantas encontraram um prompt parecido.
+     */
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        synchronized (this) {
+            metricas.put("entradas", entradas.size());
+        }
+        metricas.put("limiar", limiar);
+        metricas.put("consultas", consultas.sum());
+        metricas.put("candidatosComparados", candidatosComparados.sum());
+        metricas.put("encontrados", encontrados.sum());
+        return metricas;
+    }
+}
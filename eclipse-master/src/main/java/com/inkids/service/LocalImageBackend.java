@@ -0,0 +1,125 @@
+package com.inkids.service;
+
+import com.inkids.config.Configuracao;
+import com.inkids.model.ImagemGerada;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Backend de geração de imagens local, sem chamadas externas.
+ * Gera PNGs sintéticos e determinísticos (o mesmo prompt e variação sempre produzem a mesma imagem),
+ * para rodar e testar carga de todo o fluxo de postagens sem acesso ao Vertex AI.
+ * A latência e as falhas da API podem ser simuladas com inkids.imagem.local.latenciaMs
+ * e inkids.imagem.local.taxaFalha (percentual de chamadas que falham).
+ */
+public class LocalImageBackend implements ImageBackend {
+
+    private static final int LARGURA = Math.max(1, Configuracao.getInt("inkids.imagem.local.largura", 600));
+    private static final int ALTURA = Math.max(1, Configuracao.getInt("inkids.imagem.local.altura", 400));
+
+    private volatile long latenciaMs;
+    private volatile int taxaFalha;
+
+    public LocalImageBackend() {
+        this(Configuracao.getLong("inkids.imagem.local.latenciaMs", 0), Configuracao.getInt("inkids.imagem.local.taxaFalha", 0));
+    }
+
+    // Visível no pacote para os testes, que simulam a latência e as falhas sem depender da configuração
+    LocalImageBackend(long latenciaMs, int taxaFalha) {
+        setLatenciaMs(latenciaMs);
+        setTaxaFalha(taxaFalha);
+    }
+
+    void setLatenciaMs(long latenciaMs) {
+        this.latenciaMs = Math.max(0, latenciaMs);
+    }
+
+    void setTaxaFalha(int taxaFalha) {
+        this.taxaFalha = Math.max(0, Math.min(100, taxaFalha));
+    }
+
+    @Override
+    public ImagemGerada gerar(String prompt) throws IOException {
+        return gerarVariacao(prompt, 0);
+    }
+
+    @Override
+    public ImagemGerada gerarVariacao(String prompt, int variacao) throws IOException {
+        long latencia = latenciaMs;
+        if (latencia > 0) {
+            try {
+                Thread.sleep(latencia);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrompido durante a geração local da imagem.", e);
+            }
+        }
+
+        int taxa = taxaFalha;
+        if (taxa > 0 && ThreadLocalRandom.current().nextInt(100) < taxa) {
+            throw new IOException("Falha simulada do backend local.");
+        }
+
+        // A semente vem do prompt (e da variação), então as cores e formas só dependem deles
+        Random random = new Random(variacao == 0 ? semente(prompt) : semente(prompt + '\u0000' + variacao));
+        BufferedImage imagem = new BufferedImage(LARGURA, ALTURA, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = imagem.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setPaint(new GradientPaint(0, 0, cor(random), LARGURA, ALTURA, cor(random)));
+            g.fillRect(0, 0, LARGURA, ALTURA);
+
+            int formas = 4 + random.nextInt(5);
+            for (int i = 0; i < formas; i++) {
+                Color cor = cor(random);
+                g.setColor(new Color(cor.getRed(), cor.getGreen(), cor.getBlue(), 160));
+                int tamanho = Math.max(1, Math.min(LARGURA, ALTURA) / 8 + random.nextInt(Math.max(1, Math.min(LARGURA, ALTURA) / 3)));
+                int x = random.nextInt(LARGURA);
+                int y = random.nextInt(ALTURA);
+                if (random.nextBoolean()) {
+                    g.fillOval(x - tamanho / 2, y - tamanho / 2, tamanho, tamanho);
+                } else {
+                    g.fillRect(x - tamanho / 2, y - tamanho / 2, tamanho, tamanho);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(LARGURA * ALTURA / 4);
+        ImageIO.write(imagem, "png", saida);
+        return new ImagemGerada(saida.toByteArray(), "image/png");
+    }
+
+    private static long semente(String prompt) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(prompt.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(hash).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Cores claras, que combinam com o visual infantil do site
+    private static Color cor(Random random) {
+        return Color.getHSBColor(random.nextFloat(), 0.35f + random.nextFloat() * 0.4f, 0.8f + random.nextFloat() * 0.2f);
+    }
+
+    @Override
+    public String getNome() {
+        return "local";
+    }
+}
@@ -0,0 +1,140 @@
+package com.inkids.service;
+
+import com.inkids.config.Configuracao;
+import com.inkids.model.ImagemGerada;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Desenha as imagens de placeholder usadas quando a geração por IA falha:
+ * o título da postagem sobre um fundo com as cores do site.
+ * A cor de fundo depende só do texto, então o mesmo título sempre produz a mesma imagem.
+ */
+public class PlaceholderRenderer {
+
+    private static final int LARGURA = Math.max(1, Configuracao.getInt("inkids.imagem.placeholder.largura", 600));
+    private static final int ALTURA = Math.max(1, Configuracao.getInt("inkids.imagem.placeholder.altura", 400));
+    private static final int MAX_LINHAS = 4;
+
+    // Paleta do site (client/assets/css)
+    private static final Color[] FUNDOS = {
+        new Color(0xb5dbff), // --blue-color
+        new Color(0xcaf0b9), // --green-color
+        new Color(0xfee69e), // --yellow-color
+        new Color(0xffbdbd), // --red-color
+        new Color(0xd6bdff), // --lilac-color
+        new Color(0xffbdfc)  // --pink-color
+    };
+    private static final Color LARANJA = new Color(0xff6d28); // --orange-color
+    private static final Color TEXTO = new Color(0x454545);
+
+    /**
+     * Desenha o placeholder com o texto informado.
+     * Se o texto não puder ser desenhado (ex: servidor sem fontes instaladas), o placeholder sai sem texto.
+     * @param texto O texto do placeholder (normalmente o título da postagem).
+     * @return A imagem PNG.
+     * @throws IOException se a codificação da imagem falhar.
+     */
+    public ImagemGerada renderizar(String texto) throws IOException {
+        String conteudo = texto == null ? "" : texto.trim();
+        BufferedImage imagem = new BufferedImage(LARGURA, ALTURA, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = imagem.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            desenharFundo(g, Math.floorMod(conteudo.hashCode(), FUNDOS.length));
+            if (!conteudo.isEmpty()) {
+                try {
+                    desenharTexto(g, conteudo);
+                } catch (RuntimeException | Error e) {
+                    System.err.println("Não foi possível desenhar o texto do placeholder: " + e);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(16 * 1024);
+        ImageIO.write(imagem, "png", saida);
+        return new ImagemGerada(saida.toByteArray(), "image/png");
+    }
+
+    private static void desenharFundo(Graphics2D g, int indiceCor) {
+        g.setColor(FUNDOS[indiceCor]);
+        g.fillRect(0, 0, LARGURA, ALTURA);
+
+        // Círculos claros nos cantos e uma faixa laranja embaixo, como nos cards do site
+        g.setColor(new Color(255, 255, 255, 90));
+        int raio = Math.min(LARGURA, ALTURA) / 2;
+        g.fillOval(-raio / 2, -raio / 2, raio, raio);
+        g.fillOval(LARGURA - raio / 2, ALTURA - raio, raio, raio);
+        g.setColor(LARANJA);
+        g.fillRect(0, ALTURA - Math.max(4, ALTURA / 40), LARGURA, Math.max(4, ALTURA / 40));
+        g.setStroke(new BasicStroke(Math.max(2, ALTURA / 100f)));
+        g.drawRoundRect(LARGURA / 20, ALTURA / 20, LARGURA - LARGURA / 10, ALTURA - ALTURA / 10 - ALTURA / 40, 24, 24);
+    }
+
+    private static void desenharTexto(Graphics2D g, String texto) {
+        int margem = LARGURA / 10;
+        int larguraUtil = LARGURA - 2 * margem;
+
+        // Diminui a fonte até o texto caber em MAX_LINHAS linhas
+        Font fonte = null;
+        List<String> linhas = null;
+        for (int tamanho = Math.max(12, ALTURA / 8); tamanho >= 12; tamanho -= 2) {
+            fonte = new Font(Font.SANS_SERIF, Font.BOLD, tamanho);
+            linhas = quebrarLinhas(texto, g.getFontMetrics(fonte), larguraUtil);
+            if (linhas.size() <= MAX_LINHAS) {
+                break;
+            }
+        }
+        if (linhas.size() > MAX_LINHAS) {
+            linhas = new ArrayList<>(linhas.subList(0, MAX_LINHAS));
+            linhas.set(MAX_LINHAS - 1, linhas.get(MAX_LINHAS - 1) + "…");
+        }
+
+        g.setFont(fonte);
+        FontMetrics metricas = g.getFontMetrics();
+        int alturaLinha = metricas.getHeight();
+        int y = (ALTURA - alturaLinha * linhas.size()) / 2 + metricas.getAscent();
+        for (String linha : linhas) {
+            int x = (LARGURA - metricas.stringWidth(linha)) / 2;
+            g.setColor(new Color(255, 255, 255, 160));
+            g.drawString(linha, x + 2, y + 2);
+            g.setColor(TEXTO);
+            g.drawString(linha, x, y);
+            y += alturaLinha;
+        }
+    }
+
+    private static List<String> quebrarLinhas(String texto, FontMetrics metricas, int larguraMaxima) {
+        List<String> linhas = new ArrayList<>();
+        StringBuilder atual = new StringBuilder();
+        for (String palavra : texto.split("\\s+")) {
+            String candidata = atual.length() == 0 ? palavra : atual + " " + palavra;
+            if (metricas.stringWidth(candidata) <= larguraMaxima || atual.length() == 0) {
+                atual.setLength(0);
+                atual.append(candidata);
+            } else {
+                linhas.add(atual.toString());
+                atual.setLength(0);
+                atual.append(palavra);
+            }
+        }
+        if (atual.length() > 0) {
+            linhas.add(atual.toString());
+        }
+        return linhas;
+    }
+}
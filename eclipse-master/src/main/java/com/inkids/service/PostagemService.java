@@ -1,27 +1,42 @@
 package com.inkids.service;
 
+import com.inkids.dao.Cursor;
 import com.inkids.dao.PostagemDAO;
+import com.inkids.dao.RowHandler;
+import com.inkids.model.Pagina;
 import com.inkids.model.Postagem;
+import com.inkids.model.StatusImagem;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Camada de serviço para a entidade Postagem.
- * Contém a lógica de negócio, incluindo a integração com o serviço de geração de imagens.
+ * Contém a lógica de negócio, incluindo a integração com a fila de geração de imagens.
  */
 public class PostagemService {
     private final PostagemDAO postagemDAO;
-    private final GeminiImageService geminiImageService;
+    private final ImagemJobService imagemJobService;
+    private final ImagemBlobStore blobStore;
+    private final FeedPostagens feed;
 
     public PostagemService() {
         this.postagemDAO = new PostagemDAO();
-        this.geminiImageService = new GeminiImageService();
+        this.imagemJobService = ImagemJobService.getInstance();
+        this.blobStore = ImagemBlobStore.getInstance();
+        this.feed = FeedPostagens.getInstance();
+
+        // A imagem anexada em segundo plano altera a postagem: o feed recebe a versão nova
+        imagemJobService.adicionarListener(status -> atualizarFeed(status.getPostagemId()));
     }
 
     /**
-     * Cria uma nova postagem, gerando uma imagem de IA baseada no título.
+     * Cria uma nova postagem com a imagem pendente.
+     * A imagem de IA baseada no título é gerada em segundo plano pelo ImagemJobService;
+     * o andamento pode ser consultado com {@link #buscarStatusImagem(int)}.
      * @param postagem O objeto Postagem a ser criado.
-     * @return O objeto Postagem criado com a URL da imagem e o ID, ou null em caso de falha.
+     * @return O objeto Postagem criado com o ID, ou null em caso de falha.
      */
     public Postagem criarPostagem(Postagem postagem) {
         // Validação: Garante que a postagem e o título não são nulos.
@@ -31,17 +46,15 @@ public class PostagemService {
         }
 
         // --- Ponto de Inteligência Artificial ---
-        // Gera a URL da imagem com base no título da postagem.
-        String imageUrl = geminiImageService.generateImageUrl(postagem.getTitulo());
-        postagem.setImagemUrl(imageUrl);
-        // -----------------------------------------
-
-        // Insere a postagem no banco de dados.
-        int id = postagemDAO.insert(postagem);
+        // Insere a postagem junto com o job que vai gerar a imagem com base no título.
+        postagem.setImagemUrl(null);
+        int id = postagemDAO.insertWithImageJob(postagem);
         if (id != -1) {
-            postagem.setId(id);
+            atualizarFeed(id);
+            imagemJobService.acordar();
             return postagem;
         }
+        // -----------------------------------------
         
         return null;
     }
@@ -52,7 +65,26 @@ public class PostagemService {
      * @return O objeto Postagem encontrado, ou null se não existir.
      */
     public Postagem buscarPostagemPorId(int id) {
-        return postagemDAO.get(id);
+        return comTamanhosDaImagem(postagemDAO.get(id));
+    }
+
+    /**
+     * Busca o andamento da geração da imagem de uma postagem.
+     * @param id O ID da postagem.
+     * @return O status da imagem, ou null se a postagem não existir.
+     */
+    public StatusImagem buscarStatusImagem(int id) {
+        return comUrlPublica(imagemJobService.buscarStatus(id));
+    }
+
+    /**
+     * Aguarda a imagem de uma postagem ficar pronta, até o tempo limite.
+     * @param id O ID da postagem.
+     * @param timeoutMs O tempo máximo de espera, em milissegundos.
+     * @return O status da imagem ao fim da espera, ou null se a postagem não existir.
+     */
+    public StatusImagem aguardarImagem(int id, long timeoutMs) throws InterruptedException {
+        return comUrlPublica(imagemJobService.aguardar(id, timeoutMs));
     }
 
     /**
@@ -60,16 +92,86 @@ public class PostagemService {
      * @return Uma lista de objetos Postagem.
      */
     public List<Postagem> listarTodasPostagens() {
-        return postagemDAO.getAll();
+        return comTamanhosDaImagem(postagemDAO.getAll());
     }
     
+    /**
+     * A listagem completa já serializada, do feed em memória, quando todas as postagens cabem nele.
+     * @return O array JSON com todas as postagens, ou null se a listagem precisar ser lida do banco.
+     */
+    public FeedPostagens.Conteudo buscarTodasNoFeed() {
+        carregarFeedSeNecessario();
+        return feed.buscarTodas();
+    }
+
+    /**
+     * Uma página de postagens já serializada, do feed em memória, quando ela cabe no feed.
+     * @param limite O número máximo de postagens na página.
+     * @param cursor O cursor opaco da página anterior, ou null para a primeira página.
+     * @return O JSON da página, ou null se ela precisar ser lida do banco com {@link #listarPaginaPostagens}.
+     * @throws IllegalArgumentException se o cursor for inválido.
+     */
+    public FeedPostagens.Conteudo buscarPaginaNoFeed(int limite, String cursor) {
+        carregarFeedSeNecessario();
+        return feed.buscarPagina(limite, cursor);
+    }
+
+    /**
+     * Métricas do feed de postagens (acertos, faltas, tamanho e recargas).
+     */
+    public Map<String, Object> getMetricasFeed() {
+        return feed.getMetricas();
+    }
+
     /**
      * Lista todas as postagens de um usuário específico.
      * @param usuarioId O ID do usuário (autor).
      * @return Uma lista de postagens do usuário.
      */
     public List<Postagem> listarPostagensPorUsuario(int usuarioId) {
-        return postagemDAO.getByUserId(usuarioId);
+        return comTamanhosDaImagem(postagemDAO.getByUserId(usuarioId));
+    }
+
+    /**
+     * Percorre todas as postagens sem carregá-las em memória.
+     * @param handler O consumidor que recebe cada postagem.
+     * @return true se a listagem foi concluída, false em caso de erro.
+     */
+    public boolean percorrerTodasPostagens(RowHandler<Postagem> handler) {
+        return postagemDAO.streamAll(postagem -> handler.handle(comTamanhosDaImagem(postagem)));
+    }
+
+    /**
+     * Percorre todas as postagens de um usuário sem carregá-las em memória.
+     * @param usuarioId O ID do usuário (autor).
+     * @param handler O consumidor que recebe cada postagem.
+     * @return true se a listagem foi concluída, false em caso de erro.
+     */
+    public boolean percorrerPostagensPorUsuario(int usuarioId, RowHandler<Postagem> handler) {
+        return postagemDAO.streamByUserId(usuarioId, postagem -> handler.handle(comTamanhosDaImagem(postagem)));
+    }
+
+    /**
+     * Lista uma página de postagens, da mais recente para a mais antiga.
+     * @param limite O número máximo de postagens na página.
+     * @param cursor O cursor opaco da página anterior, ou null para a primeira página.
+     * @return A página de postagens.
+     * @throws IllegalArgumentException se o cursor for inválido.
+     */
+    public Pagina<Postagem> listarPaginaPostagens(int limite, String cursor) {
+        return comTamanhosDaImagem(postagemDAO.getPage(limite, cursor != null ? Cursor.decode(cursor) : null));
+    }
+
+    /**
+     * Lista uma página de postagens de um usuário específico.
+     * @param usuarioId O ID do usuário (autor).
+     * @param limite O número máximo de postagens na página.
+     * @param cursor O cursor opaco da página anterior, ou null para a primeira página.
+     * @return A página de postagens do usuário.
+     * @throws IllegalArgumentException se o cursor for inválido.
+     */
+    public Pagina<Postagem> listarPaginaPostagensPorUsuario(int usuarioId, int limite, String cursor) {
+        return comTamanhosDaImagem(postagemDAO.getPageByUserId(usuarioId, limite, cursor != null ? Cursor.decode(cursor) : null));
     }
 
     /**
@@ -82,7 +184,13 @@ public class PostagemService {
         if (postagem.getId() <= 0) {
             return false;
         }
-        return postagemDAO.update(postagem);
+        // O banco guarda só o caminho da imagem, sem o servidor que o cliente recebeu na frente
+        postagem.setImagemUrl(blobStore.urlArmazenada(postagem.getImagemUrl()));
+        boolean atualizado = postagemDAO.update(postagem);
+        if (atualizado) {
+            atualizarFeed(postagem.getId());
+        }
+        return atualizado;
     }
 
     /**
@@ -91,6 +199,76 @@ public class PostagemService {
      * @return true se a deleção foi bem-sucedida, false caso contrário.
      */
     public boolean deletarPostagem(int id) {
-        return postagemDAO.delete(id);
+        boolean deletado = postagemDAO.delete(id);
+        if (deletado) {
+            feed.remover(id);
+        }
+        return deletado;
+    }
+
+    // Relê a postagem depois de uma escrita e a coloca no feed
+    private void atualizarFeed(int id) {
+        if (!feed.isHabilitado()) {
+            return;
+        }
+        long versao = feed.getVersao();
+        Postagem postagem = comTamanhosDaImagem(postagemDAO.get(id));
+        if (postagem != null) {
+            feed.guardar(postagem, versao);
+        } else {
+            // Removida logo depois da escrita, ou erro na leitura: o feed é recarregado
+            feed.descartar();
+        }
+    }
+
+    private void carregarFeedSeNecessario() {
+        if (!feed.iniciarCarregamento()) {
+            return;
+        }
+        try {
+            long versao = feed.getVersao();
+            List<Postagem> postagens = new ArrayList<>(feed.getTamanhoCarga());
+            if (postagemDAO.streamRecentes(feed.getTamanhoCarga(), postagens::add)) {
+                feed.carregar(comTamanhosDaImagem(postagens), versao);
+            }
+        } finally {
+            feed.concluirCarregamento();
+        }
+    }
+
+    /**
+     * Preenche as URLs da miniatura e do tamanho médio da imagem, a partir da URL da imagem original,
+     * e troca o caminho gravado no banco pela URL pública (com inkids.imagem.baseUrl na frente).
+     * As URLs são sempre válidas: enquanto o tamanho menor não fica pronto, elas servem a imagem original.
+     */
+    private Postagem comTamanhosDaImagem(Postagem postagem) {
+        if (postagem != null) {
+            String hash = blobStore.getHash(postagem.getImagemUrl());
+            if (hash != null) {
+                postagem.setImagemUrl(blobStore.urlPublica(blobStore.getUrl(hash)));
+                postagem.setImagemMiniaturaUrl(blobStore.urlPublica(blobStore.getUrl(hash, ImagemBlobStore.Tamanho.MINIATURA)));
+                postagem.setImagemMediaUrl(blobStore.urlPublica(blobStore.getUrl(hash, ImagemBlobStore.Tamanho.MEDIA)));
+            } else {
+                postagem.setImagemUrl(blobStore.urlPublica(postagem.getImagemUrl()));
+            }
+        }
+        return postagem;
+    }
+
+    private StatusImagem comUrlPublica(StatusImagem status) {
+        if (status != null) {
+            status.setImagemUrl(blobStore.urlPublica(blobStore.urlArmazenada(status.getImagemUrl())));
+        }
+        return status;
+    }
+
+    private List<Postagem> comTamanhosDaImagem(List<Postagem> postagens) {
+        postagens.forEach(this::comTamanhosDaImagem);
+        return postagens;
+    }
+
+    private Pagina<Postagem> comTamanhosDaImagem(Pagina<Postagem> pagina) {
+        comTamanhosDaImagem(pagina.getItens());
+        return pagina;
     }
 }
\ No newline at end of file
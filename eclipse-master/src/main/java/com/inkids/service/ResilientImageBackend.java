@@ -0,0 +1,323 @@
+package com.inkids.service;
+
+import com.inkids.config.Configuracao;
+import com.inkids.metrics.Histograma;
+import com.inkids.metrics.RegistroMetricas;
+import com.inkids.model.ImagemGerada;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Camada de resiliência em volta de um backend de imagens, para que um backend lento ou fora do ar
+ * não prenda as threads do servidor:
+ * - prazo por chamada (inkids.imagem.prazoMs): quem chama desiste depois do prazo;
+ * - bulkhead (inkids.imagem.maxConcorrencia): no máximo N chamadas ao backend ao mesmo tempo.
+ *   Uma chamada que estourou o prazo continua ocupando a vaga até o backend realmente responder;
+ * - circuit breaker: se a taxa de erro nas últimas chamadas passar de inkids.imagem.circuito.taxaErro,
+ *   o circuito abre e as chamadas falham imediatamente por inkids.imagem.circuito.aberturaMs.
+ *   Depois disso, uma única chamada de teste decide se o circuito fecha ou abre de novo;
+ *   chamadas iniciadas antes da última mudança de estado não contam para o circuito.
+ * Todas as falhas são {@link IOException}, então quem chama aplica o fallback ou a nova tentativa de sempre.
+ * A duração das chamadas que chegam ao backend vai para o histograma inkids_imagem_geracao_segundos (GET /api/metrics).
+ */
+public class ResilientImageBackend implements ImageBackend {
+
+    private static final long PRAZO_MS = Math.max(1, Configuracao.getLong("inkids.imagem.prazoMs", 30000));
+    private static final int MAX_CONCORRENCIA = Math.max(1, Configuracao.getInt("inkids.imagem.maxConcorrencia", 4));
+    private static final long ESPERA_VAGA_MS = Math.max(0, Configuracao.getLong("inkids.imagem.esperaVagaMs", 1000));
+
+    private static final int JANELA = Math.max(1, Configuracao.getInt("inkids.imagem.circuito.janela", 20));
+    private static final int MINIMO_CHAMADAS = Math.max(1, Math.min(JANELA, Configuracao.getInt("inkids.imagem.circuito.minimoChamadas", 10)));
+    private static final double TAXA_ERRO = Configuracao.getInt("inkids.imagem.circuito.taxaErro", 50) / 100.0;
+    private static final long ABERTURA_MS = Math.max(1, Configuracao.getLong("inkids.imagem.circuito.aberturaMs", 30000));
+
+    /**
+     * Estados do circuit breaker.
+     */
+    public enum EstadoCircuito { FECHADO, ABERTO, MEIO_ABERTO }
+
+    /**
+     * Falha imediata, sem chamar o backend, porque o circuito está aberto.
+     */
+    public static class CircuitoAbertoException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitoAbertoException(String message) {
+            super(message);
+        }
+    }
+
+    private final ImageBackend backend;
+    private final Semaphore vagas = new Semaphore(MAX_CONCORRENCIA);
+    private final ExecutorService executor;
+
+    // Circuit breaker: resultado das últimas JANELA chamadas (true = falha), protegido por "this"
+    private EstadoCircuito estado = EstadoCircuito.FECHADO;
+    private final boolean[] janela = new boolean[JANELA];
+    private int posicao;
+    private int preenchidas;
+    private int falhasNaJanela;
+    private long abertoAte;
+    private boolean testeEmAndamento;
+    // Muda a cada mudança de estado do circuito, para reconhecer chamadas iniciadas antes dela
+    private int ciclo;
+
+    /**
+     * Autorização de uma chamada, dada por {@link #permitirChamada()}: o ciclo do circuito em que
+     * a chamada começou e se ela é a chamada de teste do circuito meio aberto.
+     */
+    private static final class Permissao {
+        final int ciclo;
+        final boolean teste;
+
+        Permissao(int ciclo, boolean teste) {
+            this.ciclo = ciclo;
+            this.teste = teste;
+        }
+    }
+
+    private final LongAdder chamadas = new LongAdder();
+    private final LongAdder sucessos = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+    private final LongAdder prazosEstourados = new LongAdder();
+    private final LongAdder rejeitadasBulkhead = new LongAdder();
+    private final LongAdder rejeitadasCircuito = new LongAdder();
+    private final LongAdder aberturas = new LongAdder();
+    private final Histograma duracaoSucessos;
+    private final Histograma duracaoFalhas;
+
+    public ResilientImageBackend(ImageBackend backend) {
+        this.backend = backend;
+        RegistroMetricas registro = RegistroMetricas.getInstance();
+        String ajuda = "Duração das chamadas ao backend de geração de imagens, por resultado.";
+        this.duracaoSucessos = registro.histograma("inkids_imagem_geracao_segundos", ajuda, "backend", backend.getNome(), "resultado", "sucesso");
+        this.duracaoFalhas = registro.histograma("inkids_imagem_geracao_segundos", ajuda, "backend", backend.getNome(), "resultado", "falha");
+        AtomicInteger contador = new AtomicInteger();
+        // O número de threads é limitado na prática pelo bulkhead
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "inkids-imagem-backend-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public ImagemGerada gerar(String prompt) throws IOException {
+        return executar(() -> backend.gerar(prompt));
+    }
+
+    @Override
+    public ImagemGerada gerarVariacao(String prompt, int variacao) throws IOException {
+        return executar(() -> backend.gerarVariacao(prompt, variacao));
+    }
+
+    private ImagemGerada executar(Callable<ImagemGerada> geracao) throws IOException {
+        chamadas.increment();
+        // Com o circuito aberto a chamada falha na hora, sem nem esperar vaga no bulkhead
+        Permissao permissao = permitirChamada();
+        if (permissao == null) {
+            rejeitadasCircuito.increment();
+            throw new CircuitoAbertoException("Circuito do backend de imagens (" + backend.getNome() + ") aberto: chamada não realizada.");
+        }
+        try {
+            adquirirVaga();
+        } catch (IOException e) {
+            desistirDoTeste(permissao);
+            throw e;
+        }
+
+        long inicio = System.nanoTime();
+        Future<ImagemGerada> chamada;
+        try {
+            chamada = executor.submit(() -> {
+                try {
+                    return geracao.call();
+                } finally {
+                    vagas.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            vagas.release();
+            registrarResultado(permissao, false);
+            throw new IOException("Não foi possível executar a chamada ao backend de imagens: " + e.getMessage(), e);
+        }
+
+        try {
+            ImagemGerada imagem = chamada.get(PRAZO_MS, TimeUnit.MILLISECONDS);
+            duracaoSucessos.registrarNanos(System.nanoTime() - inicio);
+            registrarResultado(permissao, true);
+            return imagem;
+        } catch (TimeoutException e) {
+            chamada.cancel(true);
+            duracaoFalhas.registrarNanos(System.nanoTime() - inicio);
+            prazosEstourados.increment();
+            registrarResultado(permissao, false);
+            throw new IOException("Prazo de " + PRAZO_MS + " ms excedido na geração da imagem (" + backend.getNome() + ").", e);
+        } catch (InterruptedException e) {
+            chamada.cancel(true);
+            registrarResultado(permissao, false);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrompido aguardando a geração da imagem.", e);
+        } catch (CancellationException e) {
+            registrarResultado(permissao, false);
+            throw new IOException("A geração da imagem foi cancelada.", e);
+        } catch (ExecutionException e) {
+            duracaoFalhas.registrarNanos(System.nanoTime() - inicio);
+            registrarResultado(permissao, false);
+            Throwable causa = e.getCause();
+            if (causa instanceof IOException) {
+                throw (IOException) causa;
+            }
+            throw new IOException("Erro no backend de imagens (" + backend.getNome() + "): " + causa, causa);
+        }
+    }
+
+    private void adquirirVaga() throws IOException {
+        try {
+            if (!vagas.tryAcquire(ESPERA_VAGA_MS, TimeUnit.MILLISECONDS)) {
+                rejeitadasBulkhead.increment();
+                throw new IOException("Limite de " + MAX_CONCORRENCIA + " gerações de imagem simultâneas atingido.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrompido aguardando vaga para gerar a imagem.", e);
+        }
+    }
+
+    /**
+     * @return A autorização da chamada, ou null se o circuito não permitir a chamada agora.
+     */
+    private synchronized Permissao permitirChamada() {
+        if (estado == EstadoCircuito.ABERTO) {
+            if (System.currentTimeMillis() < abertoAte) {
+                return null;
+            }
+            estado = EstadoCircuito.MEIO_ABERTO;
+            ciclo++;
+            testeEmAndamento = false;
+            System.out.println("Circuito do backend de imagens meio aberto: testando o backend.");
+        }
+        if (estado == EstadoCircuito.MEIO_ABERTO) {
+            // Só uma chamada de teste por vez
+            if (testeEmAndamento) {
+                return null;
+            }
+            testeEmAndamento = true;
+            return new Permissao(ciclo, true);
+        }
+        return new Permissao(ciclo, false);
+    }
+
+    // A chamada de teste não chegou ao backend: libera o teste para a próxima chamada
+    private synchronized void desistirDoTeste(Permissao permissao) {
+        if (permissao.teste && permissao.ciclo == ciclo) {
+            testeEmAndamento = false;
+        }
+    }
+
+    private synchronized void registrarResultado(Permissao permissao, boolean sucesso) {
+        if (sucesso) {
+            sucessos.increment();
+        } else {
+            falhas.increment();
+        }
+
+        if (permissao.ciclo != ciclo) {
+            return; // Chamada iniciada antes da última mudança de estado do circuito
+        }
+        if (permissao.teste) {
+            if (sucesso) {
+                estado = EstadoCircuito.FECHADO;
+                ciclo++;
+                limparJanela();
+                System.out.println("Circuito do backend de imagens fechado.");
+            } else {
+                abrir("a chamada de teste falhou");
+            }
+            return;
+        }
+
+        if (preenchidas == JANELA && janela[posicao]) {
+            falhasNaJanela--;
+        }
+        janela[posicao] = !sucesso;
+        if (!sucesso) {
+            falhasNaJanela++;
+        }
+        posicao = (posicao + 1) % JANELA;
+        preenchidas = Math.min(preenchidas + 1, JANELA);
+
+        if (preenchidas >= MINIMO_CHAMADAS && (double) falhasNaJanela / preenchidas >= TAXA_ERRO) {
+            abrir("taxa de erro acima do limite");
+        }
+    }
+
+    private void abrir(String motivo) {
+        estado = EstadoCircuito.ABERTO;
+        ciclo++;
+        abertoAte = System.currentTimeMillis() + ABERTURA_MS;
+        testeEmAndamento = false;
+        limparJanela();
+        aberturas.increment();
+        System.err.println("Circuito do backend de imagens aberto por " + ABERTURA_MS + " ms: " + motivo + ".");
+    }
+
+    private void limparJanela() {
+        Arrays.fill(janela, false);
+        posicao = 0;
+        preenchidas = 0;
+        falhasNaJanela = 0;
+    }
+
+    public synchronized EstadoCircuito getEstado() {
+        return estado;
+    }
+
+    /**
+     * Métricas da camada de resiliência: estado do circuito, ocupação do bulkhead e contadores de chamadas.
+     */
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        synchronized (this) {
+            metricas.put("estadoCircuito", estado.name());
+            metricas.put("taxaErroJanela", preenchidas > 0 ? (double) falhasNaJanela / preenchidas : 0.0);
+            metricas.put("chamadasNaJanela", preenchidas);
+        }
+        metricas.put("emExecucao", MAX_CONCORRENCIA - vagas.availablePermits());
+        metricas.put("maxConcorrencia", MAX_CONCORRENCIA);
+        metricas.put("prazoMs", PRAZO_MS);
+        metricas.put("chamadas", chamadas.sum());
+        metricas.put("sucessos", sucessos.sum());
+        metricas.put("falhas", falhas.sum());
+        metricas.put("prazosEstourados", prazosEstourados.sum());
+        metricas.put("rejeitadasBulkhead", rejeitadasBulkhead.sum());
+        metricas.put("rejeitadasCircuito", rejeitadasCircuito.sum());
+        metricas.put("aberturasCircuito", aberturas.sum());
+        return metricas;
+    }
+
+    @Override
+    public String getNome() {
+        return backend.getNome();
+    }
+
+    @Override
+    public void fechar() {
+        executor.shutdownNow();
+        backend.fechar();
+    }
+}
@@ -1,9 +1,17 @@
 package com.inkids.service;
 
+import com.inkids.dao.Cursor;
+import com.inkids.dao.RowHandler;
 import com.inkids.dao.TarefaDAO;
+import com.inkids.dao.UsuarioDAO;
+import com.inkids.model.Pagina;
+import com.inkids.model.ResultadoLote;
 import com.inkids.model.Tarefa;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Camada de serviço para a entidade Tarefa.
@@ -11,9 +19,11 @@ import java.util.List;
  */
 public class TarefaService {
     private final TarefaDAO tarefaDAO;
+    private final UsuarioDAO usuarioDAO;
 
     public TarefaService() {
         this.tarefaDAO = new TarefaDAO();
+        this.usuarioDAO = new UsuarioDAO();
     }
 
     /**
@@ -44,6 +54,62 @@ public class TarefaService {
         return null;
     }
 
+    /**
+     * Cria várias tarefas de uma vez, em uma única transação.
+     * Cada tarefa é validada individualmente: as inválidas são rejeitadas com o motivo,
+     * sem impedir a inserção das demais.
+     * @param tarefas As tarefas a serem criadas.
+     * @return O resultado de cada tarefa, na ordem recebida, ou null se o acesso ao banco falhar.
+     */
+    public ResultadoLote criarTarefasEmLote(List<Tarefa> tarefas) {
+        Set<Integer> usuarioIds = new HashSet<>();
+        for (Tarefa tarefa : tarefas) {
+            if (tarefa != null) {
+                usuarioIds.add(tarefa.getUsuarioId());
+            }
+        }
+        Set<Integer> usuariosExistentes = usuarioDAO.getExistingIds(usuarioIds);
+        if (usuariosExistentes == null) {
+            // Sem a consulta não dá para validar os autores: é uma falha do banco, não usuários inexistentes
+            return null;
+        }
+
+        String[] erros = new String[tarefas.size()];
+        List<Tarefa> validas = new ArrayList<>();
+        for (int i = 0; i < tarefas.size(); i++) {
+            Tarefa tarefa = tarefas.get(i);
+            if (tarefa == null || tarefa.getTitulo() == null || tarefa.getTitulo().trim().isEmpty()) {
+                erros[i] = "Título da tarefa é obrigatório.";
+            } else if (!usuariosExistentes.contains(tarefa.getUsuarioId())) {
+                erros[i] = "Usuário " + tarefa.getUsuarioId() + " não encontrado.";
+            } else {
+                // Define valores padrão se não forem fornecidos
+                if (tarefa.getStatus() == null) {
+                    tarefa.setStatus("PENDENTE");
+                }
+                if (tarefa.getPrioridade() == null) {
+                    tarefa.setPrioridade("MEDIA");
+                }
+                validas.add(tarefa);
+            }
+        }
+
+        if (!validas.isEmpty() && tarefaDAO.insertBatch(validas) == null) {
+            return null;
+        }
+
+        // insertBatch preenche o ID de cada tarefa inserida
+        ResultadoLote resultado = new ResultadoLote();
+        for (int i = 0; i < tarefas.size(); i++) {
+            if (erros[i] != null) {
+                resultado.adicionarRejeitado(i, erros[i]);
+            } else {
+                resultado.adicionarInserido(i, tarefas.get(i).getId());
+            }
+        }
+        return resultado;
+    }
+
     /**
      * Busca uma tarefa pelo seu ID.
      * @param id O ID da tarefa.
@@ -61,6 +127,26 @@ public class TarefaService {
         return tarefaDAO.getAll();
     }
 
+    /**
+     * Percorre todas as tarefas sem carregá-las em memória.
+     * @param handler O consumidor que recebe cada tarefa.
+     * @return true se a listagem foi concluída, false em caso de erro.
+     */
+    public boolean percorrerTodasTarefas(RowHandler<Tarefa> handler) {
+        return tarefaDAO.streamAll(handler);
+    }
+
+    /**
+     * Lista uma página de tarefas, da mais recente para a mais antiga.
+     * @param limite O número máximo de tarefas na página.
+     * @param cursor O cursor opaco da página anterior, ou null para a primeira página.
+     * @return A página de tarefas.
+     * @throws IllegalArgumentException se o cursor for inválido.
+     */
+    public Pagina<Tarefa> listarPaginaTarefas(int limite, String cursor) {
+        return tarefaDAO.getPage(limite, cursor != null ? Cursor.decode(cursor) : null);
+    }
+
     /**
      * Atualiza os dados de uma tarefa.
      * @param tarefa O objeto Tarefa com as informações atualizadas.
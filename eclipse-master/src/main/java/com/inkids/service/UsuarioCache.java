@@ -0,0 +1,216 @@
+package com.inkids.service;
+
+import com.inkids.config.Configuracao;
+import com.inkids.model.Usuario;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache em memória dos usuários lidos do banco, consultado por ID e por email.
+ *
+ * É um LRU segmentado: um usuário novo entra no segmento de experiência e só passa para o segmento protegido
+ * (80% das entradas) quando é lido de novo. Assim uma listagem ou uma varredura de usuários lidos uma única vez
+ * não expulsa os usuários usados com frequência. Quando o protegido enche, o menos usado dele volta para
+ * a experiência, e quem sai do cache é sempre o menos usado da experiência.
+ *
+ * Limites: inkids.usuarios.cache.maxEntradas (padrão 10000, 0 desliga o cache) e
+ * inkids.usuarios.cache.ttlSegundos (padrão 300), que limita quanto tempo uma alteração feita fora da aplicação
+ * pode demorar para aparecer. As alterações feitas pela aplicação invalidam a entrada na hora ({@link #invalidar(int)}).
+ *
+ * Os usuários são copiados na entrada e na saída, já que o modelo é mutável.
+ */
+public class UsuarioCache {
+
+    private static final int MAX_ENTRADAS = Math.max(0, Configuracao.getInt("inkids.usuarios.cache.maxEntradas", 10000));
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(Math.max(1, Configuracao.getLong("inkids.usuarios.cache.ttlSegundos", 300)));
+    private static final double FRACAO_PROTEGIDA = 0.8;
+
+    private static final class Entrada {
+        final Usuario usuario;
+        final long expiraEm;
+
+        Entrada(Usuario usuario, long expiraEm) {
+            this.usuario = usuario;
+            this.expiraEm = expiraEm;
+        }
+    }
+
+    private final int maxProtegidas = (int) (MAX_ENTRADAS * FRACAO_PROTEGIDA);
+
+    // Protegidos por "this". Os dois segmentos estão em ordem de acesso (o primeiro é o menos usado).
+    private final LinkedHashMap<Integer, Entrada> experiencia = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<Integer, Entrada> protegidas = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Integer> idsPorEmail = new HashMap<>();
+    // Incrementada a cada invalidação: um usuário lido do banco antes dela não pode mais entrar no cache
+    private long versao;
+
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder faltas = new LongAdder();
+    private final LongAdder remocoes = new LongAdder();
+    private final LongAdder expiradas = new LongAdder();
+    private final LongAdder invalidacoes = new LongAdder();
+
+    public boolean isHabilitado() {
+        return MAX_ENTRADAS > 0;
+    }
+
+    /**
+     * Busca o usuário pelo ID.
+     * @return Uma cópia do usuário, ou null se ele não estiver no cache.
+     */
+    public synchronized Usuario buscar(int id) {
+        Entrada entrada = ler(id);
+        if (entrada == null) {
+            faltas.increment();
+            return null;
+        }
+        acertos.increment();
+        return copiar(entrada.usuario);
+    }
+
+    /**
+     * Busca o usuário pelo email (comparado exatamente, como na consulta ao banco).
+     * @return Uma cópia do usuário, ou null se ele não estiver no cache.
+     */
+    public synchronized Usuario buscarPorEmail(String email) {
+        Integer id = email != null ? idsPorEmail.get(email) : null;
+        Entrada entrada = id != null ? ler(id) : null;
+        if (entrada == null) {
+            faltas.increment();
+            return null;
+        }
+        acertos.increment();
+        return copiar(entrada.usuario);
+    }
+
+    /**
+     * A versão atual do cache, que deve ser lida antes de buscar o usuário no banco e passada para {@link #guardar}.
+     */
+    public synchronized long getVersao() {
+        return versao;
+    }
+
+    /**
+     * Guarda o usuário lido do banco, se nenhuma invalidação aconteceu desde que a leitura começou.
+     * @param versaoLida O valor de {@link #getVersao()} antes da leitura no banco.
+     */
+    public synchronized void guardar(Usuario usuario, long versaoLida) {
+        if (!isHabilitado() || usuario == null || versaoLida != versao) {
+            return;
+        }
+        remover(usuario.getId());
+        experiencia.put(usuario.getId(), new Entrada(copiar(usuario), System.nanoTime() + TTL_NANOS));
+        if (usuario.getEmail() != null) {
+            idsPorEmail.put(usuario.getEmail(), usuario.getId());
+        }
+        while (experiencia.size() + protegidas.size() > MAX_ENTRADAS && !experiencia.isEmpty()) {
+            Iterator<Map.Entry<Integer, Entrada>> menosUsada = experiencia.entrySet().iterator();
+            Entrada removida = menosUsada.next().getValue();
+            menosUsada.remove();
+            esquecerEmail(removida.usuario);
+            remocoes.increment();
+        }
+    }
+
+    /**
+     * Remove o usuário do cache (pelo ID e pelo email que ele tinha), após uma alteração ou remoção.
+     */
+    public synchronized void invalidar(int id) {
+        versao++;
+        if (remover(id)) {
+            invalidacoes.increment();
+        }
+    }
+
+    // Entrada válida do usuário, promovida para o segmento protegido se estava em experiência
+    private Entrada ler(int id) {
+        Entrada entrada = protegidas.get(id);
+        if (entrada == null) {
+            entrada = experiencia.get(id);
+            if (entrada == null) {
+                return null;
+            }
+            if (expirou(entrada)) {
+                remover(id);
+                expiradas.increment();
+                return null;
+            }
+            experiencia.remove(id);
+            protegidas.put(id, entrada);
+            if (protegidas.size() > maxProtegidas) {
+                // O menos usado dos protegidos ganha mais uma chance na experiência
+                Iterator<Map.Entry<Integer, Entrada>> menosUsada = protegidas.entrySet().iterator();
+                Map.Entry<Integer, Entrada> rebaixada = menosUsada.next();
+                menosUsada.remove();
+                experiencia.put(rebaixada.getKey(), rebaixada.getValue());
+            }
+            return entrada;
+        }
+        if (expirou(entrada)) {
+            remover(id);
+            expiradas.increment();
+            return null;
+        }
+        return entrada;
+    }
+
+    private static boolean expirou(Entrada entrada) {
+        return System.nanoTime() - entrada.expiraEm > 0;
+    }
+
+    private boolean remover(int id) {
+        Entrada entrada = experiencia.remove(id);
+        if (entrada == null) {
+            entrada = protegidas.remove(id);
+        }
+        if (entrada == null) {
+            return false;
+        }
+        esquecerEmail(entrada.usuario);
+        return true;
+    }
+
+    private void esquecerEmail(Usuario usuario) {
+        if (usuario.getEmail() != null) {
+            idsPorEmail.remove(usuario.getEmail(), usuario.getId());
+        }
+    }
+
+    private static Usuario copiar(Usuario usuario) {
+        Usuario copia = new Usuario(usuario.getNome(), usuario.getEmail(), usuario.getSenha(), usuario.getDataNascimento(),
+                usuario.getGenero(), usuario.getTelefone(), usuario.getTipoUsuario());
+        copia.setId(usuario.getId());
+        copia.setReutilizarImagens(usuario.getReutilizarImagens());
+        copia.setCreatedAt(usuario.getCreatedAt());
+        copia.setUpdatedAt(usuario.getUpdatedAt());
+        return copia;
+    }
+
+    /**
+     * Métricas do cache: tamanho dos segmentos, acertos, faltas e taxa de acerto.
+     */
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("habilitado", isHabilitado());
+        metricas.put("maxEntradas", MAX_ENTRADAS);
+        metricas.put("ttlSegundos", TimeUnit.NANOSECONDS.toSeconds(TTL_NANOS));
+        synchronized (this) {
+            metricas.put("entradas", experiencia.size() + protegidas.size());
+            metricas.put("protegidas", protegidas.size());
+        }
+        long acertosTotal = acertos.sum();
+        long faltasTotal = faltas.sum();
+        metricas.put("acertos", acertosTotal);
+        metricas.put("faltas", faltasTotal);
+        metricas.put("taxaAcerto", acertosTotal + faltasTotal > 0 ? (double) acertosTotal / (acertosTotal + faltasTotal) : 0.0);
+        metricas.put("remocoes", remocoes.sum());
+        metricas.put("expiradas", expiradas.sum());
+        metricas.put("invalidacoes", invalidacoes.sum());
+        return metricas;
+    }
+}
@@ -1,9 +1,16 @@
 package com.inkids.service;
 
+import com.inkids.dao.Cursor;
 import com.inkids.dao.UsuarioDAO;
+import com.inkids.model.Pagina;
+import com.inkids.model.ResultadoLote;
 import com.inkids.model.Usuario;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Camada de serviço para a entidade Usuario.
@@ -11,9 +18,12 @@ import java.util.List;
  */
 public class UsuarioService {
     private final UsuarioDAO usuarioDAO;
+    // Usuários mudam pouco e são lidos a cada postagem e login: as buscas por ID e email passam pelo cache
+    private final UsuarioCache cache;
 
     public UsuarioService() {
         this.usuarioDAO = new UsuarioDAO();
+        this.cache = new UsuarioCache();
     }
 
     /**
@@ -40,13 +50,78 @@ public class UsuarioService {
         return null;
     }
 
+    /**
+     * Cria vários usuários de uma vez, em uma única transação (ex: cadastro de uma turma).
+     * Cada usuário é validado individualmente: os inválidos são rejeitados com o motivo,
+     * sem impedir a inserção dos demais.
+     * @param usuarios Os usuários a serem criados.
+     * @return O resultado de cada usuário, na ordem recebida, ou null se o acesso ao banco falhar.
+     */
+    public ResultadoLote criarUsuariosEmLote(List<Usuario> usuarios) {
+        Set<String> emails = new HashSet<>();
+        for (Usuario usuario : usuarios) {
+            if (usuario != null && usuario.getEmail() != null) {
+                emails.add(usuario.getEmail().trim());
+            }
+        }
+        Set<String> emailsCadastrados = usuarioDAO.getExistingEmails(emails);
+        if (emailsCadastrados == null) {
+            return null;
+        }
+
+        String[] erros = new String[usuarios.size()];
+        Set<String> emailsDoLote = new HashSet<>();
+        List<Usuario> validos = new ArrayList<>();
+        for (int i = 0; i < usuarios.size(); i++) {
+            Usuario usuario = usuarios.get(i);
+            if (usuario == null || usuario.getEmail() == null || usuario.getEmail().trim().isEmpty()) {
+                erros[i] = "Email é obrigatório.";
+            } else if (usuario.getNome() == null || usuario.getNome().trim().isEmpty()) {
+                erros[i] = "Nome é obrigatório.";
+            } else if (usuario.getSenha() == null || usuario.getSenha().isEmpty()) {
+                erros[i] = "Senha é obrigatória.";
+            } else if (emailsCadastrados.contains(usuario.getEmail().trim())) {
+                erros[i] = "Email já cadastrado.";
+            } else if (!emailsDoLote.add(usuario.getEmail().trim())) {
+                erros[i] = "Email repetido no lote.";
+            } else {
+                usuario.setEmail(usuario.getEmail().trim());
+                validos.add(usuario);
+            }
+        }
+
+        if (!validos.isEmpty() && usuarioDAO.insertBatch(validos) == null) {
+            return null;
+        }
+
+        // insertBatch preenche o ID de cada usuário inserido
+        ResultadoLote resultado = new ResultadoLote();
+        for (int i = 0; i < usuarios.size(); i++) {
+            if (erros[i] != null) {
+                resultado.adicionarRejeitado(i, erros[i]);
+            } else {
+                resultado.adicionarInserido(i, usuarios.get(i).getId());
+            }
+        }
+        return resultado;
+    }
+
     /**
      * Busca um usuário pelo ID.
      * @param id O ID do usuário.
      * @return O objeto Usuario encontrado, ou null se não existir.
      */
     public Usuario buscarUsuarioPorId(int id) {
-        return usuarioDAO.get(id);
+        if (!cache.isHabilitado()) {
+            return usuarioDAO.get(id);
+        }
+        Usuario usuario = cache.buscar(id);
+        if (usuario == null) {
+            long versao = cache.getVersao();
+            usuario = usuarioDAO.get(id);
+            cache.guardar(usuario, versao);
+        }
+        return usuario;
     }
     
     /**
@@ -55,7 +130,16 @@ public class UsuarioService {
      * @return O objeto Usuario encontrado, ou null se não existir.
      */
     public Usuario buscarUsuarioPorEmail(String email) {
-        return usuarioDAO.getByEmail(email);
+        if (!cache.isHabilitado()) {
+            return usuarioDAO.getByEmail(email);
+        }
+        Usuario usuario = cache.buscarPorEmail(email);
+        if (usuario == null) {
+            long versao = cache.getVersao();
+            usuario = usuarioDAO.getByEmail(email);
+            cache.guardar(usuario, versao);
+        }
+        return usuario;
     }
 
     /**
@@ -66,6 +150,17 @@ public class UsuarioService {
         return usuarioDAO.getAll();
     }
 
+    /**
+     * Lista uma página de usuários, em ordem alfabética.
+     * @param limite O número máximo de usuários na página.
+     * @param cursor O cursor opaco da página anterior, ou null para a primeira página.
+     * @return A página de usuários.
+     * @throws IllegalArgumentException se o cursor for inválido.
+     */
+    public Pagina<Usuario> listarPaginaUsuarios(int limite, String cursor) {
+        return usuarioDAO.getPage(limite, cursor != null ? Cursor.decode(cursor) : null);
+    }
+
     /**
      * Atualiza os dados de um usuário.
      * @param usuario O objeto Usuario com as informações atualizadas.
@@ -76,7 +171,10 @@ public class UsuarioService {
         if (usuario.getId() <= 0) {
             return false;
         }
-        return usuarioDAO.update(usuario);
+        boolean atualizado = usuarioDAO.update(usuario);
+        // Também quando a atualização falha: o estado no banco pode ter mudado de outra forma
+        cache.invalidar(usuario.getId());
+        return atualizado;
     }
 
     /**
@@ -85,6 +183,19 @@ public class UsuarioService {
      * @return true se a deleção foi bem-sucedida, false caso contrário.
      */
     public boolean deletarUsuario(int id) {
-        return usuarioDAO.delete(id);
+        boolean deletado = usuarioDAO.delete(id);
+        cache.invalidar(id);
+        if (deletado) {
+            // As postagens do usuário foram removidas em cascata pelo banco
+            FeedPostagens.getInstance().descartar();
+        }
+        return deletado;
+    }
+
+    /**
+     * Métricas do cache de usuários (acertos, faltas, taxa de acerto e tamanho).
+     */
+    public Map<String, Object> getMetricasCache() {
+        return cache.getMetricas();
     }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package com.inkids.service;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.cloud.aiplatform.v1.EndpointName;
+import com.google.cloud.aiplatform.v1.PredictResponse;
+import com.google.cloud.aiplatform.v1.PredictionServiceClient;
+import com.google.cloud.aiplatform.v1.PredictionServiceSettings;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.inkids.config.Configuracao;
+import com.inkids.model.ImagemGerada;
+import org.threeten.bp.Duration;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backend de geração de imagens que usa a API do Google (Vertex AI).
+ * Um único PredictionServiceClient (canal gRPC, TLS e credenciais) é criado na primeira chamada
+ * e reaproveitado por todas as threads. Cada chamada gRPC tem o prazo de inkids.imagem.prazoMs;
+ * o limite de chamadas simultâneas e o circuit breaker ficam no {@link ResilientImageBackend}.
+ */
+public class VertexImageBackend implements ImageBackend {
+
+    // --- Configuração para a API Vertex AI ---
+    // Substitua pelos detalhes do seu projeto no Google Cloud (ou use as chaves inkids.imagem.vertex.*).
+    private static final String PROJECT_ID = Configuracao.getString("inkids.imagem.vertex.projeto", "seu-gcp-project-id"); // Ex: "my-first-project"
+    private static final String LOCATION = Configuracao.getString("inkids.imagem.vertex.regiao", "us-central1"); // Região onde o modelo está hospedado
+    private static final String PUBLISHER = "google";
+    private static final String MODEL = Configuracao.getString("inkids.imagem.vertex.modelo", "imagegeneration@005"); // Verifique o nome do modelo mais recente na documentação
+
+    private static final long PRAZO_MS = Math.max(1, Configuracao.getLong("inkids.imagem.prazoMs", 30000));
+
+    private final EndpointName endpointName = EndpointName.ofProjectLocationPublisherModelName(PROJECT_ID, LOCATION, PUBLISHER, MODEL);
+    private volatile PredictionServiceClient client;
+
+    @Override
+    public ImagemGerada gerar(String prompt) throws IOException {
+        try {
+            // Monta o payload da requisição para a API
+            Value instance = Value.newBuilder().setStructValue(Struct.newBuilder()
+                    .putFields("prompt", Value.newBuilder().setStringValue(prompt).build()))
+                    .build();
+            Value parameters = Value.newBuilder().setStructValue(Struct.newBuilder()
+                    .putFields("sampleCount", Value.newBuilder().setNumberValue(1).build()))
+                    .build();
+
+            // Chama a API do Vertex AI
+            PredictResponse response = getClient().predict(endpointName, Collections.singletonList(instance), parameters);
+            if (response.getPredictionsCount() == 0) {
+                throw new IOException("O Vertex AI não retornou nenhuma imagem.");
+            }
+
+            // Extrai a imagem em formato Base64 da resposta
+            // O caminho exato pode variar dependendo da versão da API
+            Value imagem = response.getPredictions(0).getStructValue().getFieldsMap().get("bytesBase64Encoded");
+            if (imagem == null) {
+                throw new IOException("Resposta do Vertex AI sem o campo bytesBase64Encoded.");
+            }
+            return new ImagemGerada(Base64.getDecoder().decode(imagem.getStringValue()), "image/png");
+        } catch (ApiException e) {
+            throw new IOException("Erro na chamada ao Vertex AI (" + e.getStatusCode().getCode() + "): " + e.getMessage(), e);
+        }
+    }
+
+    private PredictionServiceClient getClient() throws IOException {
+        PredictionServiceClient atual = client;
+        if (atual == null) {
+            synchronized (this) {
+                atual = client;
+                if (atual == null) {
+                    String endpoint = String.format("%s-aiplatform.googleapis.com:443", LOCATION);
+                    PredictionServiceSettings.Builder settings = PredictionServiceSettings.newBuilder().setEndpoint(endpoint);
+                    // Uma única tentativa com prazo: as novas tentativas ficam a cargo da fila de imagens
+                    settings.predictSettings().setRetrySettings(settings.predictSettings().getRetrySettings().toBuilder()
+                            .setLogicalTimeout(Duration.ofMillis(PRAZO_MS))
+                            .setMaxAttempts(1)
+                            .build());
+                    atual = PredictionServiceClient.create(settings.build());
+                    client = atual;
+                }
+            }
+        }
+        return atual;
+    }
+
+    @Override
+    public String getNome() {
+        return "vertex";
+    }
+
+    @Override
+    public synchronized void fechar() {
+        if (client != null) {
+            client.close();
+            try {
+                client.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            client = null;
+        }
+    }
+}
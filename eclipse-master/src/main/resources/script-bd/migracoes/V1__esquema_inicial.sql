@@ -1,10 +1,6 @@
--- Remove as tabelas existentes para garantir uma inicialização limpa (útil em desenvolvimento)
--- A ordem é importante para evitar erros de chave estrangeira
-DROP TABLE IF EXISTS Contatos;
-DROP TABLE IF EXISTS Tarefas;
-DROP TABLE IF EXISTS Postagens;
-DROP TABLE IF EXISTS Usuarios;
-
+-- V1: Esquema inicial do banco de dados.
+-- Atenção: migrações já aplicadas não devem ser alteradas (o checksum é verificado na inicialização).
+-- Mudanças no esquema devem ser feitas em uma nova migração.
 
 -- Criação da tabela de Usuários
 -- Armazena as informações dos usuários que podem se logar no sistema.
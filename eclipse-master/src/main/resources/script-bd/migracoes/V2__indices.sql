@@ -0,0 +1,21 @@
+-- V2: Índices secundários para as consultas mais frequentes.
+-- No H2, todo índice secundário já inclui a chave primária (id) no final,
+-- então um índice em (created_at) também atende à ordenação por (created_at, id).
+
+-- Postagens de um usuário: WHERE autor_id = ? ORDER BY created_at DESC
+CREATE INDEX IF NOT EXISTS idx_postagens_autor_created ON Postagens(autor_id, created_at);
+
+-- Listagem geral de postagens, mais recentes primeiro (inclui a paginação por cursor)
+CREATE INDEX IF NOT EXISTS idx_postagens_created ON Postagens(created_at);
+
+-- Tarefas de um usuário, ordenadas pela data de criação
+CREATE INDEX IF NOT EXISTS idx_tarefas_usuario_data ON Tarefas(usuario_id, data_criacao);
+
+-- Listagem geral de tarefas, mais recentes primeiro (inclui a paginação por cursor)
+CREATE INDEX IF NOT EXISTS idx_tarefas_data_criacao ON Tarefas(data_criacao);
+
+-- Listagem de mensagens de contato, mais recentes primeiro
+CREATE INDEX IF NOT EXISTS idx_contatos_created ON Contatos(created_at);
+
+-- Listagem de usuários em ordem alfabética (paginação por cursor em (nome, id))
+CREATE INDEX IF NOT EXISTS idx_usuarios_nome ON Usuarios(nome);
@@ -0,0 +1,24 @@
+-- V3: Fila persistente de geração de imagens.
+-- A postagem é salva imediatamente com a imagem pendente; a imagem é gerada depois,
+-- em segundo plano, a partir dos jobs desta tabela.
+
+-- Estado da imagem da postagem (PENDENTE, PRONTA, FALHOU).
+-- Postagens já existentes têm a imagem pronta.
+ALTER TABLE Postagens ADD COLUMN IF NOT EXISTS imagem_status VARCHAR(20) DEFAULT 'PRONTA';
+
+-- Criação da tabela de jobs de geração de imagem
+CREATE TABLE IF NOT EXISTS ImagemJobs (
+    id INT AUTO_INCREMENT PRIMARY KEY,          -- Identificador único do job
+    postagem_id INTEGER NOT NULL,               -- Postagem que receberá a imagem
+    prompt VARCHAR(255) NOT NULL,               -- Texto usado para gerar a imagem (título da postagem)
+    status VARCHAR(20) DEFAULT 'PENDENTE',      -- PENDENTE, EM_PROCESSAMENTO, CONCLUIDO, FALHOU
+    tentativas INT DEFAULT 0,                   -- Quantas vezes a geração já foi tentada
+    proxima_tentativa TIMESTAMP DEFAULT CURRENT_TIMESTAMP, -- Quando o job pode ser executado (backoff entre tentativas)
+    ultimo_erro VARCHAR(1024),                  -- Mensagem do último erro, se houver
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, -- Data e hora de criação
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, -- Data e hora da última atualização
+    FOREIGN KEY (postagem_id) REFERENCES Postagens(id) ON DELETE CASCADE -- Se a postagem for deletada, seus jobs também são
+);
+
+-- Busca dos jobs prontos para execução: WHERE status = 'PENDENTE' AND proxima_tentativa <= ?
+CREATE INDEX IF NOT EXISTS idx_imagem_jobs_status ON ImagemJobs(status, proxima_tentativa);
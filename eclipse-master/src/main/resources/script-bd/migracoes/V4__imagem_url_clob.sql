@@ -0,0 +1,3 @@
+-- V4: Imagens geradas são gravadas como Data URL (Base64), que passam facilmente de 1024 caracteres.
+-- A coluna imagem_url passa a aceitar textos longos.
+ALTER TABLE Postagens ALTER COLUMN imagem_url SET DATA TYPE CLOB;
@@ -0,0 +1,6 @@
+-- V5: Preferência do usuário sobre o reaproveitamento de imagens.
+-- Com o índice de similaridade ligado (inkids.imagem.similaridade.habilitada), a postagem pode receber
+-- a imagem já gerada para um título parecido, em vez de uma nova geração.
+-- Com FALSE, as postagens do usuário sempre têm uma imagem própria, e as imagens dele não são oferecidas a outros.
+-- Usuários já existentes aceitam o reaproveitamento.
+ALTER TABLE Usuarios ADD COLUMN IF NOT EXISTS reutilizar_imagens BOOLEAN DEFAULT TRUE NOT NULL;
@@ -0,0 +1,17 @@
+-- V6: Índices decrescentes para as listagens, mais recentes primeiro.
+-- O H2 não percorre um índice de trás para frente: com ORDER BY ... DESC sobre os índices da V2, ele ordena
+-- o resultado inteiro antes de entregar a primeira linha. Com os índices em (coluna DESC, id DESC) a ordenação
+-- vem do índice ("index sorted"), e as listagens em streaming leem as linhas sob demanda.
+-- Os índices crescentes da V2 que eles substituem são removidos.
+
+-- Listagem geral de postagens (streaming, paginação por cursor e carga do feed)
+DROP INDEX IF EXISTS idx_postagens_created;
+CREATE INDEX IF NOT EXISTS idx_postagens_created_desc ON Postagens(created_at DESC, id DESC);
+
+-- Postagens de um usuário: WHERE autor_id = ? ORDER BY autor_id, created_at DESC, id DESC
+DROP INDEX IF EXISTS idx_postagens_autor_created;
+CREATE INDEX IF NOT EXISTS idx_postagens_autor_created_desc ON Postagens(autor_id, created_at DESC, id DESC);
+
+-- Listagem geral de tarefas (streaming e paginação por cursor)
+DROP INDEX IF EXISTS idx_tarefas_data_criacao;
+CREATE INDEX IF NOT EXISTS idx_tarefas_data_criacao_desc ON Tarefas(data_criacao DESC, id DESC);
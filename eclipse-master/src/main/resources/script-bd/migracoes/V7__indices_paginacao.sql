@@ -0,0 +1,13 @@
+-- V7: Índices para a paginação por chave de contatos e usuários.
+-- O H2 só usa um índice para o ORDER BY quando as colunas do índice são exatamente as da ordenação
+-- (o id que todo índice secundário carrega no final não conta). Com os índices da V2 em (created_at) e (nome),
+-- a primeira página de contatos e de usuários percorria e ordenava a tabela inteira.
+-- Os índices da V2 que eles substituem são removidos.
+
+-- Mensagens de contato, mais recentes primeiro: ORDER BY created_at DESC, id DESC
+DROP INDEX IF EXISTS idx_contatos_created;
+CREATE INDEX IF NOT EXISTS idx_contatos_created_desc ON Contatos(created_at DESC, id DESC);
+
+-- Usuários em ordem alfabética: ORDER BY nome, id
+DROP INDEX IF EXISTS idx_usuarios_nome;
+CREATE INDEX IF NOT EXISTS idx_usuarios_nome_id ON Usuarios(nome, id);
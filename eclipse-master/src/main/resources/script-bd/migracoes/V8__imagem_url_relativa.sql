@@ -0,0 +1,8 @@
+-- V8: As postagens passam a guardar só o caminho relativo da imagem (/api/imagens/<hash>).
+-- Antes, a URL era gravada com inkids.imagem.baseUrl na frente, e mudar o endereço do servidor
+-- deixava todas as imagens apontando para o endereço antigo. Agora o servidor é colocado na frente ao responder.
+-- Só as URLs de imagens do próprio armazenamento são convertidas; imagens externas ficam como estão.
+-- Reexecutar o script não altera nada: os caminhos já relativos não correspondem ao padrão.
+UPDATE Postagens
+SET imagem_url = REGEXP_REPLACE(imagem_url, '^https?://[^/]+(/api/imagens/[0-9a-f]{64})$', '$1')
+WHERE REGEXP_LIKE(imagem_url, '^https?://[^/]+/api/imagens/[0-9a-f]{64}$');
@@ -0,0 +1,94 @@
+package com.inkids.dao;
+
+import com.inkids.model.ImagemJob;
+import com.inkids.model.Postagem;
+import com.inkids.model.StatusImagem;
+import com.inkids.model.Usuario;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testes da reserva dos jobs de imagem: só a reserva mais recente de um job conclui, encerra ou reagenda o job,
+ * e a postagem só é alterada quando o job é.
+ */
+class ImagemJobDAOTest {
+
+    private final ImagemJobDAO imagemJobDAO = new ImagemJobDAO();
+    private final PostagemDAO postagemDAO = new PostagemDAO();
+    private int postagemId;
+
+    @BeforeAll
+    static void iniciarBanco() {
+        DAO.initializeDatabase();
+    }
+
+    @BeforeEach
+    void criarPostagem() {
+        Usuario usuario = new Usuario();
+        usuario.setNome("Autor");
+        usuario.setEmail("autor" + System.nanoTime() + "@teste.com");
+        usuario.setSenha("senha");
+        int autorId = new UsuarioDAO().insert(usuario);
+        assertTrue(autorId > 0);
+
+        Postagem postagem = new Postagem();
+        postagem.setTitulo("Um balão vermelho");
+        postagem.setConteudo("Conteúdo");
+        postagem.setAutorId(autorId);
+        postagemId = postagemDAO.insertWithImageJob(postagem);
+        assertTrue(postagemId > 0);
+    }
+
+    @Test
+    void reservaAntigaNaoAlteraOJobNemAPostagem() {
+        ImagemJob primeira = reservar();
+        // O worker parece parado: o job volta à fila e é reservado de novo
+        assertTrue(imagemJobDAO.resetInProgress(null) > 0);
+        ImagemJob segunda = reservar();
+        assertEquals(primeira.getTentativas() + 1, segunda.getTentativas());
+
+        assertFalse(imagemJobDAO.complete(primeira, "/api/imagens/antiga"));
+        assertFalse(imagemJobDAO.fail(primeira, "/api/imagens/fallback", "erro"));
+        assertFalse(imagemJobDAO.scheduleRetry(primeira, LocalDateTime.now(), "erro"));
+        StatusImagem status = imagemJobDAO.getStatus(postagemId);
+        assertEquals("PENDENTE", status.getStatus());
+        assertNull(status.getImagemUrl());
+
+        assertTrue(imagemJobDAO.complete(segunda, "/api/imagens/nova"));
+        status = imagemJobDAO.getStatus(postagemId);
+        assertEquals("PRONTA", status.getStatus());
+        assertEquals("/api/imagens/nova", status.getImagemUrl());
+    }
+
+    @Test
+    void jobConcluidoNaoVoltaAFila() {
+        ImagemJob job = reservar();
+        assertTrue(imagemJobDAO.complete(job, "/api/imagens/pronta"));
+
+        assertFalse(imagemJobDAO.scheduleRetry(job, LocalDateTime.now(), "erro"));
+        assertFalse(imagemJobDAO.complete(job, "/api/imagens/outra"));
+        assertEquals("/api/imagens/pronta", imagemJobDAO.getStatus(postagemId).getImagemUrl());
+    }
+
+    @Test
+    void jobDePostagemRemovidaNaoEConcluido() {
+        ImagemJob job = reservar();
+        assertTrue(postagemDAO.delete(postagemId));
+
+        assertFalse(imagemJobDAO.complete(job, "/api/imagens/orfa"));
+        assertNull(imagemJobDAO.getStatus(postagemId));
+    }
+
+    // Reserva o job da postagem do teste (outros jobs vencidos também podem ser reservados)
+    private ImagemJob reservar() {
+        return imagemJobDAO.claimDue(100).stream()
+                .filter(job -> job.getPostagemId() == postagemId)
+                .findFirst()
+                .orElseGet(() -> fail("O job da postagem não foi reservado."));
+    }
+}
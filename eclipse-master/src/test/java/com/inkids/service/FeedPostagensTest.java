@@ -0,0 +1,222 @@
+package com.inkids.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.inkids.dao.DAO;
+import com.inkids.dao.PostagemDAO;
+import com.inkids.dao.UsuarioDAO;
+import com.inkids.model.Pagina;
+import com.inkids.model.Postagem;
+import com.inkids.model.StatusImagem;
+import com.inkids.model.Usuario;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testes do {@link FeedPostagens}: toda resposta que sai do feed tem que ser idêntica, byte a byte,
+ * à que o controller montaria lendo o banco. O feed guarda 8 postagens (inkids.postagens.feed.maxPostagens no pom.xml),
+ * para que os testes passem pelo limite do feed com poucas postagens.
+ */
+class FeedPostagensTest {
+
+    private static final int MAX_FEED = 8;
+    private static final long ESPERA_MS = 10000;
+
+    private static PostagemService postagemService;
+
+    // Configurado como o ObjectMapper dos controllers
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final FeedPostagens feed = FeedPostagens.getInstance();
+    private int autorId;
+
+    @BeforeAll
+    static void iniciarBanco() {
+        DAO.initializeDatabase();
+        postagemService = new PostagemService();
+    }
+
+    @BeforeEach
+    void limparPostagens() {
+        for (Postagem postagem : new PostagemDAO().getAll()) {
+            assertTrue(postagemService.deletarPostagem(postagem.getId()));
+        }
+        feed.descartar();
+
+        Usuario usuario = new Usuario();
+        usuario.setNome("Autor do feed");
+        usuario.setEmail("feed" + System.nanoTime() + "@teste.com");
+        usuario.setSenha("senha");
+        autorId = new UsuarioDAO().insert(usuario);
+        assertTrue(autorId > 0);
+    }
+
+    @Test
+    void listagemCompletaIgualAoBanco() throws Exception {
+        criar(MAX_FEED - 2);
+        assertFeedIgualAoBanco();
+
+        criar(2);
+        assertFeedIgualAoBanco();
+
+        // Com uma postagem a mais que o feed, a listagem completa passa a vir do banco
+        criar(1);
+        assertNull(postagemService.buscarTodasNoFeed());
+    }
+
+    @Test
+    void primeiraPaginaIgualAoBanco() throws Exception {
+        criar(MAX_FEED + 3);
+        for (int limite = 1; limite < MAX_FEED; limite++) {
+            FeedPostagens.Conteudo doFeed = postagemService.buscarPaginaNoFeed(limite, null);
+            assertNotNull(doFeed, "A primeira página com limite " + limite + " cabe no feed.");
+            assertEquals(paginaDoBanco(limite, null), texto(doFeed));
+        }
+        // Com o feed cheio, o limite igual ao feed não sabe se há uma próxima página: vem do banco
+        assertNull(postagemService.buscarPaginaNoFeed(MAX_FEED, null));
+    }
+
+    @Test
+    void paginasComCursorNoLimiteDoFeed() throws Exception {
+        criar(MAX_FEED + 3);
+        for (int limite = 1; limite <= 4; limite++) {
+            int paginasDoFeed = 0;
+            String cursor = null;
+            do {
+                String esperada = paginaDoBanco(limite, cursor);
+                FeedPostagens.Conteudo doFeed = postagemService.buscarPaginaNoFeed(limite, cursor);
+                if (doFeed != null) {
+                    assertEquals(esperada, texto(doFeed), "Página do feed com limite " + limite + " depois de " + cursor);
+                    paginasDoFeed++;
+                }
+                cursor = postagemService.listarPaginaPostagens(limite, cursor).getProximoCursor();
+            } while (cursor != null);
+            // Só as páginas que terminam antes da última postagem do feed saem dele
+            assertEquals((MAX_FEED - 1) / limite, paginasDoFeed, "Páginas do feed com limite " + limite);
+        }
+    }
+
+    @Test
+    void ultimaPaginaDoFeedCompletoNaoTemCursor() throws Exception {
+        criar(MAX_FEED - 2);
+        String cursor = postagemService.listarPaginaPostagens(4, null).getProximoCursor();
+
+        FeedPostagens.Conteudo doFeed = postagemService.buscarPaginaNoFeed(4, cursor);
+
+        assertNotNull(doFeed);
+        assertEquals(paginaDoBanco(4, cursor), texto(doFeed));
+        assertTrue(texto(doFeed).endsWith("\"proximoCursor\":null}"));
+    }
+
+    @Test
+    void alteracoesChegamAoFeed() throws Exception {
+        List<Postagem> postagens = criar(MAX_FEED);
+        assertFeedIgualAoBanco();
+
+        Postagem alterada = postagens.get(3);
+        alterada.setTitulo("Título alterado");
+        alterada.setConteudo("Conteúdo alterado");
+        assertTrue(postagemService.atualizarPostagem(alterada));
+        assertFeedIgualAoBanco();
+
+        assertTrue(postagemService.deletarPostagem(postagens.get(5).getId()));
+        assertFeedIgualAoBanco();
+
+        criar(1);
+        assertFeedIgualAoBanco();
+    }
+
+    @Test
+    void imagemAnexadaChegaAoFeed() throws Exception {
+        Postagem postagem = criar(2).get(1);
+        assertFeedIgualAoBanco();
+
+        ImagemJobService imagemJobService = ImagemJobService.getInstance();
+        imagemJobService.iniciar();
+        try {
+            StatusImagem status = postagemService.aguardarImagem(postagem.getId(), ESPERA_MS);
+            assertNotNull(status);
+            assertNotEquals("PENDENTE", status.getStatus());
+            // O feed é atualizado pelo listener da fila, logo depois de quem aguarda ser avisado
+            aguardarAte(() -> textoDoFeed().contains(status.getImagemUrl()));
+            assertFeedIgualAoBanco();
+        } finally {
+            imagemJobService.parar();
+        }
+    }
+
+    @Test
+    void escritaDuranteOCarregamentoNaoDeixaOFeedDesatualizado() throws Exception {
+        criar(3);
+
+        // Um carregamento lê o banco, e uma postagem é criada antes de ele publicar o feed
+        long versao = feed.getVersao();
+        List<Postagem> lidas = new ArrayList<>();
+        assertTrue(new PostagemDAO().streamRecentes(feed.getTamanhoCarga(), lidas::add));
+        criar(1);
+        feed.carregar(lidas, versao);
+        assertEquals(false, feed.getMetricas().get("carregado"));
+        assertFeedIgualAoBanco();
+
+        // Uma postagem relida antes de outra escrita não entra no feed fora de ordem
+        long versaoDaLeitura = feed.getVersao();
+        Postagem relida = new PostagemDAO().get(lidas.get(0).getId());
+        assertTrue(postagemService.deletarPostagem(lidas.get(1).getId()));
+        feed.guardar(relida, versaoDaLeitura);
+        assertFeedIgualAoBanco();
+    }
+
+    private List<Postagem> criar(int quantidade) {
+        List<Postagem> criadas = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            Postagem postagem = new Postagem();
+            postagem.setTitulo("Um balão número " + i + " " + System.nanoTime());
+            postagem.setConteudo("Conteúdo " + i);
+            postagem.setAutorId(autorId);
+            assertNotNull(postagemService.criarPostagem(postagem));
+            criadas.add(postagem);
+        }
+        return criadas;
+    }
+
+    // A listagem completa do feed tem que ser igual à do banco (GET /api/postagens sem paginação)
+    private void assertFeedIgualAoBanco() throws Exception {
+        List<Postagem> doBanco = new ArrayList<>();
+        assertTrue(postagemService.percorrerTodasPostagens(doBanco::add));
+        assertTrue(doBanco.size() <= MAX_FEED, "O teste só compara a listagem completa quando ela cabe no feed.");
+        assertEquals(objectMapper.writeValueAsString(doBanco), textoDoFeed());
+    }
+
+    private String textoDoFeed() {
+        FeedPostagens.Conteudo doFeed = postagemService.buscarTodasNoFeed();
+        assertNotNull(doFeed, "A listagem completa cabe no feed.");
+        return texto(doFeed);
+    }
+
+    private String paginaDoBanco(int limite, String cursor) throws Exception {
+        Pagina<Postagem> pagina = postagemService.listarPaginaPostagens(limite, cursor);
+        return objectMapper.writeValueAsString(pagina);
+    }
+
+    private static String texto(FeedPostagens.Conteudo conteudo) {
+        return new String(conteudo.getCorpo(), StandardCharsets.UTF_8);
+    }
+
+    private static void aguardarAte(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_MS);
+        while (!condicao.getAsBoolean()) {
+            if (System.nanoTime() > limite) {
+                fail("Condição não atingida em " + ESPERA_MS + " ms.");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.inkids.service;
+
+import com.inkids.model.ImagemGerada;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testes da geração compartilhada (single-flight) do {@link GeminiImageService#obterImagem}:
+ * chamadas simultâneas com o mesmo prompt fazem uma única chamada ao backend, e o resultado
+ * (ou a falha) da geração chega a todos que aguardam.
+ */
+class GeminiImageServiceTest {
+
+    private static final int THREADS = 8;
+    private static final long ESPERA_MS = 5000;
+
+    /**
+     * Backend que segura as gerações até o teste liberar, contando as chamadas.
+     */
+    private static final class BackendControlado implements ImageBackend {
+        final AtomicInteger chamadas = new AtomicInteger();
+        final CountDownLatch iniciou = new CountDownLatch(1);
+        final CountDownLatch liberar = new CountDownLatch(1);
+        volatile IOException falha;
+
+        @Override
+        public ImagemGerada gerar(String prompt) throws IOException {
+            chamadas.incrementAndGet();
+            iniciou.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Geração interrompida.", e);
+            }
+            if (falha != null) {
+                throw falha;
+            }
+            return new LocalImageBackend().gerar(prompt);
+        }
+
+        // As variações além da 0 não passam pelo controle: ficam prontas na hora
+        @Override
+        public ImagemGerada gerarVariacao(String prompt, int variacao) throws IOException {
+            return new LocalImageBackend().gerarVariacao(prompt, variacao);
+        }
+
+        @Override
+        public String getNome() {
+            return "controlado";
+        }
+    }
+
+    private BackendControlado backend;
+    private GeminiImageService servico;
+    private ExecutorService threads;
+
+    @BeforeEach
+    void preparar() {
+        backend = new BackendControlado();
+        servico = new GeminiImageService(backend);
+        threads = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void encerrar() {
+        backend.liberar.countDown();
+        threads.shutdownNow();
+        servico.fechar();
+    }
+
+    @Test
+    void chamadasSimultaneasCompartilhamUmaGeracao() throws Exception {
+        String prompt = "Um gato azul " + System.nanoTime();
+        long agrupadasAntes = metrica("chamadasAgrupadas");
+        long geracoesAntes = metrica("geracoes");
+
+        List<Future<String>> resultados = iniciarChamadas(prompt, null);
+        backend.liberar.countDown();
+
+        String hash = resultados.get(0).get(ESPERA_MS, TimeUnit.MILLISECONDS);
+        for (Future<String> resultado : resultados) {
+            assertEquals(hash, resultado.get(ESPERA_MS, TimeUnit.MILLISECONDS));
+        }
+        // A imagem foi gravada uma única vez, e as chamadas seguintes vêm do cache
+        assertNotNull(ImagemBlobStore.getInstance().abrir(hash));
+        assertEquals(hash, servico.obterImagem(prompt));
+        assertEquals(1, backend.chamadas.get());
+        assertEquals(THREADS - 1, metrica("chamadasAgrupadas") - agrupadasAntes);
+        assertEquals(1, metrica("geracoes") - geracoesAntes);
+        assertEquals(0, metrica("geracoesEmAndamento"));
+    }
+
+    @Test
+    void falhaDaGeracaoChegaATodosQueAguardam() throws Exception {
+        String prompt = "Um cachorro verde " + System.nanoTime();
+        List<Future<String>> resultados = iniciarChamadas(prompt, null);
+
+        IOException falha = new IOException("Backend fora do ar.");
+        backend.falha = falha;
+        backend.liberar.countDown();
+
+        for (Future<String> resultado : resultados) {
+            ExecutionException erro = assertThrows(ExecutionException.class, () -> resultado.get(ESPERA_MS, TimeUnit.MILLISECONDS));
+            assertSame(falha, origem(erro.getCause()));
+        }
+        assertEquals(1, backend.chamadas.get());
+        assertEquals(0, metrica("geracoesEmAndamento"));
+    }
+
+    @Test
+    void cancelamentoDaGeracaoChegaATodosQueAguardam() throws Exception {
+        String prompt = "Um peixe amarelo " + System.nanoTime();
+        AtomicReference<IOException> falhaDaGeracao = new AtomicReference<>();
+        List<Future<String>> resultados = iniciarChamadas(prompt, falhaDaGeracao);
+
+        // Quem gera é interrompido (ex: o worker foi encerrado); quem aguarda não pode ficar esperando para sempre
+        resultados.get(0).cancel(true);
+        aguardarAte(() -> falhaDaGeracao.get() != null);
+
+        for (Future<String> resultado : resultados.subList(1, resultados.size())) {
+            ExecutionException erro = assertThrows(ExecutionException.class, () -> resultado.get(ESPERA_MS, TimeUnit.MILLISECONDS));
+            assertInstanceOf(IOException.class, erro.getCause());
+            assertSame(falhaDaGeracao.get(), erro.getCause().getCause());
+        }
+        assertEquals(1, backend.chamadas.get());
+        aguardarAte(() -> metrica("geracoesEmAndamento") == 0);
+
+        // A geração cancelada não fica registrada: uma nova chamada gera a imagem normalmente
+        backend.liberar.countDown();
+        assertNotNull(servico.obterImagem(prompt));
+        assertEquals(2, backend.chamadas.get());
+    }
+
+    @Test
+    void clienteQueDesconectaNaoInterrompeAGeracaoCompartilhada() throws Exception {
+        String prompt = "Um urso de patins " + System.nanoTime();
+        long agrupadasAntes = metrica("chamadasAgrupadas");
+
+        // A variação 1 fica pronta primeiro, e o receptor falha como se o cliente tivesse desconectado
+        Future<Integer> variacoes = threads.submit(() -> servico.gerarVariacoes(prompt, 2, new GeminiImageService.ReceptorVariacoes() {
+            @Override
+            public void pronta(int variacao, String url) throws IOException {
+                throw new IOException("Cliente desconectou.");
+            }
+
+            @Override
+            public void falhou(int variacao, String erro) {
+            }
+        }));
+        assertTrue(backend.iniciou.await(ESPERA_MS, TimeUnit.MILLISECONDS), "A variação 0 não chegou ao backend.");
+        assertThrows(ExecutionException.class, () -> variacoes.get(ESPERA_MS, TimeUnit.MILLISECONDS));
+
+        // A variação 0 continua em andamento, e outra chamada com o mesmo prompt aguarda por ela
+        Future<String> outra = threads.submit(() -> servico.obterImagem(prompt));
+        aguardarAte(() -> metrica("chamadasAgrupadas") - agrupadasAntes == 1);
+        backend.liberar.countDown();
+
+        assertNotNull(outra.get(ESPERA_MS, TimeUnit.MILLISECONDS));
+        assertEquals(1, backend.chamadas.get());
+    }
+
+    /**
+     * Inicia uma chamada que chega ao backend e, com ela em andamento, as outras THREADS - 1 chamadas com o mesmo prompt.
+     * @param falhaDaPrimeira Recebe a falha da primeira chamada (a que gera a imagem), se houver.
+     * @return Os resultados das chamadas, começando pela primeira.
+     */
+    private List<Future<String>> iniciarChamadas(String prompt, AtomicReference<IOException> falhaDaPrimeira) throws Exception {
+        long agrupadasAntes = metrica("chamadasAgrupadas");
+        List<Future<String>> resultados = new ArrayList<>();
+        resultados.add(threads.submit(() -> {
+            try {
+                return servico.obterImagem(prompt);
+            } catch (IOException e) {
+                if (falhaDaPrimeira != null) {
+                    falhaDaPrimeira.set(e);
+                }
+                throw e;
+            }
+        }));
+        assertTrue(backend.iniciou.await(ESPERA_MS, TimeUnit.MILLISECONDS), "A geração não chegou ao backend.");
+
+        for (int i = 1; i < THREADS; i++) {
+            resultados.add(threads.submit(() -> servico.obterImagem(prompt)));
+        }
+        aguardarAte(() -> metrica("chamadasAgrupadas") - agrupadasAntes == THREADS - 1);
+        return resultados;
+    }
+
+    // Quem gera recebe a falha do backend; quem aguarda recebe uma IOException com ela como causa
+    private static Throwable origem(Throwable erro) {
+        return erro instanceof IOException && erro.getCause() instanceof IOException ? erro.getCause() : erro;
+    }
+
+    private long metrica(String nome) {
+        return ((Number) servico.getMetricas().get(nome)).longValue();
+    }
+
+    private static void aguardarAte(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_MS);
+        while (!condicao.getAsBoolean()) {
+            if (System.nanoTime() > limite) {
+                fail("Condição não atingida em " + ESPERA_MS + " ms.");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
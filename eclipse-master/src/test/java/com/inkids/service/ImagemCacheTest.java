@@ -0,0 +1,58 @@
+package com.inkids.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testes do nível em disco do {@link ImagemCache}: o hash da imagem de cada prompt sobrevive a um reinício,
+ * e entradas de imagens que não existem mais, ou cópias da versão anterior do cache, são descartadas.
+ */
+class ImagemCacheTest {
+
+    private final ImagemBlobStore blobStore = ImagemBlobStore.getInstance();
+
+    @TempDir
+    Path pasta;
+
+    @Test
+    void entradaSobreviveAoReinicio() throws Exception {
+        String prompt = "Um pinguim de cachecol " + System.nanoTime();
+        String hash = blobStore.salvar(new LocalImageBackend(0, 0).gerar(prompt));
+
+        new ImagemCache(pasta, blobStore).put(prompt, hash);
+        assertTrue(Files.exists(pasta.resolve(ImagemCache.chave(prompt) + ".hash")));
+
+        ImagemCache reiniciado = new ImagemCache(pasta, blobStore);
+        assertTrue(reiniciado.contem("  UM PINGUIM de cachecol " + prompt.substring(prompt.lastIndexOf(' ') + 1)));
+        assertEquals(hash, reiniciado.get(prompt));
+        assertEquals(1L, reiniciado.getMetricas().get("acertosMemoria"));
+        assertEquals(1, reiniciado.getMetricas().get("entradasDisco"));
+    }
+
+    @Test
+    void entradaDeImagemInexistenteEDescartada() throws Exception {
+        String prompt = "Uma girafa que não existe";
+        Files.writeString(pasta.resolve(ImagemCache.chave(prompt) + ".hash"), "0".repeat(64));
+
+        ImagemCache cache = new ImagemCache(pasta, blobStore);
+
+        assertNull(cache.get(prompt));
+        assertFalse(Files.exists(pasta.resolve(ImagemCache.chave(prompt) + ".hash")));
+        assertEquals(0, cache.getMetricas().get("entradasDisco"));
+    }
+
+    @Test
+    void copiasDaVersaoAnteriorSaoRemovidas() throws Exception {
+        Path copia = pasta.resolve(ImagemCache.chave("Um castelo") + ".png");
+        Files.write(copia, new byte[] {1, 2, 3});
+
+        new ImagemCache(pasta, blobStore);
+
+        assertFalse(Files.exists(copia));
+    }
+}
@@ -0,0 +1,219 @@
+package com.inkids.service;
+
+import com.inkids.model.ImagemGerada;
+import com.inkids.service.ResilientImageBackend.CircuitoAbertoException;
+import com.inkids.service.ResilientImageBackend.EstadoCircuito;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testes do circuit breaker do {@link ResilientImageBackend}, com o {@link LocalImageBackend} simulando as falhas.
+ * A configuração do circuito vem do pom.xml: janela de 10 chamadas, mínimo de 4, taxa de erro de 50% e abertura de 200 ms.
+ */
+class ResilientImageBackendTest {
+
+    private static final int MINIMO_CHAMADAS = 4;
+    private static final long ABERTURA_MS = 200;
+    private static final long ESPERA_MS = 5000;
+
+    /**
+     * Backend local em que as chamadas com o prompt LENTA ficam presas até o teste liberar.
+     */
+    private static final class BackendComChamadaLenta implements ImageBackend {
+        static final String LENTA = "lenta";
+
+        final LocalImageBackend local = new LocalImageBackend(0, 0);
+        final CountDownLatch iniciouLenta = new CountDownLatch(1);
+        final CountDownLatch liberarLenta = new CountDownLatch(1);
+
+        @Override
+        public ImagemGerada gerar(String prompt) throws IOException {
+            if (LENTA.equals(prompt)) {
+                iniciouLenta.countDown();
+                try {
+                    liberarLenta.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("Falha da chamada lenta.");
+            }
+            return local.gerar(prompt);
+        }
+
+        @Override
+        public String getNome() {
+            return "lenta";
+        }
+    }
+
+    private ExecutorService threads;
+
+    @BeforeEach
+    void preparar() {
+        threads = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void encerrar() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    void abreQuandoATaxaDeErroAtingeOLimite() throws Exception {
+        LocalImageBackend local = new LocalImageBackend(0, 0);
+        ResilientImageBackend resiliente = new ResilientImageBackend(local);
+        try {
+            resiliente.gerar("Um sol sorridente");
+            resiliente.gerar("Uma lua dormindo");
+
+            local.setTaxaFalha(100);
+            assertThrows(IOException.class, () -> resiliente.gerar("Uma estrela cadente"));
+            // 1 falha em 3 chamadas: abaixo do limite e do mínimo de chamadas
+            assertEquals(EstadoCircuito.FECHADO, resiliente.getEstado());
+
+            IOException falha = assertThrows(IOException.class, () -> resiliente.gerar("Um cometa"));
+            assertFalse(falha instanceof CircuitoAbertoException);
+            // 2 falhas em 4 chamadas: 50%, o limite
+            assertEquals(EstadoCircuito.ABERTO, resiliente.getEstado());
+            assertEquals(1L, resiliente.getMetricas().get("aberturasCircuito"));
+        } finally {
+            resiliente.fechar();
+        }
+    }
+
+    @Test
+    void circuitoAbertoUsaOFallbackSemChamarOBackend() {
+        GeminiImageService servico = new GeminiImageService(new LocalImageBackend(0, 100));
+        try {
+            for (int i = 0; i < MINIMO_CHAMADAS; i++) {
+                servico.generateImageUrl("Um barco " + i + " " + System.nanoTime());
+            }
+            assertEquals(EstadoCircuito.ABERTO.name(), resiliencia(servico, "estadoCircuito"));
+
+            Object falhasAntes = resiliencia(servico, "falhas");
+            Object rejeitadasAntes = resiliencia(servico, "rejeitadasCircuito");
+            String prompt = "Um barco no circuito aberto " + System.nanoTime();
+
+            String url = servico.generateImageUrl(prompt);
+
+            assertEquals(servico.getFallbackUrl(prompt), url);
+            assertEquals(falhasAntes, resiliencia(servico, "falhas"));
+            assertEquals((Long) rejeitadasAntes + 1, resiliencia(servico, "rejeitadasCircuito"));
+        } finally {
+            servico.fechar();
+        }
+    }
+
+    @Test
+    void meioAbertoFazUmaUnicaChamadaDeTesteEFechaComSucesso() throws Exception {
+        LocalImageBackend local = new LocalImageBackend(0, 100);
+        ResilientImageBackend resiliente = new ResilientImageBackend(local);
+        try {
+            abrir(resiliente);
+            assertThrows(CircuitoAbertoException.class, () -> resiliente.gerar("Um dragão"));
+            Thread.sleep(ABERTURA_MS + 50);
+
+            local.setTaxaFalha(0);
+            local.setLatenciaMs(500);
+            Future<ImagemGerada> teste = threads.submit(() -> resiliente.gerar("Um dragão de teste"));
+            aguardarAte(() -> resiliente.getEstado() == EstadoCircuito.MEIO_ABERTO);
+
+            // Com a chamada de teste em andamento, as outras continuam falhando na hora
+            assertThrows(CircuitoAbertoException.class, () -> resiliente.gerar("Outro dragão"));
+
+            assertNotNull(teste.get(ESPERA_MS, TimeUnit.MILLISECONDS));
+            assertEquals(EstadoCircuito.FECHADO, resiliente.getEstado());
+
+            local.setLatenciaMs(0);
+            assertNotNull(resiliente.gerar("Um dragão depois do teste"));
+            assertEquals(1L, resiliente.getMetricas().get("aberturasCircuito"));
+        } finally {
+            resiliente.fechar();
+        }
+    }
+
+    @Test
+    void falhaDaChamadaDeTesteReabreOCircuito() throws Exception {
+        LocalImageBackend local = new LocalImageBackend(0, 100);
+        ResilientImageBackend resiliente = new ResilientImageBackend(local);
+        try {
+            abrir(resiliente);
+            Thread.sleep(ABERTURA_MS + 50);
+
+            IOException falha = assertThrows(IOException.class, () -> resiliente.gerar("Um robô"));
+            assertFalse(falha instanceof CircuitoAbertoException);
+            assertEquals(EstadoCircuito.ABERTO, resiliente.getEstado());
+            assertEquals(2L, resiliente.getMetricas().get("aberturasCircuito"));
+        } finally {
+            resiliente.fechar();
+        }
+    }
+
+    @Test
+    void chamadaIniciadaAntesDaAberturaNaoDecideOMeioAberto() throws Exception {
+        BackendComChamadaLenta backend = new BackendComChamadaLenta();
+        ResilientImageBackend resiliente = new ResilientImageBackend(backend);
+        try {
+            Future<ImagemGerada> antiga = threads.submit(() -> resiliente.gerar(BackendComChamadaLenta.LENTA));
+            assertTrue(backend.iniciouLenta.await(ESPERA_MS, TimeUnit.MILLISECONDS), "A chamada lenta não chegou ao backend.");
+
+            backend.local.setTaxaFalha(100);
+            abrir(resiliente);
+            Thread.sleep(ABERTURA_MS + 50);
+
+            backend.local.setTaxaFalha(0);
+            backend.local.setLatenciaMs(500);
+            Future<ImagemGerada> teste = threads.submit(() -> resiliente.gerar("Uma nuvem de teste"));
+            aguardarAte(() -> resiliente.getEstado() == EstadoCircuito.MEIO_ABERTO);
+
+            // A falha da chamada antiga chega durante o teste e não reabre o circuito
+            backend.liberarLenta.countDown();
+            assertThrows(ExecutionException.class, () -> antiga.get(ESPERA_MS, TimeUnit.MILLISECONDS));
+            assertEquals(EstadoCircuito.MEIO_ABERTO, resiliente.getEstado());
+
+            assertNotNull(teste.get(ESPERA_MS, TimeUnit.MILLISECONDS));
+            assertEquals(EstadoCircuito.FECHADO, resiliente.getEstado());
+            assertEquals(1L, resiliente.getMetricas().get("aberturasCircuito"));
+        } finally {
+            backend.liberarLenta.countDown();
+            resiliente.fechar();
+        }
+    }
+
+    // Faz falhar o mínimo de chamadas para abrir o circuito; o backend precisa estar falhando
+    private static void abrir(ResilientImageBackend resiliente) {
+        for (int i = 0; i < MINIMO_CHAMADAS; i++) {
+            String prompt = "Falha " + i;
+            assertThrows(IOException.class, () -> resiliente.gerar(prompt));
+        }
+        assertEquals(EstadoCircuito.ABERTO, resiliente.getEstado());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object resiliencia(GeminiImageService servico, String nome) {
+        return ((Map<String, Object>) servico.getMetricas().get("resiliencia")).get(nome);
+    }
+
+    private static void aguardarAte(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_MS);
+        while (!condicao.getAsBoolean()) {
+            if (System.nanoTime() > limite) {
+                fail("Condição não atingida em " + ESPERA_MS + " ms.");
+            }
+            Thread.sleep(5);
+        }
+    }
+}